@@ -0,0 +1,64 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the binary form with the text form: encode against toString and decode against parse.
+ * The sizes of the two forms of every corpus are printed by the setup.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class BinaryBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private JsonObject root;
+	private String text;
+	private byte[] binary;
+
+	@Setup
+	public void setup() {
+		this.root = JsonService.parse(this.corpus.text());
+		this.text = this.root.toString();
+		this.binary = JsonBinary.encode(this.root);
+		if (!JsonBinary.decode(this.binary).toString().equals(this.text))
+			throw new IllegalStateException("Binary form changes the content of " + this.corpus);
+		System.out.printf("%n%s: text %d chars, binary %d bytes (%.0f%%)%n", this.corpus, this.text.length(), this.binary.length,
+				100.0 * this.binary.length / this.text.length());
+	}
+
+	@Benchmark
+	public String toText() { return this.root.toString(); }
+
+	@Benchmark
+	public byte[] encode() { return JsonBinary.encode(this.root); }
+
+	@Benchmark
+	public JsonObject parseText() { return JsonService.parse(this.text); }
+
+	@Benchmark
+	public JsonElement decode() { return JsonBinary.decode(this.binary); }
+}
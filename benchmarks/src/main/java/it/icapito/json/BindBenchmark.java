@@ -0,0 +1,79 @@
+package it.icapito.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the copy of an order with 50 lines into records written with get and casts, the binding
+ * of the parsed JsonObject, the binding of the tokens without the tree and the serialization.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class BindBenchmark {
+
+	public enum Status { OPEN, SHIPPED }
+
+	public record Line(String sku, int quantity, double price) {}
+
+	public record Order(long id, String customer, Status status, List<Line> lines) {}
+
+	private String text;
+	private Order order;
+	private JsonBinder<Order> binder;
+
+	@Setup
+	public void setup() {
+		StringBuilder builder = new StringBuilder("{\"id\":1234567,\"customer\":\"ACME \\\"Inc\\\"\",\"status\":\"SHIPPED\",\"lines\":[");
+		for (int i = 0; i < 50; i++) {
+			if (i > 0) builder.append(',');
+			builder.append("{\"sku\":\"SKU-").append(i).append("\",\"quantity\":").append(i % 7 + 1).append(",\"price\":").append(i * 1.25 + 0.5).append('}');
+		}
+		this.text = builder.append("]}").toString();
+		this.binder = JsonBinder.of(Order.class);
+		this.order = this.binder.parse(this.text);
+		if (!this.order.equals(this.handWritten()) || !this.order.equals(this.bindTree())) throw new IllegalStateException("JsonBinder returns a different result");
+	}
+
+	@Benchmark
+	public Order handWritten() {
+		JsonObject object = JsonService.parse(this.text);
+		JsonArray array = (JsonArray) object.get("lines");
+		List<Line> lines = new ArrayList<>(array.size());
+		for (int i = 0; i < array.size(); i++) {
+			JsonObject line = (JsonObject) array.get(i);
+			lines.add(new Line(line.get("sku").value(), line.get("quantity").intValue(), line.get("price").doubleValue()));
+		}
+		return new Order(object.get("id").longValue(), JsonStrings.decode(object.get("customer").value()), Status.valueOf(object.get("status").value()), lines);
+	}
+
+	@Benchmark
+	public Order bindTree() { return this.binder.bind(JsonService.parse(this.text)); }
+
+	@Benchmark
+	public Order bindTokens() { return this.binder.parse(this.text); }
+
+	@Benchmark
+	public String write() { return this.binder.toJsonString(this.order); }
+}
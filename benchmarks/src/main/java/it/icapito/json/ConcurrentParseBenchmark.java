@@ -0,0 +1,46 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Parse throughput with a thread for every processor parsing the same document.
+ * Compare with ParseBenchmark to see how the parse scales, or run with -t to choose the threads.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Threads(Threads.MAX)
+public class ConcurrentParseBenchmark {
+
+	@Param({ "TINY", "EXAMPLE", "WIDE_ARRAY" })
+	public Corpus corpus;
+
+	private String text;
+
+	@Setup
+	public void setup() { this.text = this.corpus.text(); }
+
+	@Benchmark
+	public JsonObject parse() { return JsonService.parse(this.text); }
+}
@@ -0,0 +1,80 @@
+package it.icapito.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Parse the same document from an increasing number of threads and check that every
+ * result is equal to the tree and the text of a single threaded parse, and that the used heap
+ * does not grow between the rounds more than a limit.
+ * This is a correctness check more than a measure, so it is not a JMH benchmark:
+ * run it with java -cp benchmarks.jar it.icapito.json.ConcurrentParseStress [parses] [heap limit in KB],
+ * the exit status is 1 if a result is different or the heap grows over the limit.
+ *
+ * @author BlackCodec
+ *
+ */
+public class ConcurrentParseStress {
+
+	private static final String STRESS_FORMAT = "%-8s %15s %15s %15s %15s%n";
+	private static final long HEAP_LIMIT_KB = 16 << 10;
+
+	public static void main(String[] args) throws Exception {
+		int parses = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		long heapLimit = args.length > 1 ? Long.parseLong(args[1]) : HEAP_LIMIT_KB;
+		String document = Corpus.document(1 << 10);
+		// the reference is parsed before starting any thread
+		JsonObject expectedTree = JsonService.parse(document);
+		String expected = expectedTree.toString();
+		int processors = Runtime.getRuntime().availableProcessors();
+		System.out.printf("*** Concurrent parse stress: %d parses per round ***%n%n", parses);
+		System.out.printf(STRESS_FORMAT, "threads", "parses/s", "speedup", "heap (KB)", "wrong results");
+		double single = 0;
+		long firstHeap = 0;
+		long lastHeap = 0;
+		long wrong = 0;
+		for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			int perThread = parses / threads;
+			List<Future<Integer>> results = new ArrayList<>();
+			long start = System.nanoTime();
+			for (int t = 0; t < threads; t++) {
+				results.add(executor.submit(() -> {
+					int different = 0;
+					for (int i = 0; i < perThread; i++) {
+						JsonObject parsed = JsonService.parse(document);
+						if (!expectedTree.equals(parsed) || !expected.equals(parsed.toString())) different++;
+					}
+					return different;
+				}));
+			}
+			long roundWrong = 0;
+			for (Future<Integer> result: results) roundWrong += result.get();
+			double throughput = perThread * threads / ((System.nanoTime() - start) / 1e9);
+			executor.shutdown();
+			wrong += roundWrong;
+			if (threads == 1) single = throughput;
+			lastHeap = usedHeap();
+			if (firstHeap == 0) firstHeap = lastHeap;
+			System.out.printf(STRESS_FORMAT, threads, String.format("%.0f", throughput), String.format("%.1fx", throughput / single), lastHeap >> 10, roundWrong);
+			if (threads == processors) break;
+		}
+		long growth = (lastHeap - firstHeap) >> 10;
+		System.out.printf("%nHeap growth after all rounds: %d KB (limit %d KB)%n", growth, heapLimit);
+		if (wrong > 0) System.out.printf("FAILED: %d results different from the single threaded parse%n", wrong);
+		if (growth > heapLimit) System.out.printf("FAILED: heap grown over the limit%n");
+		if (wrong > 0 || growth > heapLimit) System.exit(1);
+		System.out.printf("PASSED%n");
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
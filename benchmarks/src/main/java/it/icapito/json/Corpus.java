@@ -0,0 +1,160 @@
+package it.icapito.json;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic JSON documents used by the benchmarks.
+ * Every corpus is generated with a fixed seed, so the same text is parsed on every run and
+ * on every machine and the results of different releases can be compared.
+ *
+ * @author BlackCodec
+ *
+ */
+public enum Corpus {
+
+	// a small object with a field of every type
+	TINY {
+		@Override
+		String build() { return "{\"id\":42,\"name\":\"tiny\",\"active\":true,\"note\":null,\"ratio\":0.5,\"tags\":[\"a\",\"b\"]}"; }
+	},
+	// objects nested 64 levels
+	DEEP {
+		@Override
+		String build() {
+			StringBuilder builder = new StringBuilder("{");
+			for (int i = 0; i < DEPTH; i++) builder.append("\"level").append(i).append("\":{\"index\":").append(i).append(",\"child\":[{");
+			builder.append("\"leaf\":true");
+			for (int i = 0; i < DEPTH; i++) builder.append("}]}");
+			return builder.append('}').toString();
+		}
+	},
+	// a single array of small objects
+	WIDE_ARRAY {
+		@Override
+		String build() {
+			StringBuilder builder = new StringBuilder("{\"items\":[");
+			for (int i = 0; i < ELEMENTS; i++) {
+				if (i > 0) builder.append(',');
+				builder.append("{\"id\":").append(i).append(",\"valid\":").append(i % 3 != 0).append('}');
+			}
+			return builder.append("]}").toString();
+		}
+	},
+	// long strings with escapes and non ASCII chars
+	STRINGS {
+		@Override
+		String build() {
+			SplittableRandom random = new SplittableRandom(SEED);
+			StringBuilder builder = new StringBuilder("{");
+			for (int i = 0; i < ELEMENTS; i++) {
+				if (i > 0) builder.append(',');
+				builder.append("\"text").append(i).append("\":\"");
+				int length = 16 + random.nextInt(112);
+				for (int c = 0; c < length; c++) {
+					int kind = random.nextInt(40);
+					if (kind == 0) builder.append("\\\"");
+					else if (kind == 1) builder.append("\\n");
+					else if (kind == 2) builder.append('è');
+					else builder.append((char) ('a' + random.nextInt(26)));
+				}
+				builder.append('"');
+			}
+			return builder.append('}').toString();
+		}
+	},
+	// arrays of integers and decimals
+	NUMBERS {
+		@Override
+		String build() {
+			SplittableRandom random = new SplittableRandom(SEED);
+			StringBuilder builder = new StringBuilder("{\"integers\":[");
+			for (int i = 0; i < ELEMENTS; i++) builder.append(i > 0 ? "," : "").append(random.nextLong(-1_000_000_000L, 1_000_000_000L));
+			builder.append("],\"decimals\":[");
+			for (int i = 0; i < ELEMENTS; i++) builder.append(i > 0 ? "," : "").append(random.nextInt(100_000)).append('.').append(random.nextInt(1000));
+			builder.append("],\"mixed\":[");
+			for (int i = 0; i < ELEMENTS; i++) builder.append(i > 0 ? "," : "").append("{\"x\":").append(random.nextInt(1000)).append(",\"y\":").append(random.nextDouble()).append('}');
+			return builder.append("]}").toString();
+		}
+	},
+	// the document of the first example of the Examples class
+	EXAMPLE {
+		@Override
+		String build() {
+			return "{\n"
+				+ "  \"key1\": \"value as string\",\n"
+				+ "  \"key2\": \"second string\",\n"
+				+ "  \"key3\": {\n"
+				+ "    \"key3.1\": \"value 3.1\",\n"
+				+ "    \"key3.2\": \"value 3.2 con fake \\\" escape char!\\\"\"\n"
+				+ "  },\n"
+				+ "  \"key4\": [ \"a\",\"b\",\n"
+				+ "   \"c\",\"d\"],"
+				+ " \"key5\": [ 1,7],\n"
+				+ "    \"key6\": false,\n"
+				+ "    \"key9\": \"false\",\n"
+				+ "\"key7\": 2.0,\n"
+				+ "\"key8\": [ {\"sk1\":\"sv1\",\"sk2\":1.0, \"sk3\": false},"
+				+ "{\"sk1\":\"sv2\",\"sk2\":1.2, \"sk3\": \"true\"}], \"keynum\" : 100"
+				+ "}";
+		}
+	};
+
+	private static final long SEED = 20261017L;
+	private static final int DEPTH = 64;
+	private static final int ELEMENTS = 1000;
+
+	private String text;
+
+	abstract String build();
+
+	/**
+	 * Return the text of the corpus, built at the first call.
+	 *
+	 * @return the JSON document
+	 */
+	public synchronized String text() {
+		if (this.text == null) this.text = this.build();
+		return this.text;
+	}
+
+	/**
+	 * Generate a JSON object of about the specified size made of similar records.
+	 * The content is accepted by both the single pass parser and the regex parser.
+	 *
+	 * @param size the expected size in chars
+	 * @return the JSON object as string
+	 */
+	public static String document(int size) {
+		StringBuilder builder = new StringBuilder(size + 256);
+		builder.append("{\n");
+		int index = 0;
+		while (builder.length() < size) {
+			if (index > 0) builder.append(",\n");
+			builder.append("  \"item").append(index).append("\": {")
+				.append("\"name\": \"element number ").append(index).append("\", ")
+				.append("\"price\": ").append(index).append(".25, ")
+				.append("\"active\": ").append(index % 2 == 0).append(", ")
+				.append("\"note\": null, ")
+				.append("\"tags\": [\"t").append(index % 7).append("\",\"t").append(index % 11).append("\"], ")
+				.append("\"counts\": [").append(index % 3).append(",").append(index % 5).append("]}");
+			index++;
+		}
+		builder.append("\n}");
+		return builder.toString();
+	}
+
+	/**
+	 * Generate newline delimited JSON with the specified number of lines.
+	 *
+	 * @param count the number of lines
+	 * @return the lines as string
+	 */
+	public static String lines(int count) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			builder.append("{\"id\":").append(i).append(",\"name\":\"element number ").append(i)
+				.append("\",\"active\":").append(i % 2 == 0).append(",\"tags\":[\"t").append(i % 7).append("\"]}\n");
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,98 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare two copies of a document after changing the last leaf of one of them, the change detection
+ * of a reloaded configuration: toString of both the documents against equals and JsonPatch.diff, that
+ * compute again only the digests on the path of the change.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DiffBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private JsonObject source;
+	private JsonObject changed;
+	// the container of the last leaf and its key or position
+	private JsonElement container;
+	private String key;
+	private int index;
+	private long counter = 0;
+
+	@Setup
+	public void setup() {
+		String text = this.corpus.text();
+		this.source = JsonService.parse(text);
+		this.changed = JsonService.parse(text);
+		JsonElement node = this.changed;
+		while ((node instanceof JsonObject || node instanceof JsonArray) && node.size() > 0) {
+			this.container = node;
+			if (node instanceof JsonObject) {
+				JsonObject object = (JsonObject) node;
+				this.key = object.keyAt(object.size() - 1);
+				node = object.get(this.key);
+			} else {
+				JsonArray array = (JsonArray) node;
+				this.index = array.size() - 1;
+				node = array.get(this.index);
+			}
+		}
+		this.change();
+		if (this.source.equals(this.changed) || JsonPatch.diff(this.source, this.changed).size() != 1)
+			throw new IllegalStateException("The change is not detected");
+	}
+
+	@Benchmark
+	public boolean compareToString() {
+		this.change();
+		return this.source.toString().equals(this.changed.toString());
+	}
+
+	@Benchmark
+	public boolean compareEquals() {
+		this.change();
+		return this.source.equals(this.changed);
+	}
+
+	@Benchmark
+	public int diff() {
+		this.change();
+		return JsonPatch.diff(this.source, this.changed).size();
+	}
+
+	/**
+	 * Store a new number in the last leaf.
+	 */
+	private void change() {
+		JsonNumber value = new JsonNumber(--this.counter);
+		if (this.container instanceof JsonObject) ((JsonObject) this.container).add(this.key, value);
+		else ((JsonArray) this.container).childs().set(this.index, value);
+	}
+}
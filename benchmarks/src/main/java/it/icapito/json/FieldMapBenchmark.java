@@ -0,0 +1,79 @@
+package it.icapito.json;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.icapito.json.JsonService.JsonElement;
+
+/**
+ * Compare the field storage of JsonObject with the TreeMap used by the previous releases.
+ * The build benchmarks with -prof gc report the bytes of an object, the get benchmarks
+ * search every key with a copy of it, as after a parse.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class FieldMapBenchmark {
+
+	@Param({ "4", "16", "64" })
+	public int fields;
+
+	private final JsonElement value = new JsonElement(JsonElement.Types.JSON_NULL, null);
+	private String[] keys;
+	private String[] lookups;
+	private Map<String, JsonElement> tree;
+	private Map<String, JsonElement> compact;
+
+	@Setup
+	public void setup() {
+		this.keys = new String[this.fields];
+		this.lookups = new String[this.fields];
+		for (int i = 0; i < this.fields; i++) {
+			this.keys[i] = "field" + i;
+			this.lookups[i] = new String(this.keys[i]);
+		}
+		this.tree = this.fill(new TreeMap<>());
+		this.compact = this.fill(new FieldMap());
+	}
+
+	@Benchmark
+	public Map<String, JsonElement> buildTreeMap() { return this.fill(new TreeMap<>()); }
+
+	@Benchmark
+	public Map<String, JsonElement> buildFieldMap() { return this.fill(new FieldMap()); }
+
+	@Benchmark
+	public void getTreeMap(Blackhole blackhole) {
+		for (String key: this.lookups) blackhole.consume(this.tree.get(key));
+	}
+
+	@Benchmark
+	public void getFieldMap(Blackhole blackhole) {
+		for (String key: this.lookups) blackhole.consume(this.compact.get(key));
+	}
+
+	private Map<String, JsonElement> fill(Map<String, JsonElement> map) {
+		for (String key: this.keys) map.put(key, this.value);
+		return map;
+	}
+}
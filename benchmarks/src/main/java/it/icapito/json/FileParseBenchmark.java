@@ -0,0 +1,58 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the parse of a file mapped in memory with the parse of the string returned by Files.readString.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class FileParseBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int megabytes;
+
+	private Path path;
+
+	@Setup
+	public void setup() throws IOException {
+		this.path = Files.createTempFile("benchmark", ".json");
+		Files.writeString(this.path, Corpus.document(this.megabytes << 20));
+		if (!JsonService.parse(Files.readString(this.path)).toString().equals(JsonService.parse(this.path).toString()))
+			throw new IllegalStateException("Parsers return different results for size " + this.megabytes);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException { Files.delete(this.path); }
+
+	@Benchmark
+	public JsonObject readString() throws IOException { return JsonService.parse(Files.readString(this.path)); }
+
+	@Benchmark
+	public JsonObject mapped() throws IOException { return JsonService.parse(this.path); }
+}
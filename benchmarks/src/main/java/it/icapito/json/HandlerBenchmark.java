@@ -0,0 +1,144 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the parse of the tree against the JsonHandler callbacks for counting the scalar values,
+ * building the tree with TreeBuilder and forwarding the document without the first key of the root.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class HandlerBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private String text;
+	private String dropped;
+	private StringBuilder output;
+
+	/**
+	 * Handler that counts the scalar values.
+	 */
+	static final class Counter implements JsonHandler {
+
+		int count;
+
+		@Override
+		public Action stringValue(String text) { return this.count(); }
+
+		@Override
+		public Action numberValue(String text) { return this.count(); }
+
+		@Override
+		public Action longValue(long value) { return this.count(); }
+
+		@Override
+		public Action booleanValue(boolean value) { return this.count(); }
+
+		@Override
+		public Action nullValue() { return this.count(); }
+
+		private Action count() {
+			this.count++;
+			return Action.CONTINUE;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		this.text = this.corpus.text();
+		JsonObject root = JsonService.parse(this.text);
+		this.dropped = root.childs().isEmpty() ? "" : root.childs().keySet().iterator().next();
+		this.output = new StringBuilder(this.text.length());
+		if (this.countTree() != this.countHandler()) throw new IllegalStateException("The handler counts a different number of values");
+	}
+
+	@Benchmark
+	public int countTree() { return count(JsonService.parse(this.text)); }
+
+	@Benchmark
+	public int countHandler() {
+		Counter counter = new Counter();
+		JsonService.parse(this.text, counter);
+		return counter.count;
+	}
+
+	@Benchmark
+	public JsonObject treeBuilder() {
+		JsonHandler.TreeBuilder builder = new JsonHandler.TreeBuilder();
+		JsonService.parse(this.text, builder);
+		return builder.result();
+	}
+
+	@Benchmark
+	public int filterTree() {
+		JsonObject root = JsonService.parse(this.text);
+		root.remove(this.dropped);
+		this.output.setLength(0);
+		this.output.append(root.toString());
+		return this.output.length();
+	}
+
+	@Benchmark
+	public int filterHandler() {
+		this.output.setLength(0);
+		JsonService.parse(this.text, new JsonHandler.Serializer(this.output) {
+			private int depth = 0;
+
+			@Override
+			public Action startObject() {
+				this.depth++;
+				return super.startObject();
+			}
+
+			@Override
+			public Action endObject() {
+				this.depth--;
+				return super.endObject();
+			}
+
+			@Override
+			public Action key(String name) { return this.depth == 1 && name.equals(HandlerBenchmark.this.dropped) ? Action.SKIP : super.key(name); }
+		});
+		return this.output.length();
+	}
+
+	private static int count(JsonElement element) {
+		if (element instanceof JsonObject) {
+			int count = 0;
+			for (JsonElement child: ((JsonObject) element).childs().values()) count += count(child);
+			return count;
+		}
+		if (element instanceof JsonArray) {
+			JsonArray array = (JsonArray) element;
+			int count = 0;
+			for (int i = 0; i < array.size(); i++) count += count(array.get(i));
+			return count;
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,58 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Cost of the instrumentation of the parse: disabled, with the metrics and with a listener.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class InstrumentationBenchmark {
+
+	@Param({ "NONE", "METRICS", "LISTENER" })
+	public String mode;
+
+	@Param({ "TINY", "EXAMPLE" })
+	public Corpus corpus;
+
+	private final ParseListener listener = event -> {};
+	private String text;
+
+	@Setup
+	public void setup() {
+		this.text = this.corpus.text();
+		JsonService.setMetrics(this.mode.equals("METRICS"));
+		if (this.mode.equals("LISTENER")) JsonService.addParseListener(this.listener);
+	}
+
+	@TearDown
+	public void tearDown() {
+		JsonService.setMetrics(false);
+		JsonService.removeParseListener(this.listener);
+	}
+
+	@Benchmark
+	public JsonObject parse() { return JsonService.parse(this.text); }
+}
@@ -0,0 +1,48 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of the parse of 100000 NDJSON lines with an increasing parallelism.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class JsonLinesBenchmark {
+
+	private static final int LINES = 100_000;
+
+	@Param({ "1", "2", "4", "8" })
+	public int parallelism;
+
+	private String input;
+
+	@Setup
+	public void setup() { this.input = Corpus.lines(LINES); }
+
+	@Benchmark
+	public long parse() {
+		long[] parsed = { 0 };
+		JsonLines.parse(this.input, this.parallelism, false, object -> parsed[0]++);
+		if (parsed[0] != LINES) throw new IllegalStateException("Parsed " + parsed[0] + " lines");
+		return parsed[0];
+	}
+}
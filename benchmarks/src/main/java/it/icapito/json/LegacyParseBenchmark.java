@@ -0,0 +1,51 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the single pass parser with the regex parser of the previous releases.
+ * The regex parser is quadratic, so only the small documents are measured.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class LegacyParseBenchmark {
+
+	@Param({ "1024", "10240" })
+	public int size;
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		this.text = Corpus.document(this.size);
+		if (!RegexParser.parse(this.text).toString().equals(JsonService.parse(this.text).toString()))
+			throw new IllegalStateException("Parsers return different results for size " + this.size);
+	}
+
+	@Benchmark
+	public JsonObject regex() { return RegexParser.parse(this.text); }
+
+	@Benchmark
+	public JsonObject scanner() { return JsonService.parse(this.text); }
+}
@@ -0,0 +1,134 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Read and write the numbers of the corpus and of a document of decimals with few digits, as the
+ * measures and prices of a typical payload: the number lexer against Double.parseDouble of a substring,
+ * the shortest formatter against Double.toString, and the parse and the write of the whole documents.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class NumberBenchmark {
+
+	private static final int DECIMALS = 10_000;
+
+	@Param
+	public Corpus corpus;
+
+	private String text;
+	private String decimals;
+	private JsonObject document;
+	// the numbers of the corpus and of the decimals, separated by commas, with the bounds of each one
+	private String numbers;
+	private int[] bounds;
+	private double[] doubles;
+	private StringBuilder output;
+
+	@Setup
+	public void setup() {
+		this.text = this.corpus.text();
+		StringBuilder builder = new StringBuilder("{\"values\":[");
+		SplittableRandom random = new SplittableRandom(7);
+		for (int i = 0; i < DECIMALS; i++) {
+			builder.append(i > 0 ? "," : "").append("{\"price\":").append(random.nextInt(100_000) / 100.0);
+			builder.append(",\"lat\":").append(random.nextInt(-90_000_000, 90_000_000) / 1e6);
+			builder.append(",\"ratio\":").append(random.nextInt(1, 1_000_000)).append("e-").append(random.nextInt(1, 12)).append('}');
+		}
+		this.decimals = builder.append("]}").toString();
+		this.document = JsonService.parse(this.decimals);
+		StringBuilder numbers = new StringBuilder();
+		int[] bounds = new int[16];
+		int count = 0;
+		for (String source: new String[] { this.text, this.decimals }) {
+			JsonReader reader = new JsonReader(new StringReader(source));
+			try {
+				for (JsonReader.Token token = reader.next(); token != JsonReader.Token.END_DOCUMENT; token = reader.next()) {
+					if (token != JsonReader.Token.NUMBER) continue;
+					if (count + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+					bounds[count++] = numbers.length();
+					numbers.append(reader.text());
+					bounds[count++] = numbers.length();
+					numbers.append(',');
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		this.numbers = numbers.toString();
+		this.bounds = Arrays.copyOf(bounds, count);
+		this.doubles = new double[count / 2];
+		for (int i = 0; i < count; i += 2) this.doubles[i / 2] = Double.parseDouble(this.numbers.substring(bounds[i], bounds[i + 1]));
+		this.output = new StringBuilder(this.numbers.length() * 2);
+		for (int i = 0; i < count; i += 2) {
+			double value = JsonNumbers.parse(this.numbers, bounds[i], bounds[i + 1]).doubleValue();
+			if (value != this.doubles[i / 2]) throw new IllegalStateException("Different value for " + this.numbers.substring(bounds[i], bounds[i + 1]));
+		}
+		for (double value: this.doubles) {
+			if (Double.parseDouble(JsonNumbers.toString(value)) != value) throw new IllegalStateException("Different value for " + value);
+		}
+	}
+
+	@Benchmark
+	public double lexer() {
+		double sum = 0;
+		for (int i = 0; i < this.bounds.length; i += 2) sum += JsonNumbers.parse(this.numbers, this.bounds[i], this.bounds[i + 1]).doubleValue();
+		return sum;
+	}
+
+	@Benchmark
+	public double parseDouble() {
+		double sum = 0;
+		for (int i = 0; i < this.bounds.length; i += 2) sum += Double.parseDouble(this.numbers.substring(this.bounds[i], this.bounds[i + 1]));
+		return sum;
+	}
+
+	@Benchmark
+	public int formatter() throws IOException {
+		this.output.setLength(0);
+		for (double value: this.doubles) JsonNumbers.write(value, this.output.append(','));
+		return this.output.length();
+	}
+
+	@Benchmark
+	public int toStringDouble() {
+		this.output.setLength(0);
+		for (double value: this.doubles) this.output.append(',').append(Double.toString(value));
+		return this.output.length();
+	}
+
+	@Benchmark
+	public JsonObject parse() { return JsonService.parse(this.text); }
+
+	@Benchmark
+	public JsonObject parseDecimals() { return JsonService.parse(this.decimals); }
+
+	@Benchmark
+	public String writeDecimals() { return this.document.toString(); }
+}
@@ -0,0 +1,227 @@
+package it.icapito.json;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import it.icapito.json.JsonService.JsonNumber;
+
+/**
+ * Check the number lexer and the double formatter of JsonNumbers against the JDK and an exact
+ * BigDecimal reference: every double written reads back to the same bits with the shortest digits,
+ * in the layout of Double.toString, every number read has the kind and the value of the text,
+ * from the String and from the UTF-8 bytes, and the forms outside RFC 8259 are rejected.
+ * This is a correctness check, so it is not a JMH benchmark: run it with
+ * java -cp benchmarks.jar it.icapito.json.NumberConformance [values], the exit status is 1 if a check fails.
+ *
+ * @author BlackCodec
+ *
+ */
+public class NumberConformance {
+
+	private static final String CONFORMANCE_FORMAT = "%-12s %12s %12s%n";
+	// the values that show the first failures of a check
+	private static final int MAX_REPORTED = 10;
+
+	private static final double[] EDGE_DOUBLES = {
+			0.0, Double.MIN_VALUE, 2 * Double.MIN_VALUE, 3 * Double.MIN_VALUE, Math.nextDown(Double.MIN_NORMAL), Double.MIN_NORMAL,
+			Double.MAX_VALUE, Math.nextDown(Double.MAX_VALUE), 0x1p63, Math.nextDown(0x1p63), Math.nextUp(0x1p63), 0x1p53, 0x1p53 + 2,
+			1.0, 0.1, 0.3, 0.5, 100.0, 1e7, 9999999.0, 1e-3, 9.999e-4, 1e16, 1e21, 1e22, 1e23, 2e23, 8.41e21, 4.35,
+			2.82879384806159E17, 123456789012345680.0, 2.2250738585072014E-308, 2.225073858507201E-308, 1.0E-5, 1.23e102 };
+	private static final String[] EDGE_TEXTS = {
+			"0", "-0", "0.0", "-0.0", "1", "-1", "1e5", "1E+5", "1e-5", "0e0", "0.1e1", "123.456", "100.0",
+			"9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809", "12345678901234567890",
+			"4.9e-324", "2.4e-324", "2.5e-324", "1e-400", "1.7976931348623157e308", "1.5e308", "1e309",
+			"2.2250738585072011e-308", "2.2250738585072014e-308", "123456789012345", "123456789012345.0", "1234567890123456.0",
+			"1.234567890123456", "1e22", "1e23", "9007199254740993e0", "0.00000000000000000000000001" };
+	private static final String[] INVALID_TEXTS = {
+			"", "-", "+1", "01", "-01", "00", "1.", ".5", ".1", "1e", "1e+", "1E-", "1.e5", "--1", "1x", "0x10",
+			"1.5.5", "NaN", "Infinity", "-Infinity", " 1", "1 " };
+
+	private static int failures;
+	private static int reported;
+
+	public static void main(String[] args) {
+		int values = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+		SplittableRandom random = new SplittableRandom(20261017L);
+		System.out.printf("*** Number conformance: %d random values per check ***%n%n", values);
+		System.out.printf(CONFORMANCE_FORMAT, "check", "values", "failures");
+
+		int before = failures;
+		int count = 0;
+		for (double value: EDGE_DOUBLES) {
+			checkFormat(value);
+			checkFormat(-value);
+			count += 2;
+		}
+		for (int exponent = -1074; exponent <= 1023; exponent++) {
+			double power = Math.scalb(1.0, exponent);
+			checkFormat(power);
+			checkFormat(Math.nextDown(power));
+			checkFormat(Math.nextUp(power));
+			count += 3;
+		}
+		check(JsonNumbers.toString(0.0).equals("0.0") && JsonNumbers.toString(-0.0).equals("-0.0"), "zero written as " + JsonNumbers.toString(-0.0));
+		report("edge write", count, before);
+
+		before = failures;
+		for (int i = 0; i < values; i++) {
+			double value = Double.longBitsToDouble(random.nextLong());
+			if (Double.isFinite(value)) checkFormat(value);
+			else i--;
+		}
+		for (int i = 0; i < values; i++) checkFormat(random.nextInt(1_000_000) / 1000.0);
+		report("write", values * 2, before);
+
+		before = failures;
+		for (String text: EDGE_TEXTS) checkParse(text);
+		check(JsonNumbers.parse("9223372036854775807", 0, 19).isLong(), "2^63 - 1 not stored as long");
+		check(!JsonNumbers.parse("9223372036854775808", 0, 19).isLong(), "2^63 stored as long");
+		check(JsonNumbers.parse("-9223372036854775808", 0, 20).longValue() == Long.MIN_VALUE, "-2^63 not stored as long");
+		check(Double.doubleToRawLongBits(JsonNumbers.parse("-0", 0, 2).doubleValue()) == Double.doubleToRawLongBits(-0.0), "-0 without sign");
+		check(JsonNumbers.parse("4.9e-324", 0, 8).doubleValue() == Double.MIN_VALUE, "MIN_VALUE not read");
+		check(JsonNumbers.parse("1.7976931348623157e308", 0, 22).doubleValue() == Double.MAX_VALUE, "MAX_VALUE not read");
+		report("edge read", EDGE_TEXTS.length, before);
+
+		before = failures;
+		for (int i = 0; i < values; i++) checkParse(randomText(random));
+		for (int i = 0; i < values; i++) {
+			double value = Double.longBitsToDouble(random.nextLong());
+			if (!Double.isFinite(value)) continue;
+			checkParse(Double.toString(value));
+			checkParse(JsonNumbers.toString(value));
+		}
+		report("read", values * 3, before);
+
+		before = failures;
+		for (String text: INVALID_TEXTS) {
+			try {
+				JsonNumbers.parse(text, 0, text.length());
+				check(false, "accepted " + text);
+			} catch (NumberFormatException e) {
+				// expected
+			}
+			// the whitespace around a value is valid in a document
+			if (!text.strip().equals(text)) continue;
+			try {
+				JsonService.parse("{\"value\":" + text + "}");
+				check(false, "parsed " + text);
+			} catch (UnsupportedOperationException e) {
+				// expected
+			}
+		}
+		report("invalid", INVALID_TEXTS.length, before);
+
+		System.out.printf("%nFailures: %d%n", failures);
+		if (failures > 0) System.exit(1);
+	}
+
+	/**
+	 * Check that the double is written with the shortest digits that read back to the same bits,
+	 * and with the text of Double.toString when the digits are the same.
+	 */
+	private static void checkFormat(double value) {
+		String text = JsonNumbers.toString(value);
+		check(Double.doubleToRawLongBits(Double.parseDouble(text)) == Double.doubleToRawLongBits(value), "round trip of " + value + " written as " + text);
+		String shortest = shortest(value);
+		if (shortest != null) check(new BigDecimal(text).abs().compareTo(new BigDecimal(shortest)) == 0, "shortest of " + value + " is " + shortest + " written as " + text);
+		String jdk = Double.toString(value);
+		if (new BigDecimal(jdk).compareTo(new BigDecimal(text)) == 0) check(jdk.equals(text), "layout of " + jdk + " written as " + text);
+	}
+
+	/**
+	 * Check the kind and the value of the number read from the text and from its UTF-8 bytes.
+	 * Integers are long when they fit, numbers with up to 15 significant digits written in the range of double
+	 * are the double of Double.parseDouble, the others BigDecimal with the same value.
+	 */
+	private static void checkParse(String text) {
+		JsonNumber number = JsonNumbers.parse(text, 0, text.length());
+		byte[] bytes = (" " + text + " ").getBytes(StandardCharsets.UTF_8);
+		JsonNumber fromBytes = JsonNumbers.parse(bytes, 1, bytes.length - 1);
+		BigDecimal exact = new BigDecimal(text);
+		boolean integer = text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0;
+		if (integer && !text.equals("-0") && exact.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0 && exact.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) >= 0) {
+			check(number.isLong() && number.longValue() == exact.longValue(), "integer " + text);
+		} else {
+			double value = Double.parseDouble(text);
+			boolean fits = !integer || text.equals("-0");
+			if (fits) fits = digits(text) <= 15 && Double.isFinite(value) && (value != 0 || exact.signum() == 0);
+			if (fits) check(number.isDouble() && Double.doubleToRawLongBits(number.doubleValue()) == Double.doubleToRawLongBits(value), "double " + text + " read as " + number);
+			else check(!number.isLong() && !number.isDouble() && number.decimalValue().compareTo(exact) == 0, "decimal " + text + " read as " + number);
+		}
+		check(Double.doubleToRawLongBits(fromBytes.doubleValue()) == Double.doubleToRawLongBits(number.doubleValue()) && fromBytes.isLong() == number.isLong(), "bytes " + text);
+	}
+
+	/**
+	 * Return the shortest decimal that reads back to the double, the nearest one if there are more,
+	 * with at least two digits as Double.toString, or null for zero.
+	 */
+	private static String shortest(double value) {
+		if (value == 0) return null;
+		double magnitude = Math.abs(value);
+		BigDecimal exact = new BigDecimal(magnitude);
+		for (int digits = 2; digits <= 17; digits++) {
+			BigDecimal low = exact.round(new MathContext(digits, RoundingMode.FLOOR));
+			BigDecimal high = exact.round(new MathContext(digits, RoundingMode.CEILING));
+			boolean lowReads = low.doubleValue() == magnitude;
+			boolean highReads = high.doubleValue() == magnitude;
+			if (lowReads && highReads && low.compareTo(high) != 0) {
+				int nearest = exact.subtract(low).compareTo(high.subtract(exact));
+				BigDecimal chosen = nearest < 0 ? low : nearest > 0 ? high : low.unscaledValue().testBit(0) ? high : low;
+				return chosen.stripTrailingZeros().toString();
+			}
+			if (lowReads) return low.stripTrailingZeros().toString();
+			if (highReads) return high.stripTrailingZeros().toString();
+		}
+		throw new IllegalStateException("No decimal reads back to " + value);
+	}
+
+	/**
+	 * Return the significant digits written in the text, from the first one that is not zero, before the exponent.
+	 */
+	private static int digits(String text) {
+		int digits = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == 'e' || c == 'E') break;
+			if (c >= '1' && c <= '9' || c == '0' && digits > 0) digits++;
+		}
+		return digits;
+	}
+
+	/**
+	 * Return a random JSON number, with up to 5 integer digits, 16 decimals and exponents up to 340.
+	 */
+	private static String randomText(SplittableRandom random) {
+		StringBuilder builder = new StringBuilder();
+		if (random.nextBoolean()) builder.append('-');
+		int integers = random.nextInt(6);
+		if (integers == 0) builder.append('0');
+		else {
+			builder.append((char) ('1' + random.nextInt(9)));
+			for (int i = 1; i < integers; i++) builder.append((char) ('0' + random.nextInt(10)));
+		}
+		boolean fraction = random.nextInt(4) > 0;
+		if (fraction) {
+			builder.append('.');
+			for (int i = random.nextInt(16); i >= 0; i--) builder.append((char) ('0' + random.nextInt(10)));
+		}
+		if (!fraction || random.nextBoolean()) {
+			builder.append(random.nextBoolean() ? 'e' : 'E');
+			int sign = random.nextInt(3);
+			if (sign > 0) builder.append(sign == 1 ? '-' : '+');
+			builder.append(random.nextInt(random.nextBoolean() ? 30 : 340));
+		}
+		return builder.toString();
+	}
+
+	private static void check(boolean ok, String message) {
+		if (ok) return;
+		failures++;
+		if (reported++ < MAX_REPORTED) System.out.println("FAILED " + message);
+	}
+
+	private static void report(String name, int count, int before) { System.out.printf(CONFORMANCE_FORMAT, name, count, failures - before); }
+}
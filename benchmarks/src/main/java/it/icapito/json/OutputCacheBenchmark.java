@@ -0,0 +1,124 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Write a large document many times changing only its last leaf between the writes, as a catalog
+ * served often and changed rarely: the full serialization against the text kept by cacheOutput,
+ * that writes again only the path of the change.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class OutputCacheBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private JsonObject plain;
+	private JsonObject cached;
+	// the containers of the last leaf and its key or position
+	private JsonElement plainContainer;
+	private JsonElement cachedContainer;
+	private String key;
+	private int index;
+	private long counter = 0;
+
+	@Setup
+	public void setup() {
+		String text = this.corpus.text();
+		this.plain = JsonService.parse(text);
+		this.cached = JsonService.parse(text);
+		this.cached.cacheOutput();
+		this.plainContainer = this.lastContainer(this.plain);
+		this.cachedContainer = this.lastContainer(this.cached);
+		// the same value in both the documents
+		this.change(this.plainContainer);
+		this.counter = 0;
+		this.change(this.cachedContainer);
+		if (!this.plain.toString().equals(this.cached.toString())) throw new IllegalStateException("The cached text is different");
+	}
+
+	@Benchmark
+	public String toStringPlain() { return this.plain.toString(); }
+
+	@Benchmark
+	public String toStringCached() { return this.cached.toString(); }
+
+	@Benchmark
+	public String changePlain() {
+		this.change(this.plainContainer);
+		return this.plain.toString();
+	}
+
+	@Benchmark
+	public String changeCached() {
+		this.change(this.cachedContainer);
+		return this.cached.toString();
+	}
+
+	@Benchmark
+	public byte[] changeBytesPlain() {
+		this.change(this.plainContainer);
+		return this.plain.toUtf8Bytes();
+	}
+
+	@Benchmark
+	public byte[] changeBytesCached() {
+		this.change(this.cachedContainer);
+		return this.cached.toUtf8Bytes();
+	}
+
+	/**
+	 * Return the container of the last leaf, following the last value of every object and array.
+	 */
+	private JsonElement lastContainer(JsonObject root) {
+		JsonElement container = root;
+		JsonElement node = root;
+		while ((node instanceof JsonObject || node instanceof JsonArray) && node.size() > 0) {
+			container = node;
+			if (node instanceof JsonObject) {
+				JsonObject object = (JsonObject) node;
+				this.key = object.keyAt(object.size() - 1);
+				node = object.get(this.key);
+			} else {
+				JsonArray array = (JsonArray) node;
+				this.index = array.size() - 1;
+				node = array.get(this.index);
+			}
+		}
+		return container;
+	}
+
+	/**
+	 * Store a new number in the last leaf.
+	 */
+	private void change(JsonElement container) {
+		JsonNumber value = new JsonNumber(--this.counter);
+		if (container instanceof JsonObject) ((JsonObject) container).add(this.key, value);
+		else ((JsonArray) container).childs().set(this.index, value);
+	}
+}
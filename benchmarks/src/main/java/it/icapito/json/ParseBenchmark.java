@@ -0,0 +1,54 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Parse throughput of every corpus from a string and from a Reader.
+ * Run with -prof gc to report the bytes allocated by every parse.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ParseBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		this.text = this.corpus.text();
+		// the output must not change between the parse methods
+		if (!JsonService.parse(this.text).toString().equals(JsonService.parseLazy(this.text).toString()))
+			throw new IllegalStateException("Parsers return different results for " + this.corpus);
+	}
+
+	@Benchmark
+	public JsonObject parse() { return JsonService.parse(this.text); }
+
+	@Benchmark
+	public JsonObject parseReader() throws IOException { return JsonService.parse(new StringReader(this.text)); }
+}
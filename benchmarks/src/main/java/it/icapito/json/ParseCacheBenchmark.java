@@ -0,0 +1,62 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the parse of the corpora with the parse through a ParseCache that contains them,
+ * so the cost of a hit is the hash and the comparison of the source.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ParseCacheBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private String text;
+	// a copy of the text, so a hit compares the chars instead of the reference
+	private String copy;
+	private ParseCache cache;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.text = this.corpus.text();
+		this.copy = new String(this.text.toCharArray());
+		this.cache = new ParseCache(16, 256L << 20);
+		this.cache.parse(this.text);
+	}
+
+	@TearDown(Level.Trial)
+	public void check() {
+		if (this.cache.misses() != 1) throw new IllegalStateException("Unexpected misses: " + this.cache);
+	}
+
+	@Benchmark
+	public JsonObject parse() { return JsonService.parse(this.text); }
+
+	@Benchmark
+	public JsonObject cached() { return this.cache.parse(this.copy); }
+}
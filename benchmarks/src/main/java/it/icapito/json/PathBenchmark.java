@@ -0,0 +1,69 @@
+package it.icapito.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the JsonPath selection of $.key8[*].sk2 on the Examples document with the same
+ * selection written with get and casts. The compiled benchmark reuses the JsonPath and the result,
+ * the cached one compiles the expression through the cache at every call.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class PathBenchmark {
+
+	private static final String EXPRESSION = "$.key8[*].sk2";
+
+	private JsonObject root;
+	private JsonPath path;
+	private List<JsonElement> result;
+
+	@Setup
+	public void setup() {
+		this.root = JsonService.parse(Corpus.EXAMPLE.text());
+		this.path = JsonPath.compile(EXPRESSION);
+		this.result = new ArrayList<>();
+		if (!this.path.select(this.root).equals(this.handWritten()))
+			throw new IllegalStateException("JsonPath returns a different result");
+	}
+
+	@Benchmark
+	public List<JsonElement> handWritten() {
+		List<JsonElement> values = new ArrayList<>();
+		JsonArray array = (JsonArray) this.root.get("key8");
+		for (int i = 0; i < array.size(); i++) values.add(((JsonObject) array.get(i)).get("sk2"));
+		return values;
+	}
+
+	@Benchmark
+	public List<JsonElement> compiled() {
+		this.result.clear();
+		return this.path.select(this.root, this.result);
+	}
+
+	@Benchmark
+	public List<JsonElement> cached() { return this.root.select(EXPRESSION); }
+}
@@ -0,0 +1,71 @@
+package it.icapito.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the parse of a UTF-8 message received in chunks: accumulated and decoded before
+ * the parse of the string, or pushed chunk by chunk to a JsonPushParser.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class PushParseBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	@Param({ "1024", "16384" })
+	public int chunkSize;
+
+	private byte[] message;
+	private ByteBuffer[] chunks;
+	private JsonObject last;
+
+	@Setup
+	public void setup() {
+		this.message = this.corpus.text().getBytes(StandardCharsets.UTF_8);
+		this.chunks = new ByteBuffer[(this.message.length + this.chunkSize - 1) / this.chunkSize];
+		for (int i = 0; i < this.chunks.length; i++) {
+			int start = i * this.chunkSize;
+			this.chunks[i] = ByteBuffer.wrap(this.message, start, Math.min(this.chunkSize, this.message.length - start)).slice();
+		}
+		if (!this.push().toString().equals(this.accumulate().toString())) throw new IllegalStateException("JsonPushParser returns a different result");
+	}
+
+	@Benchmark
+	public JsonObject accumulate() {
+		ByteBuffer buffer = ByteBuffer.allocate(this.message.length);
+		for (ByteBuffer chunk: this.chunks) buffer.put(chunk.duplicate());
+		return JsonService.parse(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public JsonObject push() {
+		JsonPushParser parser = new JsonPushParser(document -> this.last = document);
+		for (ByteBuffer chunk: this.chunks) parser.feed(chunk.duplicate());
+		parser.end();
+		return this.last;
+	}
+}
@@ -0,0 +1,285 @@
+package it.icapito.json;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonElement.Types;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Regex based parser used by JsonService up to release 20230425.1300.
+ * It is kept in the benchmarks module only as reference for LegacyParseBenchmark, use JsonService.parse instead.
+ * 
+ * @author BlackCodec
+ *
+ */
+final class RegexParser {
+	
+	private static final String REGEX_STRING=".*((\\\"[a-zA-Z0-9_#\\-.]*\\\")[ ]*:[ ]*(\\\".[^\\[\\]\\\"]*(?<!\\\\)\\\")).*";
+	private static final String REGEX_ESCAPE_STRING=".*((\\\"[a-zA-Z0-9_\\-.]*\\\")[ ]*:[ ]*(\\\".*(?<!\\\\)\\\")).*";
+	private static final String REGEX_NUMBER= ".*((\\\"[a-zA-Z0-9_#\\-.]*\\\")[ ]*:[ ]*([\\d]+[.\\d]+)).*";
+	private static final String REGEX_BOOLEAN= ".*((\\\"[a-zA-Z0-9_#\\-.]*\\\")[ ]*:[ ]*(true|false)).*";
+	private static final String REGEX_NULL= ".*((\\\"[a-zA-Z0-9_#\\-.]*\\\")[ ]*:[ ]*(null)).*";
+	private static final String REGEX_ARRAY= ".*(\\[[^\\[]*?\\]).*";
+	private static final String REGEX_OBJECT= ".*(\\{[^\\{]*?\\}).*";
+	
+	private static final String REGEX_LEAF_MATCH="@leaf-[\\d]+@";
+	private static final String REGEX_ARRAY_MATCH="@arr-[\\d]+@";
+	private static final String REGEX_OBJECT_MATCH="@obj-[\\d]+@";
+	
+	// nodes and keys found by a single parse, they are released with the parser instance
+	private final Map<String,JsonElement> nodes = new HashMap<>();
+	private final Map<String,String> keys = new HashMap<>();
+	
+	private RegexParser() {}
+	
+	/**
+	 * Return a JsonObject from a string using the regex pipeline.
+	 * The method converts a string in a JSON object.
+	 * The string must contains a valid JSON object otherwise UnsupportedOperationException will be raised.
+	 * 
+	 * @param jsonString	a string that contains the JSON object
+	 * @return				the JSON object representation of the string
+	 * @see					JsonObject
+	 * @throws UnsupportedOperationException if the input string does not represent a valid JSON object
+	 */
+	static JsonObject parse(String jsonString) throws UnsupportedOperationException {
+		return new RegexParser().run(jsonString);
+	}
+	
+	private JsonObject run(String jsonString) throws UnsupportedOperationException {
+		Logger logger = JsonService.logger();
+		logger.entering(RegexParser.class.getCanonicalName(),"parse");
+		try {
+			// match all JSON number
+			logger.info("Parsing all numbers... ");
+			String parsed = extractLeaf(jsonString, REGEX_NUMBER, Types.JSON_NUMBER);
+			// match all JSON boolean
+			logger.info("Parsing all booleans ... ");
+			parsed = extractLeaf(parsed, REGEX_BOOLEAN, Types.JSON_BOOLEAN);
+			// match all JSON null
+			logger.info("Parsing all nulls ... ");
+			parsed = extractLeaf(parsed, REGEX_NULL, Types.JSON_NULL);
+			// match all JSON strings
+			logger.info("Parsing all strings ... ");
+			parsed = extractLeaf(parsed, REGEX_STRING, Types.JSON_STRING);
+			// match all JSON escaped strings
+			logger.info("Parsing all escaped strings ... ");
+			parsed = extractLeaf(parsed, REGEX_ESCAPE_STRING, Types.JSON_STRING);
+			logger.log(Level.FINE,"Current string: {0}",parsed);
+			logger.info("Removes end lines and unused spaces ... ");
+			// clear the rest of the string, remove all spaces
+			parsed = parsed.replace(System.lineSeparator(), "").replace(" ","").replace("\r", "").replace("\n", "").replace("\t", "");
+			logger.info("Parsing all JSON arrays... ");
+			// parse all JSON arrays
+			parsed = extractArray(parsed);
+			logger.info("Parsing all JSON objects... ");
+			// parse all JSON objects
+			parsed = extractObject(parsed);
+			// we expected to have a JSON object now
+			if (parsed.matches(REGEX_OBJECT_MATCH)) {
+				logger.info("Process completed: SUCCESS.");
+				return (JsonObject) nodes.get(parsed);
+			}
+			logger.warning("Process completed: Invalid JSON object");
+			return null;
+		} finally { logger.exiting(RegexParser.class.getCanonicalName(),"parse"); }
+	}
+	
+	/**
+	 * Private method that parse all JsonArray objects from string and add it to the nodes map
+	 * 
+	 * @param input string to parse
+	 * @return      the string parsed that contains reference to nodes map keys
+	 * @see JsonArray
+	 * @throws UnsupportedOperationException if the string does not contains a valid json
+	 */
+	private String extractArray(String input) throws UnsupportedOperationException {
+		Logger logger = JsonService.logger();
+		logger.entering(RegexParser.class.getCanonicalName(),"extractArray");
+		try {
+			logger.log(Level.FINEST,"Pattern: {0}\nInput: {1}", new String[] {REGEX_ARRAY,input});
+			Pattern pattern = Pattern.compile(REGEX_ARRAY,Pattern.MULTILINE);
+			Matcher matcher = pattern.matcher(input);
+			if (matcher.find()) {
+				String values = matcher.group(1); // [@id-1@,@id-2@...]
+				String replace = values;
+				if (values.startsWith("[")) values = values.substring(1);
+				if (values.endsWith("]")) values = values.substring(0,values.length()-1);
+				// this is an array so create a new JSON array
+				if (values.contains("{")) {
+					if (!values.contains("}")) 
+						throw new UnsupportedOperationException("Not well formed JsonObject found");
+					// is an array objects
+					values = extractObject(values);
+				}
+				// is an array of element, split comma
+				JsonArray node = new JsonArray();
+				for (String child: values.split(",")) {
+					if (child != null && !child.isEmpty()) {
+						JsonElement sub = null;
+						if (child.matches(REGEX_LEAF_MATCH) || child.matches(REGEX_ARRAY_MATCH) || child.matches(REGEX_OBJECT_MATCH)) {
+							sub = nodes.get(child);
+						} else {
+							// is a value so check if value is a string
+							if (child.trim().startsWith("\"")) {
+								logger.log(Level.FINEST,"String: {0}", child);
+								if (!child.trim().endsWith("\"")) {
+									// invalid string
+									logger.severe("Invalid string!");
+									throw new UnsupportedOperationException("Not well formed JsonString found");
+								}
+								sub = new JsonElement(Types.JSON_STRING,clearText(child));
+							} else {
+								// clear the text
+								child = clearText(child);
+								// if record is true or false is a boolean
+								if (child.equals("true") || child.equals("false")) {
+									logger.log(Level.FINEST,"Boolean: {0}", child);
+									sub = new JsonElement(Types.JSON_BOOLEAN, child);
+								} else if (child.matches("[\\d]+")) {
+									logger.log(Level.FINEST,"Number: {0}", child);
+									sub = new JsonElement(Types.JSON_NUMBER, child);
+								} else if (child.equals("null")){
+									logger.log(Level.FINEST,"Null: {0}", child);
+									sub = new JsonElement(Types.JSON_NULL, null);
+								}
+							}
+						}
+						if (sub != null) {
+							logger.log(Level.FINEST,"Json child: {0}", sub);
+							sub.setParent(node);
+							node.add(sub);
+						} else 
+							throw new UnsupportedOperationException("Invalid JSON type");
+					}
+				}
+				// calculate the is of this object
+				String id = String.format("@arr-%d@", nodes.size());
+				logger.log(Level.FINEST,"id: {0}", id);
+				// add id to nodes only because this element does not have any key
+				nodes.put(id, node);
+				// now replace the old string and return
+				return extractArray(input.replace(replace, id));
+			}
+			logger.warning("No match!");
+			return input;
+		} finally { logger.exiting(RegexParser.class.getCanonicalName(),"extractArray"); }
+	}
+	
+	/**
+	 * Private method that parse all JsonObject objects from string and add it to the nodes map
+	 * 
+	 * @param input string to parse
+	 * @return      the string parsed that contains reference to nodes map keys
+	 * @see JsonObject
+	 * @throws UnsupportedOperationException if the string does not contains a valid json
+	 */
+	private String extractObject(String input) throws UnsupportedOperationException { 
+		Logger logger = JsonService.logger();
+		logger.entering(RegexParser.class.getCanonicalName(),"extractObject");
+		try {
+			logger.log(Level.FINEST,"Pattern: {0}\nInput: {1}", new String[] {REGEX_OBJECT,input});
+			Pattern pattern = Pattern.compile(REGEX_OBJECT,Pattern.MULTILINE);
+			Matcher matcher = pattern.matcher(input);
+			if (matcher.find()) {
+				String values = matcher.group(1); 
+				String replace = values;
+				if (values.startsWith("{")) values = values.substring(1);
+				if (values.endsWith("}")) values = values.substring(0,values.length()-1);
+				// this is an array so create a new JSON array
+				if (values.contains("[")) {
+					if (!values.contains("]")) {
+						logger.log(Level.FINEST,"Invalid array: {0}", values);
+						throw new UnsupportedOperationException("Not well formed JsonArray found");
+					}
+					// is an array objects
+					values = extractArray(values);
+				}
+				// is an array of element, split comma
+				logger.log(Level.FINEST,"Split comma for child value: {0}",values);
+				JsonObject node = new JsonObject();
+				for (String child: values.split(",")) {
+					if (child != null && !child.isEmpty()) {
+						JsonElement sub = null;
+						String key = null;
+						// check for key value pair
+						if (child.contains(":")) {
+							key = clearText(child.split(":")[0]);
+							child = child.split(":")[1];
+							logger.log(Level.FINEST,"Key: {0}\nValue: {1}", new String[] {key,child});
+						}
+						if (child.matches(REGEX_LEAF_MATCH) || child.matches(REGEX_ARRAY_MATCH) || child.matches(REGEX_OBJECT_MATCH)) {
+							sub = nodes.get(child);
+							if (key == null) key = keys.get(child);
+						} 
+						if (sub != null && key != null) {
+							logger.log(Level.FINEST,"Json child: {0}", sub);
+							sub.setParent(node);
+							node.add(key,sub);
+						} else { 
+							logger.log(Level.SEVERE,"Invalid JSON type: {0}.\nKey: {1}\nChild:{2}",new String[] {child, key, (sub!=null?sub.value():"null")});
+							throw new UnsupportedOperationException(String.format("Invalid JSON type: %s.%nKey: %s%nChild:%s",child, key, (sub!=null?sub.value():"null")));
+						}
+					}
+				}
+				// calculate the is of this object
+				String id = String.format("@obj-%d@", nodes.size());
+				logger.log(Level.FINEST,"id: {0}", id);
+				// add id to nodes only because this element does not have any key
+				nodes.put(id, node);
+				// now replace the old string and return
+				return extractObject(input.replace(replace, id));
+			}
+			logger.warning("No match!");
+			return input;
+		} finally { logger.exiting(RegexParser.class.getCanonicalName(),"extractObject"); }
+	}
+	
+	/**
+	 * Private method that parse all JsonNode objects that are not JsonNode or 
+	 * JsonArray object from string and add it to the nodes map.
+	 * 
+	 * @param input string to parse
+	 * @return      the string parsed that contains reference to nodes map keys
+	 * @see JsonElement
+	 */
+	private String extractLeaf(String input, String regex, Types type) {
+		Logger logger = JsonService.logger();
+		logger.entering(RegexParser.class.getCanonicalName(),"extractLeaf");
+		try {
+			logger.log(Level.FINEST,"Input: {0}\nPattern: {1}\nType: {2}",new String[] {input,regex,type.name()});
+			Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
+			Matcher matcher = pattern.matcher(input);
+			if (matcher.find()) {
+				logger.log(Level.FINEST,"Match: {0}",matcher.group(1));
+				String replace = matcher.group(1);
+				String key = clearText(matcher.group(2));
+				String value = clearText(matcher.group(3));
+				logger.log(Level.FINEST,"Analize: \n - Key: {0}\n - Child:{1}",new String[] {key, value});
+				JsonElement node = new JsonElement(type,value);
+				String id = String.format("@leaf-%d@", nodes.size());
+				logger.log(Level.FINEST,"id: {0}", id);
+				nodes.put(id, node);
+				keys.put(id, key);
+				return extractLeaf(input.replace(replace,id+","),regex,type);
+			}
+			logger.warning("No match!");
+			return input;
+		} finally { logger.exiting(RegexParser.class.getCanonicalName(),"extractLeaf"); }
+	}
+	
+	/**
+	 * Private method for remove the quotation marks from the begin and the end of a string
+	 * 
+	 * @param input the string to clear
+	 * @return      the string without the quotation marks at the begin and at the end
+	 */
+	private static String clearText(String input) { return input.trim().replaceAll("^\\\"(.*)\\\"$", "$1").trim(); }
+}
@@ -0,0 +1,70 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Serialize throughput of the parsed corpora with toString and writeTo.
+ * The array benchmark serializes the first array found in the corpus, or the root if there is none.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SerializeBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private JsonObject root;
+	private JsonElement array;
+	private StringBuilder output;
+
+	@Setup
+	public void setup() {
+		this.root = JsonService.parse(this.corpus.text());
+		this.array = this.root;
+		for (JsonElement child: this.root.childs().values()) {
+			if (child instanceof JsonArray) {
+				this.array = child;
+				break;
+			}
+		}
+		this.output = new StringBuilder(this.root.toString().length());
+	}
+
+	@Benchmark
+	public String objectToString() { return this.root.toString(); }
+
+	@Benchmark
+	public String arrayToString() { return this.array.toString(); }
+
+	@Benchmark
+	public int writeTo() throws IOException {
+		// the builder is reused, so only the serializer allocates
+		this.output.setLength(0);
+		this.root.writeTo(this.output);
+		return this.output.length();
+	}
+}
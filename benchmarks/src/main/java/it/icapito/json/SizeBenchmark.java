@@ -0,0 +1,78 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Time of the parse of documents from 1 KB to 10 MB, eager, lazy and with a projection.
+ * The lazy and the projected parse read three fields of the result, as a caller that needs only a part of the document,
+ * and the lazy parse also every field, so each value is parsed from its position in the whole document.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SizeBenchmark {
+
+	@Param({ "1024", "10240", "102400", "1048576", "10485760" })
+	public int size;
+
+	private static final Projection FIELDS = Projection.of("$.item0.name", "$.item0.price", "$.item1.tags");
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		this.text = Corpus.document(this.size);
+		String expected = readFields(JsonService.parse(this.text));
+		if (!expected.equals(readFields(JsonService.parseLazy(this.text))) || !expected.equals(readFields(JsonService.parse(this.text, FIELDS))))
+			throw new IllegalStateException("Parsers return different results for size " + this.size);
+	}
+
+	@Benchmark
+	public JsonObject parse() { return JsonService.parse(this.text); }
+
+	@Benchmark
+	public String parseAndRead() { return readFields(JsonService.parse(this.text)); }
+
+	@Benchmark
+	public String parseLazyAndRead() { return readFields(JsonService.parseLazy(this.text)); }
+
+	@Benchmark
+	public int parseLazyAndReadAll() {
+		JsonObject root = JsonService.parseLazy(this.text);
+		int length = 0;
+		for (JsonElement item: root.childs().values()) {
+			for (JsonElement value: ((JsonObject) item).childs().values()) length += value.value().length();
+		}
+		return length;
+	}
+
+	@Benchmark
+	public String parseProjectedAndRead() { return readFields(JsonService.parse(this.text, FIELDS)); }
+
+	private static String readFields(JsonObject root) {
+		JsonObject first = (JsonObject) root.get("item0");
+		JsonObject second = (JsonObject) root.get("item1");
+		return first.get("name").value() + first.get("price").value() + ((JsonService.JsonArray) second.get("tags")).get(0).value();
+	}
+}
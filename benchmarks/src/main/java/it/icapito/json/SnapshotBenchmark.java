@@ -0,0 +1,56 @@
+package it.icapito.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare the update of one value of a 1 MB frozen document with withPath, that copies only the
+ * objects along the path, with the copy of the whole document parsing its text again.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SnapshotBenchmark {
+
+	private static final String PATH = "$.version.number";
+
+	private JsonObject root;
+	private JsonNumber value;
+
+	@Setup
+	public void setup() {
+		this.root = (JsonObject) JsonService.parse(Corpus.document(1 << 20)).freeze();
+		this.value = new JsonNumber(2L);
+	}
+
+	@Benchmark
+	public JsonObject withPath() { return this.root.withPath(PATH, this.value); }
+
+	@Benchmark
+	public JsonObject copy() {
+		JsonObject copy = JsonService.parse(this.root.toString());
+		JsonObject version = new JsonObject();
+		version.add("number", this.value);
+		copy.add("version", version);
+		return copy;
+	}
+}
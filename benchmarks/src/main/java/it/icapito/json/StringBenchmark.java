@@ -0,0 +1,128 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Scan, decode and encode the strings of the corpus: the parse of the document from the string and
+ * from the UTF-8 bytes, the decode of the escape sequences against a StringBuilder that appends one char
+ * at time, and the encode of the decoded strings.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class StringBenchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private String text;
+	private byte[] bytes;
+	// the keys and the string values of the corpus, as written in the document and decoded
+	private String[] escaped;
+	private String[] decoded;
+	private StringBuilder output;
+
+	@Setup
+	public void setup() {
+		this.text = this.corpus.text();
+		this.bytes = this.text.getBytes(StandardCharsets.UTF_8);
+		List<String> strings = new ArrayList<>();
+		JsonReader reader = new JsonReader(new StringReader(this.text));
+		try {
+			for (JsonReader.Token token = reader.next(); token != JsonReader.Token.END_DOCUMENT; token = reader.next()) {
+				if (token == JsonReader.Token.NAME || token == JsonReader.Token.STRING) strings.add(reader.text());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.escaped = strings.toArray(new String[0]);
+		this.decoded = new String[this.escaped.length];
+		for (int i = 0; i < this.escaped.length; i++) {
+			this.decoded[i] = JsonStrings.decode(this.escaped[i]);
+			if (!this.decoded[i].equals(decodeBuilder(this.escaped[i]))) throw new IllegalStateException("Different value for " + this.escaped[i]);
+			if (!JsonStrings.decode(JsonStrings.encode(this.decoded[i])).equals(this.decoded[i])) throw new IllegalStateException("Different value for " + this.escaped[i]);
+		}
+		this.output = new StringBuilder(this.text.length() * 2);
+	}
+
+	@Benchmark
+	public JsonObject parse() { return JsonService.parse(this.text); }
+
+	@Benchmark
+	public JsonObject parseUtf8() { return JsonService.parse(this.bytes); }
+
+	@Benchmark
+	public int decode() {
+		int length = 0;
+		for (String value: this.escaped) length += JsonStrings.decode(value).length();
+		return length;
+	}
+
+	@Benchmark
+	public int decodeBuilder() {
+		int length = 0;
+		for (String value: this.escaped) length += decodeBuilder(value).length();
+		return length;
+	}
+
+	@Benchmark
+	public int encode() throws IOException {
+		this.output.setLength(0);
+		for (String value: this.decoded) JsonStrings.encode(value, this.output.append(','));
+		return this.output.length();
+	}
+
+	/**
+	 * Decode the escape sequences reading and appending one char at time.
+	 */
+	private static String decodeBuilder(String text) {
+		StringBuilder builder = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c != '\\') {
+				builder.append(c);
+				continue;
+			}
+			c = text.charAt(++i);
+			switch (c) {
+				case 'b': builder.append('\b'); break;
+				case 'f': builder.append('\f'); break;
+				case 'n': builder.append('\n'); break;
+				case 'r': builder.append('\r'); break;
+				case 't': builder.append('\t'); break;
+				case 'u':
+					builder.append((char) Integer.parseInt(text, i + 1, i + 5, 16));
+					i += 4;
+					break;
+				default: builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,65 @@
+package it.icapito.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compare a round trip of UTF-8 bytes decoded in a string, parsed, written with toString and encoded
+ * with getBytes against parse(byte[]) and toUtf8Bytes, and the serialization of the same tree in bytes.
+ *
+ * @author BlackCodec
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class Utf8Benchmark {
+
+	@Param
+	public Corpus corpus;
+
+	private byte[] bytes;
+	private JsonObject root;
+
+	@Setup
+	public void setup() {
+		this.bytes = this.corpus.text().getBytes(StandardCharsets.UTF_8);
+		this.root = JsonService.parse(this.corpus.text());
+		if (!new String(this.bytesRoundTrip(), StandardCharsets.UTF_8).equals(this.root.toString())) throw new IllegalStateException("The byte round trip returns a different text");
+	}
+
+	@Benchmark
+	public byte[] stringRoundTrip() { return JsonService.parse(new String(this.bytes, StandardCharsets.UTF_8)).toString().getBytes(StandardCharsets.UTF_8); }
+
+	@Benchmark
+	public byte[] bytesRoundTrip() { return JsonService.parse(this.bytes).toUtf8Bytes(); }
+
+	@Benchmark
+	public JsonObject parseString() { return JsonService.parse(new String(this.bytes, StandardCharsets.UTF_8)); }
+
+	@Benchmark
+	public JsonObject parseBytes() { return JsonService.parse(this.bytes); }
+
+	@Benchmark
+	public byte[] getBytes() { return this.root.toString().getBytes(StandardCharsets.UTF_8); }
+
+	@Benchmark
+	public byte[] toUtf8Bytes() { return this.root.toUtf8Bytes(); }
+}
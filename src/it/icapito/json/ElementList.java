@@ -0,0 +1,116 @@
+package it.icapito.json;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import it.icapito.json.JsonService.JsonElement;
+
+/**
+ * List of the elements of a JsonArray.
+ * Every change, made by the JsonArray or through the list returned by childs, its iterators
+ * and its sub lists, is notified to the array so the hash cached by the array and by its
+ * ancestors is cleared. The array becomes the parent of the elements added without parent.
+ *
+ * @author BlackCodec
+ *
+ */
+final class ElementList extends AbstractList<JsonElement> implements RandomAccess {
+
+	private static final JsonElement[] EMPTY = new JsonElement[0];
+
+	private final JsonElement owner;
+	private JsonElement[] elements;
+	private int size = 0;
+
+	/**
+	 * Construct an empty list.
+	 *
+	 * @param owner the array notified of the changes
+	 */
+	ElementList(JsonElement owner) {
+		this.owner = owner;
+		this.elements = EMPTY;
+	}
+
+	/**
+	 * Construct a list with the elements of the collection and room for one more element.
+	 *
+	 * @param owner  the array notified of the changes
+	 * @param source the elements to copy
+	 */
+	ElementList(JsonElement owner, Collection<JsonElement> source) {
+		this.owner = owner;
+		this.elements = source.toArray(new JsonElement[source.size() + 1]);
+		this.size = source.size();
+	}
+
+	@Override
+	public int size() { return this.size; }
+
+	@Override
+	public JsonElement get(int index) {
+		Objects.checkIndex(index, this.size);
+		return this.elements[index];
+	}
+
+	@Override
+	public JsonElement set(int index, JsonElement element) {
+		Objects.checkIndex(index, this.size);
+		JsonElement old = this.elements[index];
+		this.elements[index] = this.adopt(element);
+		this.owner.changed(index);
+		return old;
+	}
+
+	@Override
+	public boolean add(JsonElement element) {
+		if (this.size == this.elements.length) this.grow();
+		this.elements[this.size++] = this.adopt(element);
+		this.modCount++;
+		this.owner.changed(-1);
+		return true;
+	}
+
+	@Override
+	public void add(int index, JsonElement element) {
+		Objects.checkIndex(index, this.size + 1);
+		if (this.size == this.elements.length) this.grow();
+		System.arraycopy(this.elements, index, this.elements, index + 1, this.size - index);
+		this.elements[index] = this.adopt(element);
+		this.size++;
+		this.modCount++;
+		this.owner.changed(-1);
+	}
+
+	@Override
+	public JsonElement remove(int index) {
+		Objects.checkIndex(index, this.size);
+		JsonElement old = this.elements[index];
+		System.arraycopy(this.elements, index + 1, this.elements, index, this.size - index - 1);
+		this.elements[--this.size] = null;
+		this.modCount++;
+		this.owner.changed(-1);
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.elements, 0, this.size, null);
+		this.size = 0;
+		this.modCount++;
+		this.owner.changed(-1);
+	}
+
+	/**
+	 * Set the owner as parent of an element without parent, so its changes are notified to the owner.
+	 */
+	private JsonElement adopt(JsonElement element) {
+		if (element != null && !element.isFrozen() && element.parent() == null) element.setParent(this.owner);
+		return element;
+	}
+
+	private void grow() { this.elements = Arrays.copyOf(this.elements, Math.max(8, this.size * 2)); }
+}
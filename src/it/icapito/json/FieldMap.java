@@ -0,0 +1,273 @@
+package it.icapito.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import it.icapito.json.JsonService.JsonElement;
+
+/**
+ * Map of the fields of a JsonObject that keeps the insertion order.
+ * Keys and values are stored in two parallel arrays: small objects are searched with a
+ * linear scan, when the fields are more than LINEAR_LIMIT an open addressing hash table
+ * with the positions of the keys is added. A key added again keeps its position.
+ * Every change is notified to the owner JsonObject, so the hash cached by the object
+ * and by its ancestors is cleared, and the owner becomes the parent of the values added
+ * without parent.
+ *
+ * @author BlackCodec
+ *
+ */
+final class FieldMap extends AbstractMap<String, JsonElement> {
+
+	private static final int LINEAR_LIMIT = 8;
+
+	private String[] keys;
+	private JsonElement[] values;
+	private int size = 0;
+	// position + 1 of the keys, 0 for the empty slots
+	private int[] table = null;
+	private int modifications = 0;
+	private JsonElement owner = null;
+
+	/**
+	 * Construct an empty map.
+	 */
+	FieldMap() { this(4); }
+
+	/**
+	 * Construct an empty map for the specified number of fields.
+	 *
+	 * @param capacity the number of fields expected
+	 */
+	FieldMap(int capacity) {
+		this.keys = new String[Math.max(capacity, 1)];
+		this.values = new JsonElement[this.keys.length];
+	}
+
+	/**
+	 * Construct a map with the same fields of the specified one, the keys and the values are not copied.
+	 *
+	 * @param source the map to copy
+	 */
+	FieldMap(FieldMap source) {
+		this.keys = Arrays.copyOf(source.keys, source.keys.length);
+		this.values = Arrays.copyOf(source.values, source.values.length);
+		this.size = source.size;
+		this.table = source.table != null ? source.table.clone() : null;
+	}
+
+	/**
+	 * Set the object notified of the changes.
+	 *
+	 * @param owner the JsonObject that contains the map
+	 */
+	void setOwner(JsonElement owner) { this.owner = owner; }
+
+	@Override
+	public int size() { return this.size; }
+
+	@Override
+	public boolean containsKey(Object key) { return this.indexOf(key) >= 0; }
+
+	@Override
+	public JsonElement get(Object key) {
+		int index = this.indexOf(key);
+		return index < 0 ? null : this.values[index];
+	}
+
+	@Override
+	public JsonElement put(String key, JsonElement value) {
+		// a null key would break the hash of the lookups
+		int index = this.indexOf(Objects.requireNonNull(key));
+		if (index >= 0) {
+			JsonElement old = this.values[index];
+			this.values[index] = this.adopt(value);
+			this.changed(index);
+			return old;
+		}
+		if (this.size == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, this.size * 2);
+			this.values = Arrays.copyOf(this.values, this.size * 2);
+		}
+		this.keys[this.size] = key;
+		this.values[this.size] = this.adopt(value);
+		this.size++;
+		this.modifications++;
+		if (this.table != null && this.size * 2 <= this.table.length) this.insert(this.size - 1);
+		else if (this.size > LINEAR_LIMIT) this.rehash();
+		this.changed(-1);
+		return null;
+	}
+
+	@Override
+	public JsonElement remove(Object key) {
+		int index = this.indexOf(key);
+		if (index < 0) return null;
+		JsonElement old = this.values[index];
+		this.removeAt(index);
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.keys, 0, this.size, null);
+		Arrays.fill(this.values, 0, this.size, null);
+		this.size = 0;
+		this.table = null;
+		this.modifications++;
+		this.changed(-1);
+	}
+
+	@Override
+	public Set<Entry<String, JsonElement>> entrySet() {
+		return new AbstractSet<Entry<String, JsonElement>>() {
+			@Override
+			public Iterator<Entry<String, JsonElement>> iterator() { return new FieldIterator(); }
+
+			@Override
+			public int size() { return FieldMap.this.size; }
+		};
+	}
+
+	/**
+	 * Return the key at the specified position.
+	 *
+	 * @param index the position in insertion order
+	 * @return the key
+	 */
+	String keyAt(int index) { return this.keys[index]; }
+
+	/**
+	 * Return the value at the specified position.
+	 *
+	 * @param index the position in insertion order
+	 * @return the value
+	 */
+	JsonElement valueAt(int index) { return this.values[index]; }
+
+	private int indexOf(Object key) {
+		if (key == null) return -1;
+		// the hash of a String is cached, so it is compared before the chars
+		int hash = key.hashCode();
+		if (this.table == null) {
+			for (int i = 0; i < this.size; i++) {
+				String current = this.keys[i];
+				if (current == key || (current.hashCode() == hash && current.equals(key))) return i;
+			}
+			return -1;
+		}
+		int mask = this.table.length - 1;
+		for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+			int index = this.table[slot] - 1;
+			if (index < 0) return -1;
+			String current = this.keys[index];
+			if (current == key || (current.hashCode() == hash && current.equals(key))) return index;
+		}
+	}
+
+	private void removeAt(int index) {
+		// the table is repaired in place, without rebuilding it for every removal
+		if (this.size - 1 > LINEAR_LIMIT) this.unlink(index);
+		else this.table = null;
+		int moved = this.size - index - 1;
+		System.arraycopy(this.keys, index + 1, this.keys, index, moved);
+		System.arraycopy(this.values, index + 1, this.values, index, moved);
+		this.size--;
+		this.keys[this.size] = null;
+		this.values[this.size] = null;
+		this.modifications++;
+		this.changed(-1);
+	}
+
+	/**
+	 * Remove the slot of the field from the table, moving back the following keys of the same run
+	 * so the lookups do not stop at the empty slot, and decrease the positions after the field.
+	 */
+	private void unlink(int index) {
+		int mask = this.table.length - 1;
+		int hole = spread(this.keys[index].hashCode()) & mask;
+		while (this.table[hole] != index + 1) hole = (hole + 1) & mask;
+		for (int slot = (hole + 1) & mask; this.table[slot] != 0; slot = (slot + 1) & mask) {
+			int home = spread(this.keys[this.table[slot] - 1].hashCode()) & mask;
+			// the key is moved only if its home slot is not between the hole and its slot
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				this.table[hole] = this.table[slot];
+				hole = slot;
+			}
+		}
+		this.table[hole] = 0;
+		for (int slot = 0; slot <= mask; slot++) {
+			if (this.table[slot] > index + 1) this.table[slot]--;
+		}
+	}
+
+	private void rehash() {
+		this.table = new int[Integer.highestOneBit(this.size * 4 - 1)];
+		for (int i = 0; i < this.size; i++) this.insert(i);
+	}
+
+	private void insert(int index) {
+		int mask = this.table.length - 1;
+		int slot = spread(this.keys[index].hashCode()) & mask;
+		while (this.table[slot] != 0) slot = (slot + 1) & mask;
+		this.table[slot] = index + 1;
+	}
+
+	/**
+	 * Set the owner as parent of a value without parent, so its changes are notified to the owner.
+	 */
+	private JsonElement adopt(JsonElement value) {
+		if (this.owner != null && value != null && !value.isFrozen() && value.parent() == null) value.setParent(this.owner);
+		return value;
+	}
+
+	private void changed(int index) {
+		if (this.owner != null) this.owner.changed(index);
+	}
+
+	private static int spread(int hash) { return hash ^ (hash >>> 16); }
+
+	private final class FieldIterator implements Iterator<Entry<String, JsonElement>> {
+
+		private int next = 0;
+		private int last = -1;
+		private int expected = FieldMap.this.modifications;
+
+		@Override
+		public boolean hasNext() { return this.next < FieldMap.this.size; }
+
+		@Override
+		public Entry<String, JsonElement> next() {
+			if (this.expected != FieldMap.this.modifications) throw new ConcurrentModificationException();
+			if (this.next >= FieldMap.this.size) throw new NoSuchElementException();
+			this.last = this.next++;
+			int index = this.last;
+			return new SimpleEntry<String, JsonElement>(FieldMap.this.keys[index], FieldMap.this.values[index]) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public JsonElement setValue(JsonElement value) {
+					FieldMap.this.values[index] = FieldMap.this.adopt(value);
+					FieldMap.this.changed(index);
+					return super.setValue(value);
+				}
+			};
+		}
+
+		@Override
+		public void remove() {
+			if (this.last < 0) throw new IllegalStateException();
+			if (this.expected != FieldMap.this.modifications) throw new ConcurrentModificationException();
+			FieldMap.this.removeAt(this.last);
+			this.next = this.last;
+			this.last = -1;
+			this.expected = FieldMap.this.modifications;
+		}
+	}
+}
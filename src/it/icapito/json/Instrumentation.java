@@ -0,0 +1,192 @@
+package it.icapito.json;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumberArray;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Collect the description of the parses for the metrics, the listeners, the JFR events and the logger.
+ * When nothing is enabled start returns null and the parse does not pay anything else than
+ * a volatile read, so the parse methods can always call it.
+ *
+ * @author BlackCodec
+ *
+ */
+final class Instrumentation {
+
+	private static final ParseListener[] NO_LISTENERS = new ParseListener[0];
+	private static final Logger LISTENER_LOGGER = Logger.getLogger(ParseListener.class.getName());
+
+	private static volatile boolean metrics = false;
+	private static volatile boolean jfr = false;
+	private static volatile ParseListener[] listeners = NO_LISTENERS;
+	private static volatile Logger logger = null;
+	// true if at least one of the above is enabled
+	private static volatile boolean enabled = false;
+
+	private Instrumentation() {}
+
+	static void setMetrics(boolean enabled) {
+		metrics = enabled;
+		update();
+	}
+
+	static void setJfr(boolean enabled) {
+		jfr = enabled;
+		update();
+	}
+
+	static void setLogger(Logger logger) {
+		Instrumentation.logger = logger;
+		update();
+	}
+
+	static synchronized void addListener(ParseListener listener) {
+		ParseListener[] current = listeners;
+		ParseListener[] added = Arrays.copyOf(current, current.length + 1);
+		added[current.length] = listener;
+		listeners = added;
+		update();
+	}
+
+	static synchronized void removeListener(ParseListener listener) {
+		ParseListener[] current = listeners;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] == listener) {
+				ParseListener[] removed = Arrays.copyOf(current, current.length - 1);
+				System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+				listeners = removed;
+				break;
+			}
+		}
+		update();
+	}
+
+	private static synchronized void update() { enabled = metrics || jfr || logger != null || listeners.length > 0; }
+
+	/**
+	 * Start the description of a parse.
+	 *
+	 * @param source the method used to parse
+	 * @param chars  the size of the input or -1 if unknown
+	 * @return the probe to complete at the end of the parse or null if the instrumentation is disabled
+	 */
+	static Probe start(ParseEvent.Source source, long chars) { return enabled ? new Probe(source, chars) : null; }
+
+	/**
+	 * Description of a parse in progress.
+	 */
+	static final class Probe {
+
+		private final ParseEvent.Source source;
+		private final long chars;
+		private final long start;
+		private final ParseJfrEvent event;
+
+		private Probe(ParseEvent.Source source, long chars) {
+			this.source = source;
+			this.chars = chars;
+			ParseJfrEvent event = null;
+			if (jfr) {
+				event = new ParseJfrEvent();
+				if (event.isEnabled()) event.begin();
+				else event = null;
+			}
+			this.event = event;
+			this.start = System.nanoTime();
+		}
+
+		/**
+		 * Complete the description of a successful parse.
+		 *
+		 * @param result the parsed object, lazy objects are not visited
+		 */
+		void parsed(JsonObject result) {
+			long nanos = System.nanoTime() - this.start;
+			// the tree is visited only when the event is used, the logger alone does not need it
+			if (metrics || this.event != null || listeners.length > 0) {
+				long nodes = -1;
+				int depth = -1;
+				if (!(result instanceof LazyJsonObject)) {
+					long[] counters = new long[2];
+					visit(result, 1, counters);
+					nodes = counters[0];
+					depth = (int) counters[1];
+				}
+				this.publish(new ParseEvent(this.source, this.chars, nanos, nodes, depth, null));
+			}
+			Logger log = logger;
+			if (log != null) log.info("Process completed: SUCCESS.");
+		}
+
+		/**
+		 * Complete the description of a failed parse.
+		 *
+		 * @param failure the exception raised by the parse
+		 */
+		void failed(Throwable failure) {
+			this.publish(new ParseEvent(this.source, this.chars, System.nanoTime() - this.start, -1, -1, cause(failure)));
+			Logger log = logger;
+			if (log != null) log.warning("Process completed: Invalid JSON object");
+		}
+
+		private void publish(ParseEvent parse) {
+			if (metrics) ParseMetrics.record(parse);
+			for (ParseListener listener: listeners) {
+				// a failing listener does not stop the others and does not change the result of the parse
+				try {
+					listener.parsed(parse);
+				} catch (RuntimeException e) {
+					LISTENER_LOGGER.log(Level.WARNING, "ParseListener failed", e);
+				}
+			}
+			if (this.event != null) {
+				this.event.end();
+				if (this.event.shouldCommit()) {
+					this.event.source = parse.source().name();
+					this.event.chars = parse.chars();
+					this.event.nodes = parse.nodes();
+					this.event.depth = parse.depth();
+					this.event.failure = parse.failure();
+					this.event.commit();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Count the elements and the maximum depth of a tree without creating any element.
+	 *
+	 * @param node     the root of the tree
+	 * @param depth    the depth of the root
+	 * @param counters the number of elements and the maximum depth found
+	 */
+	private static void visit(JsonElement node, int depth, long[] counters) {
+		counters[0]++;
+		if (node instanceof JsonObject) {
+			counters[1] = Math.max(counters[1], depth);
+			JsonObject object = (JsonObject) node;
+			for (int i = 0, size = object.size(); i < size; i++) visit(object.valueAt(i), depth + 1, counters);
+		} else if (node instanceof JsonArray) {
+			counters[1] = Math.max(counters[1], depth);
+			JsonArray array = (JsonArray) node;
+			if (array instanceof JsonNumberArray) counters[0] += array.size();
+			else for (int i = 0, size = array.size(); i < size; i++) visit(array.get(i), depth + 1, counters);
+		}
+	}
+
+	/**
+	 * Return the cause of a failure: the message without the position or the name of the exception.
+	 */
+	private static String cause(Throwable failure) {
+		String message = failure.getMessage();
+		if (message == null) return failure.getClass().getSimpleName();
+		int position = message.indexOf(" at position ");
+		return position > 0 ? message.substring(0, position) : message;
+	}
+}
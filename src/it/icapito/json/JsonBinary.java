@@ -0,0 +1,523 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonNumberArray;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compact binary form of the JsonElement trees, to cache them or to pass them between processes
+ * without parsing the text again.
+ * The format is similar to CBOR: every item starts with a byte with the major type in the 3 high bits
+ * and an argument in the 5 low bits; arguments up to 23 are stored in the byte itself, 24, 25, 26 and 27
+ * mean that the argument follows in 1, 2, 4 or 8 bytes, big endian. The major types are:
+ * <ul>
+ * <li>0 integer, the argument is the value</li>
+ * <li>1 negative integer, the value is -1 minus the argument</li>
+ * <li>2 decimal number, the argument is the length of the ASCII text of the number that follows</li>
+ * <li>3 string, the argument is the length of the UTF-8 bytes that follow</li>
+ * <li>4 array, the argument is the number of items that follow</li>
+ * <li>5 object, the argument is the number of key and value pairs that follow</li>
+ * <li>6 key, the argument is the index of a key already found in the same document</li>
+ * <li>7 simple values: 20 false, 21 true, 22 null, 26 float, 27 double, 28 array of integers
+ * and 29 array of doubles, followed by the number of values and by the values</li>
+ * </ul>
+ * The keys of the objects are stored as strings the first time and as references to their first
+ * occurrence after, when the key references are enabled. Strings keep the same text of the
+ * JsonElement values, so a decoded tree writes the same text of the original one.
+ *
+ * @author BlackCodec
+ *
+ */
+public final class JsonBinary {
+
+	private static final int UNSIGNED = 0;
+	private static final int NEGATIVE = 1;
+	private static final int DECIMAL = 2;
+	private static final int STRING = 3;
+	private static final int ARRAY = 4;
+	private static final int OBJECT = 5;
+	private static final int KEY = 6;
+	private static final int SIMPLE = 7;
+
+	private static final int FALSE = 20;
+	private static final int TRUE = 21;
+	private static final int NULL = 22;
+	private static final int FLOAT = 26;
+	private static final int DOUBLE = 27;
+	private static final int LONG_ARRAY = 28;
+	private static final int DOUBLE_ARRAY = 29;
+
+	// the keys that can be referenced, the same limit is used by encoder and decoder
+	private static final int MAX_KEYS = 4096;
+
+	private JsonBinary() {}
+
+	/**
+	 * Return the binary form of the element, with key references.
+	 *
+	 * @param element the element to encode
+	 * @return the encoded bytes
+	 */
+	public static byte[] encode(JsonElement element) { return encode(element, true); }
+
+	/**
+	 * Return the binary form of the element.
+	 *
+	 * @param element       the element to encode
+	 * @param keyReferences true to store the repeated keys as references
+	 * @return the encoded bytes
+	 */
+	public static byte[] encode(JsonElement element, boolean keyReferences) {
+		Encoder encoder = new Encoder(keyReferences);
+		encoder.write(element);
+		return Arrays.copyOf(encoder.buffer, encoder.size);
+	}
+
+	/**
+	 * Write the binary form of the element, with key references, to the stream.
+	 *
+	 * @param element the element to encode
+	 * @param out     the stream where the bytes are written, it is not closed
+	 * @throws IOException if the stream fails
+	 */
+	public static void encode(JsonElement element, OutputStream out) throws IOException {
+		Encoder encoder = new Encoder(true);
+		encoder.write(element);
+		out.write(encoder.buffer, 0, encoder.size);
+	}
+
+	/**
+	 * Write the binary form of the element, with key references, to the buffer.
+	 *
+	 * @param element the element to encode
+	 * @param out     the buffer where the bytes are written from its position
+	 * @throws java.nio.BufferOverflowException if the buffer has not enough space
+	 */
+	public static void encode(JsonElement element, ByteBuffer out) {
+		Encoder encoder = new Encoder(true);
+		encoder.write(element);
+		out.put(encoder.buffer, 0, encoder.size);
+	}
+
+	/**
+	 * Return the element encoded in the bytes.
+	 *
+	 * @param bytes the binary form of an element
+	 * @return the decoded element
+	 * @throws UnsupportedOperationException if the bytes are not a valid binary form
+	 */
+	public static JsonElement decode(byte[] bytes) throws UnsupportedOperationException { return decode(bytes, 0, bytes.length); }
+
+	/**
+	 * Return the element encoded in a part of the bytes.
+	 *
+	 * @param bytes  the array that contains the binary form of an element
+	 * @param offset the index of the first byte
+	 * @param length the number of bytes
+	 * @return the decoded element
+	 * @throws UnsupportedOperationException if the bytes are not a valid binary form
+	 */
+	public static JsonElement decode(byte[] bytes, int offset, int length) throws UnsupportedOperationException {
+		Decoder decoder = new Decoder(bytes, offset, offset + length);
+		JsonElement result = decoder.read();
+		if (decoder.pos != decoder.end) throw decoder.error("Unexpected content after the element");
+		return result;
+	}
+
+	/**
+	 * Return the element encoded in the remaining bytes of the buffer.
+	 * The position of the buffer is moved after the element.
+	 *
+	 * @param in the buffer that contains the binary form of an element
+	 * @return the decoded element
+	 * @throws UnsupportedOperationException if the bytes are not a valid binary form
+	 */
+	public static JsonElement decode(ByteBuffer in) throws UnsupportedOperationException {
+		Decoder decoder;
+		if (in.hasArray()) decoder = new Decoder(in.array(), in.arrayOffset() + in.position(), in.arrayOffset() + in.limit());
+		else {
+			byte[] bytes = new byte[in.remaining()];
+			in.duplicate().get(bytes);
+			decoder = new Decoder(bytes, 0, bytes.length);
+		}
+		int start = decoder.pos;
+		JsonElement result = decoder.read();
+		in.position(in.position() + decoder.pos - start);
+		return result;
+	}
+
+	/**
+	 * Return the element encoded in all the remaining bytes of the stream.
+	 *
+	 * @param in the stream that contains the binary form of an element, it is not closed
+	 * @return the decoded element
+	 * @throws IOException if the stream fails
+	 * @throws UnsupportedOperationException if the bytes are not a valid binary form
+	 */
+	public static JsonElement decode(InputStream in) throws IOException, UnsupportedOperationException { return decode(in.readAllBytes()); }
+
+	/**
+	 * Write the items of a tree in a growing byte array.
+	 */
+	private static final class Encoder {
+
+		private byte[] buffer = new byte[256];
+		private int size = 0;
+		private final Map<String, Integer> keys;
+
+		private Encoder(boolean keyReferences) { this.keys = keyReferences ? new HashMap<>() : null; }
+
+		private void write(JsonElement element) {
+			switch (element.type()) {
+				case JSON_OBJECT:
+					JsonObject object = (JsonObject) element;
+					int fields = object.size();
+					this.head(OBJECT, fields);
+					for (int i = 0; i < fields; i++) {
+						this.key(object.keyAt(i));
+						this.write(object.valueAt(i));
+					}
+					break;
+				case JSON_ARRAY:
+					JsonArray array = (JsonArray) element;
+					int count = array.size();
+					if (array instanceof JsonNumberArray && ((JsonNumberArray) array).isPrimitive()) {
+						JsonNumberArray numbers = (JsonNumberArray) array;
+						if (numbers.isLong()) {
+							this.simple(LONG_ARRAY);
+							this.head(UNSIGNED, count);
+							for (int i = 0; i < count; i++) this.integer(numbers.longAt(i));
+						} else {
+							this.simple(DOUBLE_ARRAY);
+							this.head(UNSIGNED, count);
+							for (int i = 0; i < count; i++) this.fixed(Double.doubleToRawLongBits(numbers.doubleAt(i)), 8);
+						}
+						break;
+					}
+					this.head(ARRAY, count);
+					for (int i = 0; i < count; i++) this.write(array.get(i));
+					break;
+				case JSON_NUMBER:
+					JsonNumber number = element instanceof JsonNumber ? (JsonNumber) element : JsonNumber.parse(element.value().trim());
+					if (number.isLong()) this.integer(number.longValue());
+					else if (number.isDouble()) {
+						double value = number.doubleValue();
+						float single = (float) value;
+						if (single == value) {
+							this.simple(FLOAT);
+							this.fixed(Float.floatToRawIntBits(single), 4);
+						} else {
+							this.simple(DOUBLE);
+							this.fixed(Double.doubleToRawLongBits(value), 8);
+						}
+					} else {
+						String text = number.decimalValue().toString();
+						this.head(DECIMAL, text.length());
+						this.chars(text);
+					}
+					break;
+				case JSON_STRING:
+					this.string(element.value());
+					break;
+				case JSON_BOOLEAN:
+					// the parsed values are exactly true or false, booleanValue normalizes the built ones
+					String value = element.value();
+					boolean flag = value.equals("true") || (!value.equals("false") && element.booleanValue());
+					this.simple(flag ? TRUE : FALSE);
+					break;
+				default:
+					this.simple(NULL);
+					break;
+			}
+		}
+
+		private void key(String key) {
+			if (this.keys != null) {
+				Integer index = this.keys.get(key);
+				if (index != null) {
+					this.head(KEY, index);
+					return;
+				}
+				if (this.keys.size() < MAX_KEYS) this.keys.put(key, this.keys.size());
+			}
+			this.string(key);
+		}
+
+		private void integer(long value) {
+			if (value >= 0) this.head(UNSIGNED, value);
+			else this.head(NEGATIVE, ~value);
+		}
+
+		/**
+		 * Write a string as UTF-8, without creating the byte array of the string.
+		 * Unpaired surrogates are written as '?', as String.getBytes does.
+		 */
+		private void string(String value) {
+			int length = value.length();
+			int bytes = 0;
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+				if (c < 0x80) bytes++;
+				else if (c < 0x800) bytes += 2;
+				else if (Character.isSurrogate(c)) {
+					if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+						bytes += 4;
+						i++;
+					} else bytes++;
+				} else bytes += 3;
+			}
+			this.head(STRING, bytes);
+			this.ensure(bytes);
+			if (bytes == length) {
+				for (int i = 0; i < length; i++) this.buffer[this.size++] = (byte) value.charAt(i);
+				return;
+			}
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+				if (c < 0x80) this.buffer[this.size++] = (byte) c;
+				else if (c < 0x800) {
+					this.buffer[this.size++] = (byte) (0xC0 | (c >> 6));
+					this.buffer[this.size++] = (byte) (0x80 | (c & 0x3F));
+				} else if (Character.isSurrogate(c)) {
+					if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+						int code = Character.toCodePoint(c, value.charAt(++i));
+						this.buffer[this.size++] = (byte) (0xF0 | (code >> 18));
+						this.buffer[this.size++] = (byte) (0x80 | ((code >> 12) & 0x3F));
+						this.buffer[this.size++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+						this.buffer[this.size++] = (byte) (0x80 | (code & 0x3F));
+					} else this.buffer[this.size++] = '?';
+				} else {
+					this.buffer[this.size++] = (byte) (0xE0 | (c >> 12));
+					this.buffer[this.size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+					this.buffer[this.size++] = (byte) (0x80 | (c & 0x3F));
+				}
+			}
+		}
+
+		private void chars(String ascii) {
+			this.ensure(ascii.length());
+			for (int i = 0; i < ascii.length(); i++) this.buffer[this.size++] = (byte) ascii.charAt(i);
+		}
+
+		/**
+		 * Write a simple value, its code is always in the first byte.
+		 */
+		private void simple(int code) {
+			this.ensure(1);
+			this.buffer[this.size++] = (byte) (SIMPLE << 5 | code);
+		}
+
+		private void head(int major, long argument) {
+			int type = major << 5;
+			if (argument < 24) {
+				this.ensure(1);
+				this.buffer[this.size++] = (byte) (type | argument);
+			} else if (argument < 1L << 8) {
+				this.ensure(1);
+				this.buffer[this.size++] = (byte) (type | 24);
+				this.fixed(argument, 1);
+			} else if (argument < 1L << 16) {
+				this.ensure(1);
+				this.buffer[this.size++] = (byte) (type | 25);
+				this.fixed(argument, 2);
+			} else if (argument < 1L << 32) {
+				this.ensure(1);
+				this.buffer[this.size++] = (byte) (type | 26);
+				this.fixed(argument, 4);
+			} else {
+				this.ensure(1);
+				this.buffer[this.size++] = (byte) (type | 27);
+				this.fixed(argument, 8);
+			}
+		}
+
+		private void fixed(long value, int bytes) {
+			this.ensure(bytes);
+			for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) this.buffer[this.size++] = (byte) (value >>> shift);
+		}
+
+		private void ensure(int bytes) {
+			if (this.size + bytes > this.buffer.length) this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + bytes));
+		}
+	}
+
+	/**
+	 * Read the items of a tree from a byte array.
+	 */
+	private static final class Decoder {
+
+		private final byte[] bytes;
+		private final int end;
+		private final List<String> keys = new ArrayList<>();
+		private int pos;
+
+		private Decoder(byte[] bytes, int start, int end) {
+			this.bytes = bytes;
+			this.pos = start;
+			this.end = end;
+		}
+
+		private JsonElement read() {
+			int head = this.next();
+			int major = head >>> 5;
+			int info = head & 0x1F;
+			if (major == SIMPLE) return this.simple(info);
+			long argument = this.argument(info);
+			switch (major) {
+				case UNSIGNED:
+					return new JsonNumber(argument);
+				case NEGATIVE:
+					return new JsonNumber(~argument);
+				case DECIMAL:
+					int length = this.length(argument);
+					String text = new String(this.bytes, this.pos, length, StandardCharsets.ISO_8859_1);
+					this.pos += length;
+					try {
+						return new JsonNumber(new BigDecimal(text));
+					} catch (NumberFormatException e) {
+						throw this.error("Invalid decimal number");
+					}
+				case STRING:
+					return new JsonElement(JsonElement.Types.JSON_STRING, this.string(argument));
+				case ARRAY:
+					JsonArray array = new JsonArray();
+					for (long i = 0; i < argument; i++) {
+						JsonElement child = this.read();
+						child.setParent(array);
+						array.add(child);
+					}
+					return array;
+				case OBJECT:
+					JsonObject object = new JsonObject();
+					for (long i = 0; i < argument; i++) {
+						String key = this.key();
+						JsonElement child = this.read();
+						child.setParent(object);
+						object.add(key, child);
+					}
+					return object;
+				default:
+					throw this.error("Key found outside an object");
+			}
+		}
+
+		private JsonElement simple(int info) {
+			switch (info) {
+				case FALSE:
+					return new JsonElement(JsonElement.Types.JSON_BOOLEAN, "false");
+				case TRUE:
+					return new JsonElement(JsonElement.Types.JSON_BOOLEAN, "true");
+				case NULL:
+					return new JsonElement(JsonElement.Types.JSON_NULL, null);
+				case FLOAT:
+					return new JsonNumber(this.finite(Float.intBitsToFloat((int) this.fixed(4))));
+				case DOUBLE:
+					return new JsonNumber(this.finite(Double.longBitsToDouble(this.fixed(8))));
+				case LONG_ARRAY:
+				case DOUBLE_ARRAY:
+					int head = this.next();
+					if (head >>> 5 != UNSIGNED) throw this.error("Invalid array length");
+					int count = this.length(this.argument(head & 0x1F));
+					if (info == DOUBLE_ARRAY) {
+						double[] values = new double[count];
+						for (int i = 0; i < count; i++) values[i] = this.finite(Double.longBitsToDouble(this.fixed(8)));
+						return new JsonNumberArray(values, count);
+					}
+					long[] values = new long[count];
+					for (int i = 0; i < count; i++) {
+						int item = this.next();
+						long argument = this.argument(item & 0x1F);
+						if (item >>> 5 == UNSIGNED) values[i] = argument;
+						else if (item >>> 5 == NEGATIVE) values[i] = ~argument;
+						else throw this.error("Integer expected");
+					}
+					return new JsonNumberArray(values, count);
+				default:
+					throw this.error("Invalid simple value " + info);
+			}
+		}
+
+		/**
+		 * Return the value if it is a JSON number, NaN and infinite values are found only in a corrupted input.
+		 */
+		private double finite(double value) {
+			if (!Double.isFinite(value)) throw this.error("Invalid number " + value);
+			return value;
+		}
+
+		private String key() {
+			int head = this.next();
+			long argument = this.argument(head & 0x1F);
+			if (head >>> 5 == KEY) {
+				// an 8 byte argument can be negative as a long
+				if (argument < 0 || argument >= this.keys.size()) throw this.error("Invalid key reference");
+				return this.keys.get((int) argument);
+			}
+			if (head >>> 5 != STRING) throw this.error("Key expected");
+			String key = this.string(argument);
+			if (this.keys.size() < MAX_KEYS) this.keys.add(key);
+			return key;
+		}
+
+		private String string(long argument) {
+			int length = this.length(argument);
+			String result = new String(this.bytes, this.pos, length, StandardCharsets.UTF_8);
+			this.pos += length;
+			return result;
+		}
+
+		/**
+		 * Check that the argument is the length of bytes available in the input.
+		 */
+		private int length(long argument) {
+			if (argument < 0 || argument > this.end - this.pos) throw this.error("Length out of the input");
+			return (int) argument;
+		}
+
+		private long argument(int info) {
+			if (info < 24) return info;
+			switch (info) {
+				case 24:
+					return this.fixed(1);
+				case 25:
+					return this.fixed(2);
+				case 26:
+					return this.fixed(4);
+				case 27:
+					return this.fixed(8);
+				default:
+					throw this.error("Invalid argument " + info);
+			}
+		}
+
+		private long fixed(int count) {
+			if (this.pos + count > this.end) throw this.error("Unexpected end of input");
+			long value = 0;
+			for (int i = 0; i < count; i++) value = (value << 8) | (this.bytes[this.pos++] & 0xFF);
+			return value;
+		}
+
+		private int next() {
+			if (this.pos >= this.end) throw this.error("Unexpected end of input");
+			return this.bytes[this.pos++] & 0xFF;
+		}
+
+		private UnsupportedOperationException error(String message) {
+			return new UnsupportedOperationException(String.format("%s at position %d", message, this.pos));
+		}
+	}
+}
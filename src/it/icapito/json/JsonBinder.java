@@ -0,0 +1,954 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Binding between JSON objects and Java records or classes.
+ * The binder of a class is built once, the first time it is requested, with a MethodHandle for
+ * the constructor and for every property, so binding an object does not use reflection.
+ * The properties of a record are its components, the properties of a class are its instance fields
+ * (not static nor transient), read and written with the public getter and setter when present.
+ * A class needs a constructor without parameters; the final fields without setter are only written.
+ * Supported property types are the primitive types and their wrappers, String, BigDecimal, BigInteger,
+ * enums, arrays, List, Set and Collection, Map with String keys, JsonElement and other bound classes.
+ * Unknown keys are ignored, missing keys and null values leave the default value of the property.
+ *
+ * <pre>
+ * record Point(int x, int y) {}
+ * Point point = JsonBinder.of(Point.class).parse("{\"x\":1,\"y\":2}");
+ * String json = JsonBinder.of(Point.class).toJsonString(point);
+ * </pre>
+ *
+ * @author BlackCodec
+ *
+ */
+public final class JsonBinder<T> {
+
+	private static final ClassValue<JsonBinder<?>> BINDERS = new ClassValue<JsonBinder<?>>() {
+		@Override
+		protected JsonBinder<?> computeValue(Class<?> type) { return new JsonBinder<>(type); }
+	};
+
+	private final Class<T> type;
+	private final Property[] properties;
+	private final Map<String, Property> names = new HashMap<>();
+	// the canonical constructor spread over an Object[] for records, the constructor without parameters for classes
+	private final MethodHandle constructor;
+	private final boolean record;
+	// the values of the record components not found
+	private final Object[] defaults;
+
+	private JsonBinder(Class<T> type) throws UnsupportedOperationException {
+		this.type = type;
+		if (type.isInterface() || type.isPrimitive() || type.isArray() || Modifier.isAbstract(type.getModifiers()))
+			throw new UnsupportedOperationException(String.format("Class %s cannot be bound", type.getName()));
+		MethodHandles.Lookup lookup;
+		try {
+			lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException(String.format("Class %s is not accessible", type.getName()), e);
+		}
+		this.record = type.isRecord();
+		List<Property> properties = new ArrayList<>();
+		try {
+			if (this.record) {
+				RecordComponent[] components = type.getRecordComponents();
+				Class<?>[] parameters = new Class<?>[components.length];
+				this.defaults = new Object[components.length];
+				for (int i = 0; i < components.length; i++) {
+					RecordComponent component = components[i];
+					parameters[i] = component.getType();
+					Codec codec = codec(component.getGenericType());
+					this.defaults[i] = codec.empty();
+					MethodHandle getter = lookup.unreflect(component.getAccessor());
+					properties.add(new Property(component.getName(), codec, generic(getter), null, i));
+				}
+				this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class, parameters))
+						.asSpreader(Object[].class, parameters.length)
+						.asType(MethodType.methodType(Object.class, Object[].class));
+			} else {
+				this.defaults = null;
+				this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+				for (Field field: fields(type)) {
+					Codec codec = codec(field.getGenericType());
+					MethodHandle getter = accessor(lookup, type, field, true);
+					MethodHandle setter = accessor(lookup, type, field, false);
+					properties.add(new Property(field.getName(), codec, generic(getter), setter != null ? generic(setter) : null, -1));
+				}
+			}
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new UnsupportedOperationException(String.format("Class %s cannot be bound: %s", type.getName(), e.getMessage()), e);
+		}
+		this.properties = properties.toArray(new Property[0]);
+		for (Property property: this.properties) this.names.put(property.name, property);
+	}
+
+	/**
+	 * Return the binder of the specified class, built the first time it is requested.
+	 *
+	 * @param <T>  the bound class
+	 * @param type the record or class to bind
+	 * @return the binder of the class
+	 * @throws UnsupportedOperationException if the class or the type of a property cannot be bound
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> JsonBinder<T> of(Class<T> type) throws UnsupportedOperationException { return (JsonBinder<T>) BINDERS.get(type); }
+
+	/**
+	 * Return the bound class.
+	 *
+	 * @return the class of the objects created
+	 */
+	public Class<T> type() { return this.type; }
+
+	/**
+	 * Return a new instance with the values of the JsonObject.
+	 * Only the keys of the properties are read, so a lazy JsonObject decodes only them.
+	 *
+	 * @param object the JsonObject to bind
+	 * @return the new instance
+	 * @throws UnsupportedOperationException if a value cannot be converted to the type of its property
+	 */
+	public T bind(JsonObject object) throws UnsupportedOperationException {
+		if (this.record) {
+			Object[] arguments = this.defaults.clone();
+			for (Property property: this.properties) {
+				JsonElement value = object.get(property.name);
+				if (value != null) arguments[property.index] = property.read(value);
+			}
+			return this.create(arguments);
+		}
+		T instance = this.create();
+		for (Property property: this.properties) {
+			JsonElement value = object.get(property.name);
+			if (value != null && property.setter != null) property.set(instance, property.read(value));
+		}
+		return instance;
+	}
+
+	/**
+	 * Return a new instance with the values of the JSON object contained in the string.
+	 * The tokens are bound while they are read, without building the JsonObject.
+	 *
+	 * @param jsonString a string that contains the JSON object
+	 * @return the new instance
+	 * @throws UnsupportedOperationException if the string does not contain a valid JSON object or
+	 * a value cannot be converted to the type of its property
+	 */
+	public T parse(String jsonString) throws UnsupportedOperationException {
+		// the buffer is not larger than the string
+		try (JsonReader reader = new JsonReader(new StringReader(jsonString), Math.max(16, Math.min(jsonString.length(), JsonReader.DEFAULT_BUFFER_SIZE)))) {
+			T result = this.read(reader);
+			if (reader.next() != JsonReader.Token.END_DOCUMENT) throw new UnsupportedOperationException("Unexpected content after JsonObject");
+			return result;
+		} catch (IOException e) {
+			// StringReader does not raise IOException
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Return a new instance with the values of the next JSON object of the reader.
+	 *
+	 * @param reader the reader positioned before the JSON object
+	 * @return the new instance
+	 * @throws IOException if the reader fails
+	 * @throws UnsupportedOperationException if the reader does not contain a valid JSON object or
+	 * a value cannot be converted to the type of its property
+	 */
+	public T read(JsonReader reader) throws IOException, UnsupportedOperationException {
+		if (reader.next() != JsonReader.Token.START_OBJECT) throw mismatch("JsonObject", reader.token().name(), this.type.getSimpleName());
+		return this.readObject(reader);
+	}
+
+	/**
+	 * Return a new JsonObject with the values of the properties of the instance.
+	 *
+	 * @param value the instance to convert
+	 * @return the JsonObject that represents the instance
+	 */
+	public JsonObject toJson(T value) {
+		JsonObject object = new JsonObject();
+		for (Property property: this.properties) {
+			Object current = property.get(value);
+			JsonElement element = current != null ? property.codec.element(current) : new JsonElement(JsonElement.Types.JSON_NULL, null);
+			attach(element, object);
+			object.add(property.name, element);
+		}
+		return object;
+	}
+
+	/**
+	 * Write the JSON object that represents the instance, without building the JsonObject.
+	 *
+	 * @param value the instance to write
+	 * @param out   where to write the JSON object
+	 * @throws IOException if the output fails
+	 */
+	public void write(T value, Appendable out) throws IOException {
+		out.append('{');
+		for (int i = 0; i < this.properties.length; i++) {
+			Property property = this.properties[i];
+			if (i > 0) out.append(',');
+			out.append(property.prefix);
+			Object current = property.get(value);
+			if (current == null) out.append("null");
+			else property.codec.write(current, out);
+		}
+		out.append('}');
+	}
+
+	/**
+	 * Return the JSON object that represents the instance as a string.
+	 *
+	 * @param value the instance to write
+	 * @return the JSON text of the instance
+	 */
+	public String toJsonString(T value) {
+		StringBuilder builder = new StringBuilder();
+		try {
+			this.write(value, builder);
+		} catch (IOException e) {
+			// StringBuilder does not raise IOException
+			throw new IllegalStateException(e);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Bind the fields of the object of the reader, the current token must be START_OBJECT.
+	 */
+	private T readObject(JsonReader reader) throws IOException {
+		Object[] arguments = this.record ? this.defaults.clone() : null;
+		T instance = this.record ? null : this.create();
+		while (reader.next() == JsonReader.Token.NAME) {
+			Property property = this.names.get(reader.text());
+			boolean bound = property != null && (this.record || property.setter != null);
+			if (!bound) {
+				if (reader.next().isStart()) reader.skipChildren();
+				continue;
+			}
+			reader.next();
+			if (this.record) arguments[property.index] = property.read(reader);
+			else property.set(instance, property.read(reader));
+		}
+		return this.record ? this.create(arguments) : instance;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T create(Object[] arguments) {
+		try {
+			return (T) (Object) this.constructor.invokeExact(arguments);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private T create() {
+		try {
+			return (T) (Object) this.constructor.invokeExact();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Return the fields bound for a class, the fields of the super classes first.
+	 */
+	private static List<Field> fields(Class<?> type) {
+		List<Field> fields = type.getSuperclass() != null && type.getSuperclass() != Object.class ? fields(type.getSuperclass()) : new ArrayList<>();
+		for (Field field: type.getDeclaredFields()) {
+			int modifiers = field.getModifiers();
+			if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) fields.add(field);
+		}
+		return fields;
+	}
+
+	/**
+	 * Return the public getter or setter of the field, or a MethodHandle that reads or writes the field.
+	 *
+	 * @return the accessor or null for the setter of a final field
+	 */
+	private static MethodHandle accessor(MethodHandles.Lookup lookup, Class<?> type, Field field, boolean getter) throws IllegalAccessException {
+		String name = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+		try {
+			if (getter) {
+				try {
+					return lookup.findVirtual(type, "get" + name, MethodType.methodType(field.getType()));
+				} catch (NoSuchMethodException e) {
+					if (field.getType() != boolean.class) throw e;
+					return lookup.findVirtual(type, "is" + name, MethodType.methodType(boolean.class));
+				}
+			}
+			return lookup.findVirtual(type, "set" + name, MethodType.methodType(void.class, field.getType()));
+		} catch (NoSuchMethodException e) {
+			if (getter) return lookup.unreflectGetter(field);
+			return Modifier.isFinal(field.getModifiers()) ? null : lookup.unreflectSetter(field);
+		}
+	}
+
+	/**
+	 * Adapt a getter to (Object)Object or a setter to (Object,Object)void, so they can be called with invokeExact.
+	 */
+	private static MethodHandle generic(MethodHandle handle) {
+		MethodType type = handle.type();
+		return handle.asType(type.returnType() == void.class ? MethodType.methodType(void.class, Object.class, Object.class) : MethodType.methodType(Object.class, Object.class));
+	}
+
+	/**
+	 * Set the parent of an element added to a new container if it has no parent and it is not frozen.
+	 */
+	private static void attach(JsonElement element, JsonElement container) {
+		if (element.parent() == null && !element.isFrozen()) element.setParent(container);
+	}
+
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException) return (RuntimeException) e;
+		if (e instanceof Error) throw (Error) e;
+		return new IllegalStateException(e);
+	}
+
+	private static UnsupportedOperationException mismatch(String expected, String found, String property) {
+		return new UnsupportedOperationException(String.format("%s expected for %s but found %s", expected, property, found));
+	}
+
+	/**
+	 * Return the codec for a property type.
+	 */
+	private static Codec codec(Type type) throws UnsupportedOperationException {
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterized = (ParameterizedType) type;
+			Class<?> raw = (Class<?>) parameterized.getRawType();
+			Type[] arguments = parameterized.getActualTypeArguments();
+			if (raw == List.class || raw == Collection.class || raw == Iterable.class || raw == ArrayList.class)
+				return new CollectionCodec(codec(arguments[0]), ArrayList::new);
+			if (raw == Set.class || raw == LinkedHashSet.class)
+				return new CollectionCodec(codec(arguments[0]), LinkedHashSet::new);
+			if ((raw == Map.class || raw == LinkedHashMap.class) && arguments[0] == String.class)
+				return new MapCodec(codec(arguments[1]));
+		} else if (type instanceof Class) {
+			Class<?> raw = (Class<?>) type;
+			Scalar scalar = Scalar.of(raw);
+			if (scalar != null) return new ScalarCodec(scalar, raw.isPrimitive());
+			if (raw.isEnum()) return new EnumCodec(raw);
+			if (JsonElement.class.isAssignableFrom(raw)) return new ElementCodec(raw);
+			if (raw.isArray()) return new ArrayCodec(raw, codec(raw.getComponentType()));
+			if (!raw.isInterface() && !raw.isPrimitive() && raw != Object.class && !Collection.class.isAssignableFrom(raw) && !Map.class.isAssignableFrom(raw))
+				return new ObjectCodec(raw);
+		}
+		throw new UnsupportedOperationException(String.format("Type %s is not supported by JsonBinder", type.getTypeName()));
+	}
+
+	/**
+	 * A property of the bound class with its accessors and the codec of its type.
+	 */
+	private static final class Property {
+
+		private final String name;
+		// the name written with quotation marks and colon
+		private final String prefix;
+		private final Codec codec;
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+		// the position in the canonical constructor of a record
+		private final int index;
+
+		Property(String name, Codec codec, MethodHandle getter, MethodHandle setter, int index) {
+			this.name = name;
+			this.prefix = '"' + JsonStrings.encode(name) + "\":";
+			this.codec = codec;
+			this.getter = getter;
+			this.setter = setter;
+			this.index = index;
+		}
+
+		Object get(Object instance) {
+			try {
+				return (Object) this.getter.invokeExact(instance);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		void set(Object instance, Object value) {
+			try {
+				this.setter.invokeExact(instance, value);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		Object read(JsonElement element) { return this.codec.readNullable(element, this.name); }
+
+		Object read(JsonReader reader) throws IOException { return this.codec.readNullable(reader, this.name); }
+	}
+
+	/**
+	 * Conversion between the values of a type and the JSON values.
+	 */
+	private abstract static class Codec {
+
+		/**
+		 * Return the value of a JsonElement that is not JSON_NULL.
+		 */
+		abstract Object read(JsonElement element, String property);
+
+		/**
+		 * Return the value that starts at the current token of the reader, that is not NULL.
+		 */
+		abstract Object read(JsonReader reader, String property) throws IOException;
+
+		/**
+		 * Return the JsonElement of a value that is not null.
+		 */
+		abstract JsonElement element(Object value);
+
+		/**
+		 * Write the JSON value of a value that is not null.
+		 */
+		abstract void write(Object value, Appendable out) throws IOException;
+
+		/**
+		 * Return the value of a JSON null or of a missing key.
+		 */
+		Object empty() { return null; }
+
+		Object readNullable(JsonElement element, String property) {
+			return element.type() == JsonElement.Types.JSON_NULL && !(this instanceof ElementCodec) ? this.empty() : this.read(element, property);
+		}
+
+		Object readNullable(JsonReader reader, String property) throws IOException {
+			return reader.token() == JsonReader.Token.NULL && !(this instanceof ElementCodec) ? this.empty() : this.read(reader, property);
+		}
+
+		void writeNullable(Object value, Appendable out) throws IOException {
+			if (value == null) out.append("null");
+			else this.write(value, out);
+		}
+
+		JsonElement elementNullable(Object value) { return value == null ? new JsonElement(JsonElement.Types.JSON_NULL, null) : this.element(value); }
+	}
+
+	private enum Scalar {
+
+		BOOLEAN(Boolean.FALSE),
+		BYTE((byte) 0),
+		SHORT((short) 0),
+		INT(0),
+		LONG(0L),
+		FLOAT(0f),
+		DOUBLE(0d),
+		CHAR('\0'),
+		STRING(null),
+		DECIMAL(null),
+		BIG_INTEGER(null);
+
+		// the default value of the primitive type
+		private final Object zero;
+
+		Scalar(Object zero) { this.zero = zero; }
+
+		static Scalar of(Class<?> type) {
+			if (type == boolean.class || type == Boolean.class) return BOOLEAN;
+			if (type == byte.class || type == Byte.class) return BYTE;
+			if (type == short.class || type == Short.class) return SHORT;
+			if (type == int.class || type == Integer.class) return INT;
+			if (type == long.class || type == Long.class) return LONG;
+			if (type == float.class || type == Float.class) return FLOAT;
+			if (type == double.class || type == Double.class) return DOUBLE;
+			if (type == char.class || type == Character.class) return CHAR;
+			if (type == String.class) return STRING;
+			if (type == BigDecimal.class) return DECIMAL;
+			if (type == BigInteger.class) return BIG_INTEGER;
+			return null;
+		}
+
+		boolean isNumber() { return this != BOOLEAN && this != CHAR && this != STRING; }
+	}
+
+	private static final class ScalarCodec extends Codec {
+
+		private final Scalar scalar;
+		private final boolean primitive;
+
+		ScalarCodec(Scalar scalar, boolean primitive) {
+			this.scalar = scalar;
+			this.primitive = primitive;
+		}
+
+		@Override
+		Object empty() { return this.primitive ? this.scalar.zero : null; }
+
+		@Override
+		Object read(JsonElement element, String property) {
+			switch (element.type()) {
+				case JSON_NUMBER:
+					if (!this.scalar.isNumber()) break;
+					switch (this.scalar) {
+						case FLOAT:
+							return (float) element.doubleValue();
+						case DOUBLE:
+							return element.doubleValue();
+						case DECIMAL:
+							return element.decimalValue();
+						case BIG_INTEGER:
+							return this.integer(element.decimalValue(), property);
+						default:
+							if (element instanceof JsonNumber && ((JsonNumber) element).isLong()) return this.narrow(element.longValue(), property);
+							return this.narrow(this.exact(element.decimalValue(), property), property);
+					}
+				case JSON_STRING:
+					if (this.scalar == Scalar.STRING || this.scalar == Scalar.CHAR) return this.text(JsonStrings.decode(element.value()), property);
+					break;
+				case JSON_BOOLEAN:
+					if (this.scalar == Scalar.BOOLEAN) return "true".equals(element.value());
+					break;
+				default:
+					break;
+			}
+			throw mismatch(this.scalar.name(), element.type().name(), property);
+		}
+
+		@Override
+		Object read(JsonReader reader, String property) throws IOException {
+			switch (reader.token()) {
+				case NUMBER:
+					if (this.scalar.isNumber()) return this.number(reader.text(), property);
+					break;
+				case STRING:
+					if (this.scalar == Scalar.STRING || this.scalar == Scalar.CHAR) return this.text(JsonStrings.decode(reader.text()), property);
+					break;
+				case BOOLEAN:
+					if (this.scalar == Scalar.BOOLEAN) return "true".equals(reader.text());
+					break;
+				default:
+					break;
+			}
+			throw mismatch(this.scalar.name(), reader.token().name(), property);
+		}
+
+		@Override
+		JsonElement element(Object value) {
+			switch (this.scalar) {
+				case BOOLEAN:
+					return new JsonElement(JsonElement.Types.JSON_BOOLEAN, value.toString());
+				case CHAR:
+				case STRING:
+					return new JsonElement(JsonElement.Types.JSON_STRING, JsonStrings.encode(value.toString()));
+				case FLOAT:
+					return JsonNumber.parse(finite(Float.toString((Float) value)));
+				case DOUBLE:
+					return JsonNumber.parse(finite(JsonNumbers.toString((Double) value)));
+				case DECIMAL:
+					return new JsonNumber((BigDecimal) value);
+				case BIG_INTEGER:
+					return new JsonNumber(new BigDecimal((BigInteger) value));
+				default:
+					return new JsonNumber(((Number) value).longValue());
+			}
+		}
+
+		@Override
+		void write(Object value, Appendable out) throws IOException {
+			switch (this.scalar) {
+				case CHAR:
+				case STRING:
+					out.append('"');
+					JsonStrings.encode(value.toString(), out);
+					out.append('"');
+					break;
+				case FLOAT:
+					out.append(finite(Float.toString((Float) value)));
+					break;
+				case DOUBLE:
+					out.append(finite(JsonNumbers.toString((Double) value)));
+					break;
+				case LONG:
+				case INT:
+				case SHORT:
+				case BYTE:
+					if (out instanceof StringBuilder) ((StringBuilder) out).append(((Number) value).longValue());
+					else out.append(value.toString());
+					break;
+				default:
+					out.append(value.toString());
+			}
+		}
+
+		private Object number(String text, String property) {
+			switch (this.scalar) {
+				case FLOAT:
+					return Float.parseFloat(text);
+				case DOUBLE:
+					return Double.parseDouble(text);
+				case DECIMAL:
+					return new BigDecimal(text);
+				case BIG_INTEGER:
+					return this.integer(new BigDecimal(text), property);
+				default:
+					try {
+						return this.narrow(Long.parseLong(text), property);
+					} catch (NumberFormatException e) {
+						return this.narrow(this.exact(new BigDecimal(text), property), property);
+					}
+			}
+		}
+
+		private BigInteger integer(BigDecimal value, String property) {
+			try {
+				return value.toBigIntegerExact();
+			} catch (ArithmeticException e) {
+				throw new UnsupportedOperationException(String.format("Integer expected for %s but found %s", property, value));
+			}
+		}
+
+		private long exact(BigDecimal value, String property) {
+			BigInteger integer = this.integer(value, property);
+			try {
+				return integer.longValueExact();
+			} catch (ArithmeticException e) {
+				throw new UnsupportedOperationException(String.format("Value %s out of range of %s for %s", integer, this.scalar.name(), property));
+			}
+		}
+
+		private Object narrow(long value, String property) {
+			switch (this.scalar) {
+				case BYTE:
+					if (value == (byte) value) return (byte) value;
+					break;
+				case SHORT:
+					if (value == (short) value) return (short) value;
+					break;
+				case INT:
+					if (value == (int) value) return (int) value;
+					break;
+				case LONG:
+					return value;
+				case BIG_INTEGER:
+					return BigInteger.valueOf(value);
+				default:
+					break;
+			}
+			throw new UnsupportedOperationException(String.format("Value %d out of range of %s for %s", value, this.scalar.name(), property));
+		}
+
+		private Object text(String value, String property) {
+			if (this.scalar == Scalar.STRING) return value;
+			if (value.length() != 1) throw mismatch(Scalar.CHAR.name(), "a string of " + value.length() + " chars", property);
+			return value.charAt(0);
+		}
+
+		private static String finite(String text) {
+			if (text.equals("NaN") || text.endsWith("Infinity")) throw new UnsupportedOperationException(String.format("JSON numbers cannot be %s", text));
+			return text;
+		}
+	}
+
+	private static final class EnumCodec extends Codec {
+
+		private final Class<?> type;
+		private final Map<String, Object> constants = new HashMap<>();
+
+		EnumCodec(Class<?> type) {
+			this.type = type;
+			for (Object constant: type.getEnumConstants()) this.constants.put(((Enum<?>) constant).name(), constant);
+		}
+
+		@Override
+		Object read(JsonElement element, String property) {
+			if (element.type() != JsonElement.Types.JSON_STRING) throw mismatch(this.type.getSimpleName(), element.type().name(), property);
+			return this.constant(JsonStrings.decode(element.value()), property);
+		}
+
+		@Override
+		Object read(JsonReader reader, String property) {
+			if (reader.token() != JsonReader.Token.STRING) throw mismatch(this.type.getSimpleName(), reader.token().name(), property);
+			return this.constant(JsonStrings.decode(reader.text()), property);
+		}
+
+		@Override
+		JsonElement element(Object value) { return new JsonElement(JsonElement.Types.JSON_STRING, JsonStrings.encode(((Enum<?>) value).name())); }
+
+		@Override
+		void write(Object value, Appendable out) throws IOException {
+			out.append('"');
+			JsonStrings.encode(((Enum<?>) value).name(), out);
+			out.append('"');
+		}
+
+		private Object constant(String name, String property) {
+			Object constant = this.constants.get(name);
+			if (constant == null) throw new UnsupportedOperationException(String.format("%s is not a constant of %s for %s", name, this.type.getSimpleName(), property));
+			return constant;
+		}
+	}
+
+	private static final class ElementCodec extends Codec {
+
+		private final Class<?> type;
+
+		ElementCodec(Class<?> type) { this.type = type; }
+
+		@Override
+		Object read(JsonElement element, String property) {
+			if (!this.type.isInstance(element)) throw mismatch(this.type.getSimpleName(), element.type().name(), property);
+			return element;
+		}
+
+		@Override
+		Object read(JsonReader reader, String property) throws IOException { return this.read(JsonService.readElement(reader), property); }
+
+		@Override
+		JsonElement element(Object value) { return (JsonElement) value; }
+
+		@Override
+		void write(Object value, Appendable out) throws IOException { ((JsonElement) value).writeTo(out); }
+	}
+
+	private static final class CollectionCodec extends Codec {
+
+		private final Codec elements;
+		private final Supplier<Collection<Object>> factory;
+
+		CollectionCodec(Codec elements, Supplier<Collection<Object>> factory) {
+			this.elements = elements;
+			this.factory = factory;
+		}
+
+		@Override
+		Object read(JsonElement element, String property) {
+			if (!(element instanceof JsonArray)) throw mismatch("JsonArray", element.type().name(), property);
+			JsonArray array = (JsonArray) element;
+			Collection<Object> result = this.factory.get();
+			for (int i = 0; i < array.size(); i++) result.add(this.elements.readNullable(array.get(i), property));
+			return result;
+		}
+
+		@Override
+		Object read(JsonReader reader, String property) throws IOException {
+			if (reader.token() != JsonReader.Token.START_ARRAY) throw mismatch("JsonArray", reader.token().name(), property);
+			Collection<Object> result = this.factory.get();
+			while (reader.next() != JsonReader.Token.END_ARRAY) result.add(this.elements.readNullable(reader, property));
+			return result;
+		}
+
+		@Override
+		JsonElement element(Object value) {
+			JsonArray array = new JsonArray();
+			for (Object item: (Collection<?>) value) {
+				JsonElement child = this.elements.elementNullable(item);
+				attach(child, array);
+				array.add(child);
+			}
+			return array;
+		}
+
+		@Override
+		void write(Object value, Appendable out) throws IOException {
+			out.append('[');
+			boolean first = true;
+			for (Object item: (Collection<?>) value) {
+				if (!first) out.append(',');
+				this.elements.writeNullable(item, out);
+				first = false;
+			}
+			out.append(']');
+		}
+	}
+
+	private static final class ArrayCodec extends Codec {
+
+		private final Codec elements;
+		private final MethodHandle constructor;
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+		private final MethodHandle length;
+
+		ArrayCodec(Class<?> type, Codec elements) {
+			this.elements = elements;
+			this.constructor = MethodHandles.arrayConstructor(type).asType(MethodType.methodType(Object.class, int.class));
+			this.getter = MethodHandles.arrayElementGetter(type).asType(MethodType.methodType(Object.class, Object.class, int.class));
+			this.setter = MethodHandles.arrayElementSetter(type).asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+			this.length = MethodHandles.arrayLength(type).asType(MethodType.methodType(int.class, Object.class));
+		}
+
+		@Override
+		Object read(JsonElement element, String property) {
+			if (!(element instanceof JsonArray)) throw mismatch("JsonArray", element.type().name(), property);
+			JsonArray array = (JsonArray) element;
+			try {
+				Object result = (Object) this.constructor.invokeExact(array.size());
+				for (int i = 0; i < array.size(); i++) this.setter.invokeExact(result, i, this.item(this.elements.readNullable(array.get(i), property)));
+				return result;
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		@Override
+		Object read(JsonReader reader, String property) throws IOException {
+			if (reader.token() != JsonReader.Token.START_ARRAY) throw mismatch("JsonArray", reader.token().name(), property);
+			List<Object> items = new ArrayList<>();
+			while (reader.next() != JsonReader.Token.END_ARRAY) items.add(this.item(this.elements.readNullable(reader, property)));
+			try {
+				Object result = (Object) this.constructor.invokeExact(items.size());
+				for (int i = 0; i < items.size(); i++) this.setter.invokeExact(result, i, items.get(i));
+				return result;
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		@Override
+		JsonElement element(Object value) {
+			JsonArray array = new JsonArray();
+			try {
+				int size = (int) this.length.invokeExact(value);
+				for (int i = 0; i < size; i++) {
+					JsonElement child = this.elements.elementNullable((Object) this.getter.invokeExact(value, i));
+					attach(child, array);
+					array.add(child);
+				}
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+			return array;
+		}
+
+		@Override
+		void write(Object value, Appendable out) throws IOException {
+			out.append('[');
+			try {
+				int size = (int) this.length.invokeExact(value);
+				for (int i = 0; i < size; i++) {
+					if (i > 0) out.append(',');
+					this.elements.writeNullable((Object) this.getter.invokeExact(value, i), out);
+				}
+			} catch (IOException e) {
+				throw e;
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+			out.append(']');
+		}
+
+		/**
+		 * Return the value to store in the array, the zero of the primitive components for null.
+		 */
+		private Object item(Object value) { return value != null ? value : this.elements.empty(); }
+	}
+
+	private static final class MapCodec extends Codec {
+
+		private final Codec values;
+
+		MapCodec(Codec values) { this.values = values; }
+
+		@Override
+		Object read(JsonElement element, String property) {
+			if (!(element instanceof JsonObject)) throw mismatch("JsonObject", element.type().name(), property);
+			JsonObject object = (JsonObject) element;
+			Map<String, Object> result = new LinkedHashMap<>();
+			for (int i = 0; i < object.size(); i++) result.put(JsonStrings.decode(object.keyAt(i)), this.values.readNullable(object.valueAt(i), property));
+			return result;
+		}
+
+		@Override
+		Object read(JsonReader reader, String property) throws IOException {
+			if (reader.token() != JsonReader.Token.START_OBJECT) throw mismatch("JsonObject", reader.token().name(), property);
+			Map<String, Object> result = new LinkedHashMap<>();
+			while (reader.next() == JsonReader.Token.NAME) {
+				String key = JsonStrings.decode(reader.text());
+				reader.next();
+				result.put(key, this.values.readNullable(reader, property));
+			}
+			return result;
+		}
+
+		@Override
+		JsonElement element(Object value) {
+			JsonObject object = new JsonObject();
+			for (Map.Entry<?, ?> entry: ((Map<?, ?>) value).entrySet()) {
+				JsonElement child = this.values.elementNullable(entry.getValue());
+				attach(child, object);
+				object.add(JsonStrings.encode((String) entry.getKey()), child);
+			}
+			return object;
+		}
+
+		@Override
+		void write(Object value, Appendable out) throws IOException {
+			out.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> entry: ((Map<?, ?>) value).entrySet()) {
+				if (!first) out.append(',');
+				out.append('"');
+				JsonStrings.encode((String) entry.getKey(), out);
+				out.append("\":");
+				this.values.writeNullable(entry.getValue(), out);
+				first = false;
+			}
+			out.append('}');
+		}
+	}
+
+	private static final class ObjectCodec extends Codec {
+
+		private final Class<?> type;
+		// resolved when used, so a class can contain properties of its own type
+		private JsonBinder<Object> binder;
+
+		ObjectCodec(Class<?> type) { this.type = type; }
+
+		@Override
+		Object read(JsonElement element, String property) {
+			if (!(element instanceof JsonObject)) throw mismatch(this.type.getSimpleName(), element.type().name(), property);
+			return this.binder().bind((JsonObject) element);
+		}
+
+		@Override
+		Object read(JsonReader reader, String property) throws IOException {
+			if (reader.token() != JsonReader.Token.START_OBJECT) throw mismatch(this.type.getSimpleName(), reader.token().name(), property);
+			return this.binder().readObject(reader);
+		}
+
+		@Override
+		JsonElement element(Object value) { return this.binder().toJson(value); }
+
+		@Override
+		void write(Object value, Appendable out) throws IOException { this.binder().write(value, out); }
+
+		@SuppressWarnings("unchecked")
+		private JsonBinder<Object> binder() {
+			JsonBinder<Object> binder = this.binder;
+			if (binder == null) this.binder = binder = (JsonBinder<Object>) JsonBinder.of(this.type);
+			return binder;
+		}
+	}
+}
@@ -0,0 +1,348 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonNumberArray;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Callbacks called by JsonService.parse(String, JsonHandler) for every token of the document, without
+ * building the tree. Every callback returns the Action for the parser: CONTINUE reads the next token,
+ * SKIP returned by startObject, startArray or key skips the whole value (without validating its content
+ * and without calling any callback for it, not even endObject or endArray), STOP ends the parse at once.
+ * SKIP returned by the other callbacks works as CONTINUE.
+ * The text of strings and keys is passed as is, escape sequences are not decoded.
+ * All the callbacks do nothing and return CONTINUE by default.
+ *
+ * <pre>
+ * JsonService.parse(text, new JsonHandler() {
+ *     public Action key(String name) { return name.equals("password") ? Action.SKIP : Action.CONTINUE; }
+ * });
+ * </pre>
+ *
+ * @see JsonService#parse(String, JsonHandler)
+ * @see TreeBuilder
+ * @see Serializer
+ *
+ * @author BlackCodec
+ *
+ */
+public interface JsonHandler {
+
+	public enum Action {
+
+		// read the next token
+		CONTINUE,
+		// skip the object, the array or the value of the key
+		SKIP,
+		// end the parse
+		STOP;
+	}
+
+	/**
+	 * Called for the open brace of an object.
+	 *
+	 * @return the action for the parser, SKIP skips the whole object
+	 */
+	default Action startObject() { return Action.CONTINUE; }
+
+	/**
+	 * Called for the closing brace of an object.
+	 *
+	 * @return the action for the parser
+	 */
+	default Action endObject() { return Action.CONTINUE; }
+
+	/**
+	 * Called for the open bracket of an array.
+	 *
+	 * @return the action for the parser, SKIP skips the whole array
+	 */
+	default Action startArray() { return Action.CONTINUE; }
+
+	/**
+	 * Called for the closing bracket of an array.
+	 *
+	 * @return the action for the parser
+	 */
+	default Action endArray() { return Action.CONTINUE; }
+
+	/**
+	 * Called for every key of an object, before its value.
+	 *
+	 * @param name the text of the key
+	 * @return the action for the parser, SKIP skips the value of the key
+	 */
+	default Action key(String name) { return Action.CONTINUE; }
+
+	/**
+	 * Called for a string value.
+	 *
+	 * @param text the text between the quotation marks
+	 * @return the action for the parser
+	 */
+	default Action stringValue(String text) { return Action.CONTINUE; }
+
+	/**
+	 * Called for a number that is not an integer or does not fit in a long.
+	 *
+	 * @param text the text of the number
+	 * @return the action for the parser
+	 */
+	default Action numberValue(String text) { return Action.CONTINUE; }
+
+	/**
+	 * Called for an integer that fit in a long, no text is created for it.
+	 * By default it calls numberValue with the text of the value.
+	 *
+	 * @param value the value of the integer
+	 * @return the action for the parser
+	 */
+	default Action longValue(long value) { return this.numberValue(Long.toString(value)); }
+
+	/**
+	 * Called for true and false.
+	 *
+	 * @param value the value read
+	 * @return the action for the parser
+	 */
+	default Action booleanValue(boolean value) { return Action.CONTINUE; }
+
+	/**
+	 * Called for null.
+	 *
+	 * @return the action for the parser
+	 */
+	default Action nullValue() { return Action.CONTINUE; }
+
+	/**
+	 * Handler that builds the same JsonObject returned by JsonService.parse.
+	 * It can be extended to build only a part of the document, for example returning SKIP from key
+	 * before calling super.
+	 *
+	 * @author BlackCodec
+	 *
+	 */
+	public static class TreeBuilder implements JsonHandler {
+
+		// the open containers, a JsonObject or the list of the elements of an array
+		private final List<Object> stack = new ArrayList<>();
+		private final List<String> keys = new ArrayList<>();
+		private String key = null;
+		private JsonObject result = null;
+
+		/**
+		 * Return the object built, available after the closing brace of the root.
+		 *
+		 * @return the root object or null if it is not complete
+		 */
+		public JsonObject result() { return this.result; }
+
+		@Override
+		public Action startObject() { return this.open(new JsonObject()); }
+
+		@Override
+		public Action endObject() { return this.close(this.stack.remove(this.stack.size() - 1)); }
+
+		@Override
+		public Action startArray() { return this.open(new ArrayList<JsonElement>()); }
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Action endArray() {
+			List<JsonElement> elements = (List<JsonElement>) this.stack.remove(this.stack.size() - 1);
+			JsonArray array = JsonNumberArray.of(elements);
+			if (array == null) {
+				array = new JsonArray();
+				for (JsonElement sub: elements) {
+					sub.setParent(array);
+					array.add(sub);
+				}
+			}
+			return this.close(array);
+		}
+
+		@Override
+		public Action key(String name) {
+			this.key = name;
+			return Action.CONTINUE;
+		}
+
+		@Override
+		public Action stringValue(String text) { return this.value(new JsonElement(JsonElement.Types.JSON_STRING, text)); }
+
+		@Override
+		public Action numberValue(String text) { return this.value(JsonNumber.parse(text)); }
+
+		@Override
+		public Action longValue(long value) { return this.value(new JsonNumber(value)); }
+
+		@Override
+		public Action booleanValue(boolean value) { return this.value(new JsonElement(JsonElement.Types.JSON_BOOLEAN, value ? "true" : "false")); }
+
+		@Override
+		public Action nullValue() { return this.value(new JsonElement(JsonElement.Types.JSON_NULL, null)); }
+
+		private Action open(Object container) {
+			// the key of the container is restored when it is closed
+			this.keys.add(this.key);
+			this.stack.add(container);
+			return Action.CONTINUE;
+		}
+
+		private Action close(Object container) {
+			this.key = this.keys.remove(this.keys.size() - 1);
+			if (this.stack.isEmpty()) {
+				this.result = (JsonObject) container;
+				return Action.CONTINUE;
+			}
+			return this.value((JsonElement) container);
+		}
+
+		@SuppressWarnings("unchecked")
+		private Action value(JsonElement element) {
+			Object container = this.stack.get(this.stack.size() - 1);
+			if (container instanceof JsonObject) {
+				JsonObject object = (JsonObject) container;
+				element.setParent(object);
+				object.add(this.key, element);
+			} else {
+				((List<JsonElement>) container).add(element);
+			}
+			return Action.CONTINUE;
+		}
+	}
+
+	/**
+	 * Handler that writes the JSON text of the tokens received to an Appendable, without whitespace as toString,
+	 * with the keys in the order of the document and the numbers with the same text of the input.
+	 * A key is written only with its value, so a subclass can drop a field returning SKIP from key, startObject
+	 * or startArray without calling super, and the output is still a valid document.
+	 * The IOException of the Appendable are raised as UncheckedIOException.
+	 *
+	 * @author BlackCodec
+	 *
+	 */
+	public static class Serializer implements JsonHandler {
+
+		private final Appendable out;
+		// true at the start of the current container, so the next value is written without comma
+		private boolean first = true;
+		private String key = null;
+
+		/**
+		 * Construct a new serializer.
+		 *
+		 * @param out the sink where the JSON text is written
+		 */
+		public Serializer(Appendable out) { this.out = out; }
+
+		@Override
+		public Action startObject() {
+			this.separator();
+			this.write('{');
+			this.first = true;
+			return Action.CONTINUE;
+		}
+
+		@Override
+		public Action endObject() {
+			this.key = null;
+			this.write('}');
+			this.first = false;
+			return Action.CONTINUE;
+		}
+
+		@Override
+		public Action startArray() {
+			this.separator();
+			this.write('[');
+			this.first = true;
+			return Action.CONTINUE;
+		}
+
+		@Override
+		public Action endArray() {
+			this.write(']');
+			this.first = false;
+			return Action.CONTINUE;
+		}
+
+		@Override
+		public Action key(String name) {
+			this.key = name;
+			return Action.CONTINUE;
+		}
+
+		@Override
+		public Action stringValue(String text) {
+			this.separator();
+			try {
+				this.out.append('"').append(text).append('"');
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return Action.CONTINUE;
+		}
+
+		@Override
+		public Action numberValue(String text) { return this.scalar(text); }
+
+		@Override
+		public Action longValue(long value) {
+			this.separator();
+			try {
+				if (this.out instanceof StringBuilder) ((StringBuilder) this.out).append(value);
+				else if (this.out instanceof Utf8Writer) ((Utf8Writer) this.out).writeLong(value);
+				else this.out.append(Long.toString(value));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return Action.CONTINUE;
+		}
+
+		@Override
+		public Action booleanValue(boolean value) { return this.scalar(value ? "true" : "false"); }
+
+		@Override
+		public Action nullValue() { return this.scalar("null"); }
+
+		private Action scalar(String text) {
+			this.separator();
+			try {
+				this.out.append(text);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return Action.CONTINUE;
+		}
+
+		/**
+		 * Write the comma and the pending key before a value.
+		 */
+		private void separator() {
+			try {
+				if (!this.first) this.out.append(',');
+				this.first = false;
+				if (this.key != null) this.out.append('"').append(this.key).append("\":");
+				this.key = null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void write(char c) {
+			try {
+				this.out.append(c);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Class for parse newline delimited JSON (NDJSON or JSON Lines) in parallel.
+ * The input is split in chunks that contains only whole lines, every chunk is
+ * parsed by a different thread and each line must contains a JSON object.
+ * Empty lines are ignored.
+ *
+ * @author BlackCodec
+ *
+ */
+public class JsonLines {
+
+	// size of a chunk, in chars for strings and in bytes for files
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	private JsonLines() {}
+
+	/**
+	 * Return a parallel stream of the JsonObjects contained in the lines of the string.
+	 * The stream is ordered as the lines; call unordered() on it when the order does not matter.
+	 *
+	 * @param input the string that contains the lines
+	 * @return a parallel stream of the JSON objects
+	 * @throws UnsupportedOperationException if a line does not contains a valid JSON object
+	 */
+	public static Stream<JsonObject> stream(String input) throws UnsupportedOperationException {
+		return chunks(input).parallelStream().flatMap(chunk -> parse(input, chunk[0], chunk[1]).stream());
+	}
+
+	/**
+	 * Parse the lines of the string with the specified number of threads and pass every JsonObject to the consumer.
+	 * The consumer is always called from the thread that calls this method, when ordered is true the JSON objects
+	 * are passed in the same order of the lines otherwise as soon as every chunk is parsed.
+	 *
+	 * @param input       the string that contains the lines
+	 * @param parallelism the number of threads used to parse the chunks
+	 * @param ordered     true to receive the JSON objects in the order of the lines
+	 * @param consumer    the consumer of the parsed JSON objects
+	 * @throws UnsupportedOperationException if a line does not contains a valid JSON object
+	 */
+	public static void parse(String input, int parallelism, boolean ordered, Consumer<? super JsonObject> consumer) throws UnsupportedOperationException {
+		List<Callable<List<JsonObject>>> tasks = new ArrayList<>();
+		for (int[] chunk: chunks(input)) tasks.add(() -> parse(input, chunk[0], chunk[1]));
+		try {
+			execute(tasks.iterator(), parallelism, ordered, consumer);
+		} catch (IOException e) {
+			// strings does not raise IOException
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parse the lines of a file that contains UTF-8 text with the specified number of threads and pass
+	 * every JsonObject to the consumer. Every chunk is read and decoded by the thread that parse it.
+	 *
+	 * @param path        the file that contains the lines
+	 * @param parallelism the number of threads used to parse the chunks
+	 * @param ordered     true to receive the JSON objects in the order of the lines
+	 * @param consumer    the consumer of the parsed JSON objects
+	 * @throws IOException if the file cannot be read
+	 * @throws UnsupportedOperationException if a line does not contains a valid JSON object
+	 * @see #parse(String, int, boolean, Consumer)
+	 */
+	public static void parse(Path path, int parallelism, boolean ordered, Consumer<? super JsonObject> consumer) throws IOException, UnsupportedOperationException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			Iterator<Callable<List<JsonObject>>> tasks = new Iterator<Callable<List<JsonObject>>>() {
+				private long start = 0;
+
+				@Override
+				public boolean hasNext() { return this.start < size; }
+
+				@Override
+				public Callable<List<JsonObject>> next() {
+					long chunkStart = this.start;
+					long chunkEnd = lineEnd(channel, Math.min(chunkStart + CHUNK_SIZE, size), size);
+					this.start = chunkEnd;
+					return () -> {
+						ByteBuffer bytes = ByteBuffer.allocate((int) (chunkEnd - chunkStart));
+						while (bytes.hasRemaining()) {
+							if (channel.read(bytes, chunkStart + bytes.position()) < 0) break;
+						}
+						String text = new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8);
+						return parse(text, 0, text.length());
+					};
+				}
+			};
+			execute(tasks, parallelism, ordered, consumer);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Return the position after the first new line byte found from the specified position.
+	 * A new line byte is never part of a UTF-8 multi byte sequence.
+	 *
+	 * @param channel  the file to read
+	 * @param position the position where the search starts
+	 * @param size     the size of the file
+	 * @return the position after the new line or the size of the file if there are no more new lines
+	 */
+	private static long lineEnd(FileChannel channel, long position, long size) {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		try {
+			while (position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read < 0) break;
+				for (int i = 0; i < read; i++) {
+					if (buffer.get(i) == '\n') return position + i + 1;
+				}
+				position += read;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return size;
+	}
+
+	/**
+	 * Execute the tasks on a pool with the specified parallelism and pass the results to the consumer.
+	 * The tasks are created only when submitted and only twice the parallelism of tasks are running at 
+	 * the same time, so the chunks read and the objects parsed and not yet consumed are bounded.
+	 */
+	private static void execute(Iterator<Callable<List<JsonObject>>> tasks, int parallelism, boolean ordered, Consumer<? super JsonObject> consumer) throws IOException {
+		if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be greater than 0");
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		Deque<Future<List<JsonObject>>> running = new ArrayDeque<>();
+		// the completed tasks are queued only when they are taken in completion order
+		CompletionService<List<JsonObject>> completed = ordered ? null : new ExecutorCompletionService<>(pool);
+		try {
+			while (tasks.hasNext()) {
+				if (running.size() >= parallelism * 2) deliver(running, completed, consumer);
+				running.add(completed != null ? completed.submit(tasks.next()) : pool.submit(tasks.next()));
+			}
+			while (!running.isEmpty()) deliver(running, completed, consumer);
+		} finally {
+			for (Future<List<JsonObject>> future: running) future.cancel(true);
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Wait for a task and pass its results to the consumer.
+	 * When the completion service is null the first task submitted is used, otherwise the first completed.
+	 */
+	private static void deliver(Deque<Future<List<JsonObject>>> running, CompletionService<List<JsonObject>> completed, Consumer<? super JsonObject> consumer) throws IOException {
+		try {
+			Future<List<JsonObject>> next = completed != null ? completed.take() : running.peekFirst();
+			running.remove(next);
+			for (JsonObject parsed: next.get()) consumer.accept(parsed);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while parsing", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Split the string in chunks of about CHUNK_SIZE chars that ends at the end of a line.
+	 *
+	 * @param input the string to split
+	 * @return the start and the end index of every chunk
+	 */
+	private static List<int[]> chunks(String input) {
+		List<int[]> chunks = new ArrayList<>();
+		int start = 0;
+		int length = input.length();
+		while (start < length) {
+			int end = start + CHUNK_SIZE < length ? input.indexOf('\n', start + CHUNK_SIZE) : -1;
+			end = end < 0 ? length : end + 1;
+			chunks.add(new int[] { start, end });
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Parse all the lines between start and end.
+	 *
+	 * @param input the string that contains the lines
+	 * @param start the index of the first char of the first line
+	 * @param end   the index after the last char of the last line
+	 * @return the JSON objects of the lines
+	 */
+	private static List<JsonObject> parse(String input, int start, int end) {
+		List<JsonObject> result = new ArrayList<>();
+		while (start < end) {
+			int lineEnd = input.indexOf('\n', start);
+			if (lineEnd < 0 || lineEnd > end) lineEnd = end;
+			if (!isBlank(input, start, lineEnd)) result.add(parseLine(input, start, lineEnd));
+			start = lineEnd + 1;
+		}
+		return result;
+	}
+
+	private static JsonObject parseLine(String input, int start, int end) {
+		Instrumentation.Probe probe = Instrumentation.start(ParseEvent.Source.LINE, end - start);
+		JsonObject parsed;
+		try {
+			parsed = new JsonParser(input, start, end).parseObject();
+		} catch (RuntimeException e) {
+			if (probe != null) probe.failed(e);
+			throw e;
+		}
+		// outside the try, an exception of a listener is not a failure of the parse
+		if (probe != null) probe.parsed(parsed);
+		return parsed;
+	}
+
+	private static boolean isBlank(String input, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			if (c != ' ' && c != '\r' && c != '\t') return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,490 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import it.icapito.json.JsonService.JsonNumber;
+
+/**
+ * Conversion between the text of a JSON number, as defined by RFC 8259, and its value.
+ * The text is read from a String or from the bytes of an UTF-8 document without creating a
+ * substring: integers are accumulated in a long and the numbers with up to 15 significant digits
+ * are converted to the nearest double with the fast path of Clinger and the algorithm of Eisel and
+ * Lemire, only the numbers that need more precision or that overflow are read as BigDecimal.
+ * Doubles are written with the shortest digits that read back to the same value (the Schubfach
+ * algorithm of Giulietti), in the same layout of Double.toString.
+ *
+ * @author BlackCodec
+ *
+ */
+final class JsonNumbers {
+
+	// the most significant digits of a double with all the digits read exactly
+	private static final int DOUBLE_DIGITS = 15;
+	private static final int LONG_DIGITS = 19;
+	// the longest text written for a double, as -1.2345678901234567E-308
+	private static final int MAX_LENGTH = 25;
+	// the chars of the double written by the thread
+	private static final ThreadLocal<char[]> CHARS = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+	// the powers of ten in a long, to count the digits
+	private static final long[] TENS = {
+			1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+			10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+			1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L };
+	// the two digits of the numbers from 00 to 99
+	private static final char[] PAIRS = new char[200];
+	// exact powers of ten for the fast path of Clinger
+	private static final double[] POWERS = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			PAIRS[2 * i] = (char) ('0' + i / 10);
+			PAIRS[2 * i + 1] = (char) ('0' + i % 10);
+		}
+	}
+
+	private JsonNumbers() {}
+
+	/**
+	 * Return a JsonNumber for the text of a JSON number between start and end of a String,
+	 * stored in the smallest form that keeps the value.
+	 *
+	 * @param text  the text that contains the number
+	 * @param start the index of the first char of the number
+	 * @param end   the index after the last char of the number
+	 * @return the JsonNumber that represents the text
+	 * @throws NumberFormatException if the chars are not a JSON number
+	 */
+	static JsonNumber parse(String text, int start, int end) throws NumberFormatException { return parse(text, null, start, end); }
+
+	/**
+	 * Return a JsonNumber for the text of a JSON number between start and end of an UTF-8 document.
+	 *
+	 * @param bytes the bytes that contain the number
+	 * @param start the index of the first byte of the number
+	 * @param end   the index after the last byte of the number
+	 * @return the JsonNumber that represents the text
+	 * @throws NumberFormatException if the bytes are not a JSON number
+	 */
+	static JsonNumber parse(byte[] bytes, int start, int end) throws NumberFormatException { return parse(null, bytes, start, end); }
+
+	/**
+	 * Return the double of the text of a JSON number between start and end of a String.
+	 * NaN is returned when the number is stored as BigDecimal by parse: it has more than 15 significant
+	 * digits, or its value overflows or underflows the range of double.
+	 *
+	 * @param text  the text that contains the number
+	 * @param start the index of the first char of the number
+	 * @param end   the index after the last char of the number
+	 * @return the nearest double, or NaN if the double does not keep the value of the text
+	 * @throws NumberFormatException if the chars are not a JSON number
+	 */
+	static double toDouble(String text, int start, int end) throws NumberFormatException { return toDouble(text, null, start, end); }
+
+	/**
+	 * Return the double of the text of a JSON number between start and end of an UTF-8 document,
+	 * see toDouble(String, int, int).
+	 *
+	 * @param bytes the bytes that contain the number
+	 * @param start the index of the first byte of the number
+	 * @param end   the index after the last byte of the number
+	 * @return the nearest double, or NaN if the double does not keep the value of the text
+	 * @throws NumberFormatException if the bytes are not a JSON number
+	 */
+	static double toDouble(byte[] bytes, int start, int end) throws NumberFormatException { return toDouble(null, bytes, start, end); }
+
+	private static JsonNumber parse(String text, byte[] bytes, int start, int end) {
+		int first = start < end && at(text, bytes, start) == '-' ? start + 1 : start;
+		int i = first;
+		long value = 0;
+		for (int c; i < end && (c = at(text, bytes, i)) >= '0' && c <= '9'; i++) value = value * 10 + (c - '0');
+		int digits = i - first;
+		if (i == end && digits > 0 && (digits == 1 || at(text, bytes, first) != '0')) {
+			// 19 digits do not overflow as unsigned
+			boolean negative = first > start;
+			// -0 is stored as the double -0.0, that keeps the sign
+			if (negative && value == 0) return new JsonNumber(-0.0);
+			if (digits < LONG_DIGITS || digits == LONG_DIGITS && Long.compareUnsigned(value, negative ? Long.MIN_VALUE : Long.MAX_VALUE) <= 0)
+				return new JsonNumber(negative ? -value : value);
+			return new JsonNumber(new BigDecimal(string(text, bytes, start, end)));
+		}
+		double number = toDouble(text, bytes, start, end);
+		if (Double.isNaN(number)) return new JsonNumber(new BigDecimal(string(text, bytes, start, end)));
+		return new JsonNumber(number);
+	}
+
+	private static double toDouble(String text, byte[] bytes, int start, int end) {
+		int i = start;
+		boolean negative = i < end && at(text, bytes, i) == '-';
+		if (negative) i++;
+		// the first 19 significant digits and the power of ten that multiplies them
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		int c = i < end ? at(text, bytes, i) : -1;
+		if (c == '0') i++;
+		else {
+			int first = i;
+			for (; i < end && (c = at(text, bytes, i)) >= '0' && c <= '9'; i++) {
+				if (digits < LONG_DIGITS) mantissa = mantissa * 10 + (c - '0');
+				else exponent++;
+				digits++;
+			}
+			if (i == first) throw invalid(text, bytes, start, end);
+		}
+		if (i < end && at(text, bytes, i) == '.') {
+			int first = ++i;
+			for (; i < end && (c = at(text, bytes, i)) >= '0' && c <= '9'; i++) {
+				if (digits == 0 && c == '0') exponent--;
+				else {
+					if (digits < LONG_DIGITS) {
+						mantissa = mantissa * 10 + (c - '0');
+						exponent--;
+					}
+					digits++;
+				}
+			}
+			if (i == first) throw invalid(text, bytes, start, end);
+		}
+		if (i < end && ((c = at(text, bytes, i)) == 'e' || c == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && ((c = at(text, bytes, i)) == '+' || c == '-')) {
+				negativeExponent = c == '-';
+				i++;
+			}
+			int first = i;
+			int value = 0;
+			// the exponents out of the range of double are all the same
+			for (; i < end && (c = at(text, bytes, i)) >= '0' && c <= '9'; i++) if (value < 100_000) value = value * 10 + (c - '0');
+			if (i == first) throw invalid(text, bytes, start, end);
+			exponent += negativeExponent ? -value : value;
+		}
+		if (i != end) throw invalid(text, bytes, start, end);
+		if (digits > DOUBLE_DIGITS) return Double.NaN;
+		if (digits == 0) return negative ? -0.0 : 0.0;
+		double value = toDouble(mantissa, exponent);
+		// rounding not decided by the fast algorithms, almost never happens with 15 digits
+		if (Double.isNaN(value)) value = Math.abs(Double.parseDouble(string(text, bytes, start, end)));
+		if (value == 0 || Double.isInfinite(value)) return Double.NaN;
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Return the double nearest to mantissa * 10^exponent, or NaN if the rounding cannot be decided
+	 * with 128 bits of the power of five. The mantissa must be positive.
+	 */
+	private static double toDouble(long mantissa, int exponent) {
+		// Clinger: both the mantissa and the power are exact doubles, the only rounding is the one of the operation
+		if (mantissa <= 1L << 53 && exponent >= -22 && exponent <= 22)
+			return exponent < 0 ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+		// Eisel-Lemire, see "Number Parsing at a Gigabyte per Second" and the fast_float library
+		if (exponent < Powers.MIN_EXPONENT) return 0;
+		if (exponent > Powers.MAX_EXPONENT) return Double.POSITIVE_INFINITY;
+		int zeros = Long.numberOfLeadingZeros(mantissa);
+		long w = mantissa << zeros;
+		int index = 2 * (exponent - Powers.MIN_EXPONENT);
+		long power = Powers.FIVE[index];
+		long low = w * power;
+		long high = multiplyHigh(w, power);
+		// the 9 bits below the mantissa are all ones, the next 64 bits of the power can change the rounding
+		if ((high & 0x1ff) == 0x1ff) {
+			long carry = multiplyHigh(w, Powers.FIVE[index + 1]);
+			low += carry;
+			if (Long.compareUnsigned(carry, low) > 0) high++;
+		}
+		if (low == -1 && (exponent < -27 || exponent > 55)) return Double.NaN;
+		int upper = (int) (high >>> 63);
+		long bits = high >>> (upper + 9);
+		int power2 = ((217_706 * exponent) >> 16) + 63 + upper - zeros + 1023;
+		if (power2 <= 0) {
+			// subnormal
+			if (-power2 + 1 >= 64) return 0;
+			bits >>>= -power2 + 1;
+			bits += bits & 1;
+			bits >>>= 1;
+			return Double.longBitsToDouble((bits < 1L << 52 ? 0 : 1L << 52) | bits);
+		}
+		// exactly between two doubles, round to even
+		if (Long.compareUnsigned(low, 1) <= 0 && exponent >= -4 && exponent <= 23 && (bits & 3) == 1 && bits << (upper + 9) == high) bits &= ~1L;
+		bits += bits & 1;
+		bits >>>= 1;
+		if (bits >= 2L << 52) {
+			bits = 1L << 52;
+			power2++;
+		}
+		if (power2 >= 0x7ff) return Double.POSITIVE_INFINITY;
+		return Double.longBitsToDouble((long) power2 << 52 | (bits & ~(1L << 52)));
+	}
+
+	/**
+	 * Return the shortest text that reads back to the double, in the layout of Double.toString.
+	 * NaN and the infinities, that are not JSON numbers, are returned as Double.toString does.
+	 *
+	 * @param value the double to write
+	 * @return the text of the double
+	 */
+	static String toString(double value) {
+		if (!Double.isFinite(value)) return Double.toString(value);
+		char[] chars = CHARS.get();
+		return new String(chars, 0, format(value, chars));
+	}
+
+	/**
+	 * Write the shortest text that reads back to the double, see toString(double).
+	 *
+	 * @param value the double to write
+	 * @param out   where to write the text
+	 * @throws IOException if the output fails
+	 */
+	static void write(double value, Appendable out) throws IOException {
+		if (!Double.isFinite(value)) {
+			out.append(Double.toString(value));
+			return;
+		}
+		char[] chars = CHARS.get();
+		int length = format(value, chars);
+		if (out instanceof StringBuilder) ((StringBuilder) out).append(chars, 0, length);
+		else for (int i = 0; i < length; i++) out.append(chars[i]);
+	}
+
+	/**
+	 * Write the text of the double in the chars and return its length.
+	 * See "The Schubfach way to render doubles" by Raffaello Giulietti, the same algorithm of Double.toString since Java 19.
+	 */
+	private static int format(double value, char[] chars) {
+		long bits = Double.doubleToRawLongBits(value);
+		int length = 0;
+		if (bits < 0) chars[length++] = '-';
+		long fraction = bits & ((1L << 52) - 1);
+		int biased = (int) (bits >>> 52) & 0x7ff;
+		if (biased != 0) {
+			int shift = 1075 - biased;
+			long c = 1L << 52 | fraction;
+			// integers below 2^53 are written as they are
+			if (shift > 0 && shift < 53 && (c >> shift) << shift == c) return digits(c >> shift, 0, chars, length);
+			return shortest(-shift, c, 0, chars, length);
+		}
+		if (fraction == 0) {
+			chars[length++] = '0';
+			chars[length++] = '.';
+			chars[length++] = '0';
+			return length;
+		}
+		// subnormal, the smallest ones are scaled by ten to keep two digits of precision
+		return fraction < 3 ? shortest(-1074, 10 * fraction, -1, chars, length) : shortest(-1074, fraction, 0, chars, length);
+	}
+
+	/**
+	 * Write the shortest decimal in the rounding interval of c 2^q, the one nearest to the value if more than one.
+	 */
+	private static int shortest(int q, long c, int scale, char[] chars, int length) {
+		int out = (int) c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != 1L << 52 || q == -1074) {
+			// regular spacing of the doubles around the value
+			cbl = cb - 2;
+			k = floorLog10Pow2(q);
+		} else {
+			// the double below a power of two is nearer than the one above
+			cbl = cb - 1;
+			k = floorLog10ThreeQuartersPow2(q);
+		}
+		int h = q + floorLog2Pow10(-k) + 2;
+		int index = 2 * (k - Powers.MIN_K);
+		long g1 = Powers.TEN[index];
+		long g0 = Powers.TEN[index + 1];
+		long vb = roundToOdd(g1, g0, cb << h);
+		long vbl = roundToOdd(g1, g0, cbl << h);
+		long vbr = roundToOdd(g1, g0, cbr << h);
+		long s = vb >> 2;
+		if (s >= 100) {
+			// one digit less, if only one of the two candidates is in the interval
+			long sp10 = 10 * (s / 10);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) return digits(upin ? sp10 : tp10, k, chars, length);
+		}
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win) return digits(uin ? s : t, k + scale, chars, length);
+		long cmp = vb - (s + t << 1);
+		return digits(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + scale, chars, length);
+	}
+
+	/**
+	 * Return c g 2^-127 rounded to odd, with g = g1 2^63 + g0.
+	 */
+	private static long roundToOdd(long g1, long g0, long c) {
+		long x1 = Math.multiplyHigh(g0, c);
+		long y0 = g1 * c;
+		long y1 = Math.multiplyHigh(g1, c);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | ((z & Long.MAX_VALUE) + Long.MAX_VALUE) >>> 63;
+	}
+
+	/**
+	 * Write f 10^e in the layout of Double.toString: plain between 10^-3 and 10^7, with the exponent otherwise.
+	 * The digits are written as they are and the trailing zeros of the fraction are dropped from the chars.
+	 */
+	private static int digits(long f, int e, char[] chars, int length) {
+		int count = 1;
+		while (count < LONG_DIGITS && f >= TENS[count]) count++;
+		// the value is 0.d1d2...dn 10^point
+		int point = e + count;
+		int end;
+		if (point > 0 && point <= 7) {
+			if (count <= point) {
+				length = write(f, count, chars, length);
+				for (int i = count; i < point; i++) chars[length++] = '0';
+				chars[length++] = '.';
+				chars[length++] = '0';
+				return length;
+			}
+			write(f, count, chars, length + 1);
+			System.arraycopy(chars, length + 1, chars, length, point);
+			chars[length + point] = '.';
+			end = length + count + 1;
+			// at least one digit after the point
+			while (end > length + point + 2 && chars[end - 1] == '0') end--;
+			return end;
+		}
+		if (point > -3 && point <= 0) {
+			chars[length++] = '0';
+			chars[length++] = '.';
+			for (int i = point; i < 0; i++) chars[length++] = '0';
+			end = write(f, count, chars, length);
+			while (chars[end - 1] == '0') end--;
+			return end;
+		}
+		write(f, count, chars, length + 1);
+		chars[length] = chars[length + 1];
+		chars[length + 1] = '.';
+		end = length + count + 1;
+		if (count == 1) chars[end++] = '0';
+		while (end > length + 3 && chars[end - 1] == '0') end--;
+		chars[end++] = 'E';
+		int exponent = point - 1;
+		if (exponent < 0) {
+			chars[end++] = '-';
+			exponent = -exponent;
+		}
+		if (exponent >= 100) chars[end++] = (char) ('0' + exponent / 100);
+		if (exponent >= 10) chars[end++] = (char) ('0' + exponent / 10 % 10);
+		chars[end++] = (char) ('0' + exponent % 10);
+		return end;
+	}
+
+	/**
+	 * Write the count digits of f at length and return the index after the last one.
+	 * The digits are taken in blocks of 8 with int divisions, f / 10^8 is computed as a multiplication.
+	 */
+	private static int write(long f, int count, char[] chars, int length) {
+		int i = length + count;
+		while (f >= 100_000_000) {
+			long high = Math.multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;
+			int low = (int) (f - high * 100_000_000);
+			for (int j = 0; j < 4; j++) {
+				int next = low / 100;
+				int pair = low - next * 100;
+				chars[--i] = PAIRS[2 * pair + 1];
+				chars[--i] = PAIRS[2 * pair];
+				low = next;
+			}
+			f = high;
+		}
+		int rest = (int) f;
+		while (rest >= 10) {
+			int next = rest / 100;
+			int pair = rest - next * 100;
+			chars[--i] = PAIRS[2 * pair + 1];
+			chars[--i] = PAIRS[2 * pair];
+			rest = next;
+		}
+		if (i > length) chars[--i] = (char) ('0' + rest);
+		return length + count;
+	}
+
+	// floor(e log10(2))
+	private static int floorLog10Pow2(int e) { return (int) (e * 661_971_961_083L >> 41); }
+
+	// floor(e log10(2) + log10(3/4))
+	private static int floorLog10ThreeQuartersPow2(int e) { return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41); }
+
+	// floor(e log2(10))
+	private static int floorLog2Pow10(int e) { return (int) (e * 913_124_641_741L >> 38); }
+
+	// the high 64 bits of the unsigned product
+	private static long multiplyHigh(long x, long y) { return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x); }
+
+	private static int at(String text, byte[] bytes, int index) { return text != null ? text.charAt(index) : bytes[index]; }
+
+	private static String string(String text, byte[] bytes, int start, int end) {
+		return text != null ? text.substring(start, end) : new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+	}
+
+	private static NumberFormatException invalid(String text, byte[] bytes, int start, int end) {
+		return new NumberFormatException(String.format("Invalid JSON number %s", string(text, bytes, start, end)));
+	}
+
+	/**
+	 * Tables of the powers used by the conversions, computed at the first use.
+	 */
+	private static final class Powers {
+
+		static final int MIN_EXPONENT = -342;
+		static final int MAX_EXPONENT = 308;
+		static final int MIN_K = -324;
+		static final int MAX_K = 292;
+
+		// the 128 most significant bits of 5^q, truncated, for q from MIN_EXPONENT to MAX_EXPONENT
+		static final long[] FIVE = new long[2 * (MAX_EXPONENT - MIN_EXPONENT + 1)];
+		// g = floor(10^-k 2^-r) + 1 with 2^125 <= g < 2^126, as g1 = g >> 63 and g0 = g mod 2^63, for k from MIN_K to MAX_K
+		static final long[] TEN = new long[2 * (MAX_K - MIN_K + 1)];
+
+		static {
+			BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+			for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; q++) {
+				BigInteger power = BigInteger.valueOf(5).pow(Math.abs(q));
+				BigInteger bits;
+				if (q >= 0) bits = power.shiftLeft(128).shiftRight(power.bitLength());
+				else {
+					// the reciprocal rounded up, with enough bits to be exact up to 5^27
+					int z = power.bitLength();
+					bits = BigInteger.ONE.shiftLeft(q >= -27 ? z + 127 : 2 * z + 128).divide(power).add(BigInteger.ONE);
+					bits = bits.shiftRight(Math.max(0, bits.bitLength() - 128));
+				}
+				int index = 2 * (q - MIN_EXPONENT);
+				FIVE[index] = bits.shiftRight(64).longValue();
+				FIVE[index + 1] = bits.and(mask).longValue();
+			}
+			for (int k = MIN_K; k <= MAX_K; k++) {
+				BigInteger g;
+				if (k <= 0) {
+					BigInteger power = BigInteger.TEN.pow(-k);
+					int r = power.bitLength() - 126;
+					g = (r >= 0 ? power.shiftRight(r) : power.shiftLeft(-r)).add(BigInteger.ONE);
+				} else {
+					BigInteger power = BigInteger.TEN.pow(k);
+					g = BigInteger.ONE.shiftLeft(125 + power.bitLength()).divide(power).add(BigInteger.ONE);
+				}
+				int index = 2 * (k - MIN_K);
+				TEN[index] = g.shiftRight(63).longValue();
+				TEN[index + 1] = g.longValue() & Long.MAX_VALUE;
+			}
+		}
+
+		private Powers() {}
+	}
+}
@@ -0,0 +1,723 @@
+package it.icapito.json;
+
+import java.util.Arrays;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonNumberArray;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Single pass parser that builds the JsonObject tree directly from a string.
+ * The input is read once from left to right with a cursor, every value is
+ * converted in a JsonElement when it is found and added to its container.
+ *
+ * @author BlackCodec
+ *
+ */
+final class JsonParser {
+
+	private final String input;
+	private final int end;
+	private final KeyCache keys;
+	private int pos;
+
+	/**
+	 * Construct a new parser for the specified string.
+	 *
+	 * @param input the string to parse
+	 */
+	JsonParser(String input) { this(input, 0, input.length()); }
+
+	/**
+	 * Construct a new parser for the specified part of the string.
+	 *
+	 * @param input the string that contains the text to parse
+	 * @param start the index of the first char to parse
+	 * @param end   the index after the last char to parse
+	 */
+	JsonParser(String input, int start, int end) {
+		this.input = input;
+		this.pos = start;
+		this.end = end;
+		this.keys = KeyCache.forParse(JsonService.keyCache());
+	}
+
+	/**
+	 * Parse the whole input as a JSON object.
+	 *
+	 * @return the JSON object representation of the input
+	 * @throws UnsupportedOperationException if the input does not represent a valid JSON object
+	 */
+	JsonObject parseObject() throws UnsupportedOperationException {
+		this.skipWhitespace();
+		if (this.pos >= this.end || this.input.charAt(this.pos) != '{')
+			throw this.error("JsonObject expected");
+		JsonObject result = this.readObject();
+		this.skipWhitespace();
+		if (this.pos < this.end)
+			throw this.error("Unexpected content after JsonObject");
+		return result;
+	}
+
+	/**
+	 * Parse the whole input as a JSON object without decoding its values.
+	 * The object contains only the position of its keys and values, every value is decoded
+	 * when it is read for the first time.
+	 *
+	 * @return the lazy JSON object representation of the input
+	 * @throws UnsupportedOperationException if the input does not represent a valid JSON object
+	 * @see LazyJsonObject
+	 */
+	JsonObject parseLazyObject() throws UnsupportedOperationException {
+		this.skipWhitespace();
+		if (this.pos >= this.end || this.input.charAt(this.pos) != '{')
+			throw this.error("JsonObject expected");
+		JsonObject result = this.readLazyObject();
+		this.skipWhitespace();
+		if (this.pos < this.end)
+			throw this.error("Unexpected content after JsonObject");
+		return result;
+	}
+
+	/**
+	 * Parse the whole input as a JSON object keeping only the values selected by the projection.
+	 * The other values are skipped without creating any object and their content is not validated.
+	 *
+	 * @param projection the values to keep
+	 * @return the JSON object with the selected values
+	 * @throws UnsupportedOperationException if the input does not represent a valid JSON object
+	 * @see Projection
+	 */
+	JsonObject parseObject(Projection projection) throws UnsupportedOperationException {
+		this.skipWhitespace();
+		if (this.pos >= this.end || this.input.charAt(this.pos) != '{')
+			throw this.error("JsonObject expected");
+		JsonObject result = projection.whole() ? this.readObject() : this.readProjectedObject(projection);
+		this.skipWhitespace();
+		if (this.pos < this.end)
+			throw this.error("Unexpected content after JsonObject");
+		return result;
+	}
+
+	/**
+	 * Parse the whole input as a JSON object calling the handler for every token, without creating any element.
+	 *
+	 * @param handler the callbacks for the tokens
+	 * @return true if the whole input has been read, false if the handler stopped the parse
+	 * @throws UnsupportedOperationException if the input does not represent a valid JSON object
+	 * @see JsonHandler
+	 */
+	boolean parseObject(JsonHandler handler) throws UnsupportedOperationException {
+		this.skipWhitespace();
+		if (this.pos >= this.end || this.input.charAt(this.pos) != '{')
+			throw this.error("JsonObject expected");
+		if (!this.emitObject(handler)) return false;
+		this.skipWhitespace();
+		if (this.pos < this.end)
+			throw this.error("Unexpected content after JsonObject");
+		return true;
+	}
+
+	/**
+	 * Read the value that starts at the current position, objects and arrays are not decoded.
+	 *
+	 * @return the JsonElement that represents the value
+	 * @throws UnsupportedOperationException if the value is not valid
+	 */
+	JsonElement readLazyValue() throws UnsupportedOperationException {
+		this.skipWhitespace();
+		char c = this.peek();
+		if (c == '{') return this.readLazyObject();
+		if (c == '[') return this.readLazyArray();
+		return this.readValue();
+	}
+
+	/**
+	 * Read the value that starts at the current position.
+	 *
+	 * @return the JsonElement that represents the value
+	 * @throws UnsupportedOperationException if the value is not valid
+	 */
+	private JsonElement readValue() throws UnsupportedOperationException {
+		this.skipWhitespace();
+		if (this.pos >= this.end) throw this.error("Unexpected end of input");
+		char c = this.input.charAt(this.pos);
+		switch (c) {
+			case '{':
+				return this.readObject();
+			case '[':
+				return this.readArray();
+			case '"':
+				return new JsonElement(JsonElement.Types.JSON_STRING, this.readString());
+			case 't':
+				this.readLiteral("true");
+				return new JsonElement(JsonElement.Types.JSON_BOOLEAN, "true");
+			case 'f':
+				this.readLiteral("false");
+				return new JsonElement(JsonElement.Types.JSON_BOOLEAN, "false");
+			case 'n':
+				this.readLiteral("null");
+				return new JsonElement(JsonElement.Types.JSON_NULL, null);
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					int start = this.pos;
+					if (this.skipNumber()) return new JsonNumber(this.integer(start));
+					return JsonNumbers.parse(this.input, start, this.pos);
+				}
+				throw this.error("Invalid JSON type");
+		}
+	}
+
+	/**
+	 * Read a JSON object, the cursor must be on the open brace.
+	 *
+	 * @return the JsonObject read
+	 */
+	private JsonObject readObject() {
+		JsonObject node = new JsonObject();
+		this.pos++;
+		this.skipWhitespace();
+		if (this.peek() == '}') {
+			this.pos++;
+			return node;
+		}
+		while (true) {
+			this.skipWhitespace();
+			if (this.peek() != '"') throw this.error("Key expected");
+			String key = this.readKey();
+			this.skipWhitespace();
+			if (this.peek() != ':') throw this.error("Colon expected");
+			this.pos++;
+			JsonElement sub = this.readValue();
+			sub.setParent(node);
+			node.add(key, sub);
+			this.skipWhitespace();
+			char c = this.peek();
+			this.pos++;
+			if (c == '}') return node;
+			if (c != ',') throw this.error("Not well formed JsonObject found");
+		}
+	}
+
+	/**
+	 * Read a JSON array, the cursor must be on the open bracket.
+	 *
+	 * @return the JsonArray read
+	 */
+	private JsonArray readArray() {
+		JsonArray node = new JsonArray();
+		this.pos++;
+		this.skipWhitespace();
+		char first = this.peek();
+		if (first == ']') {
+			this.pos++;
+			return node;
+		}
+		if (first == '-' || (first >= '0' && first <= '9')) {
+			JsonArray numbers = this.readNumberArray();
+			if (numbers != null) return numbers;
+		}
+		while (true) {
+			JsonElement sub = this.readValue();
+			sub.setParent(node);
+			node.add(sub);
+			this.skipWhitespace();
+			char c = this.peek();
+			this.pos++;
+			if (c == ']') return node;
+			if (c != ',') throw this.error("Not well formed JsonArray found");
+		}
+	}
+
+	/**
+	 * Read an array that contains only integers or only decimals in a JsonNumberArray, the cursor must be on
+	 * the first number. If a value is not a number, the array mixes integers and decimals or a number cannot be
+	 * stored exactly in the array, the cursor is moved back to the first number and null is returned.
+	 *
+	 * @return the JsonNumberArray read or null
+	 */
+	private JsonArray readNumberArray() {
+		int start = this.pos;
+		long[] longs = null;
+		double[] doubles = null;
+		int count = 0;
+		while (true) {
+			this.skipWhitespace();
+			char c = this.peek();
+			if (c != '-' && (c < '0' || c > '9')) break;
+			int numberStart = this.pos;
+			boolean integer = this.skipNumber();
+			// all the numbers must be of the kind of the first one, a mixed array is read as a JsonArray
+			// so the integers are written back as integers
+			if (count == 0) {
+				if (integer) longs = new long[16];
+				else doubles = new double[16];
+			}
+			if (longs != null) {
+				if (!integer) break;
+				if (count == longs.length) longs = Arrays.copyOf(longs, count * 2);
+				longs[count++] = this.integer(numberStart);
+			} else {
+				if (integer) break;
+				// NaN for the numbers stored as BigDecimal
+				double value = JsonNumbers.toDouble(this.input, numberStart, this.pos);
+				if (Double.isNaN(value)) break;
+				if (count == doubles.length) doubles = Arrays.copyOf(doubles, count * 2);
+				doubles[count++] = value;
+			}
+			this.skipWhitespace();
+			c = this.peek();
+			this.pos++;
+			if (c == ']') return longs != null ? new JsonNumberArray(longs, count) : new JsonNumberArray(doubles, count);
+			if (c != ',') throw this.error("Not well formed JsonArray found");
+		}
+		this.pos = start;
+		return null;
+	}
+
+	/**
+	 * Return the value of the integer between start and the current position.
+	 * Integers with more than 18 digits are returned only if they fit in a long.
+	 *
+	 * @param start the index of the first char of the integer
+	 * @return the value of the integer
+	 */
+	private long integer(int start) {
+		boolean negative = this.input.charAt(start) == '-';
+		int i = negative ? start + 1 : start;
+		if (this.pos - i > 18) return Long.parseLong(this.input.substring(start, this.pos));
+		long value = 0;
+		for (; i < this.pos; i++) value = value * 10 + (this.input.charAt(i) - '0');
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Call the handler for the value that starts at the current position.
+	 *
+	 * @param handler the callbacks for the tokens
+	 * @return false if the handler stopped the parse
+	 */
+	private boolean emitValue(JsonHandler handler) {
+		this.skipWhitespace();
+		if (this.pos >= this.end) throw this.error("Unexpected end of input");
+		char c = this.input.charAt(this.pos);
+		switch (c) {
+			case '{':
+				return this.emitObject(handler);
+			case '[':
+				return this.emitArray(handler);
+			case '"':
+				return handler.stringValue(this.readString()) != JsonHandler.Action.STOP;
+			case 't':
+				this.readLiteral("true");
+				return handler.booleanValue(true) != JsonHandler.Action.STOP;
+			case 'f':
+				this.readLiteral("false");
+				return handler.booleanValue(false) != JsonHandler.Action.STOP;
+			case 'n':
+				this.readLiteral("null");
+				return handler.nullValue() != JsonHandler.Action.STOP;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					int start = this.pos;
+					if (this.skipNumber()) return handler.longValue(this.integer(start)) != JsonHandler.Action.STOP;
+					return handler.numberValue(this.input.substring(start, this.pos)) != JsonHandler.Action.STOP;
+				}
+				throw this.error("Invalid JSON type");
+		}
+	}
+
+	/**
+	 * Call the handler for the object that starts at the current position, the cursor must be on the open brace.
+	 *
+	 * @param handler the callbacks for the tokens
+	 * @return false if the handler stopped the parse
+	 */
+	private boolean emitObject(JsonHandler handler) {
+		JsonHandler.Action action = handler.startObject();
+		if (action == JsonHandler.Action.STOP) return false;
+		if (action == JsonHandler.Action.SKIP) {
+			this.skipValue();
+			return true;
+		}
+		this.pos++;
+		this.skipWhitespace();
+		if (this.peek() == '}') {
+			this.pos++;
+			return handler.endObject() != JsonHandler.Action.STOP;
+		}
+		while (true) {
+			this.skipWhitespace();
+			if (this.peek() != '"') throw this.error("Key expected");
+			String key = this.readKey();
+			this.skipWhitespace();
+			if (this.peek() != ':') throw this.error("Colon expected");
+			this.pos++;
+			action = handler.key(key);
+			if (action == JsonHandler.Action.STOP) return false;
+			if (action == JsonHandler.Action.SKIP) {
+				this.skipWhitespace();
+				if (this.pos >= this.end) throw this.error("Unexpected end of input");
+				this.skipValue();
+			} else if (!this.emitValue(handler)) return false;
+			this.skipWhitespace();
+			char c = this.peek();
+			this.pos++;
+			if (c == '}') return handler.endObject() != JsonHandler.Action.STOP;
+			if (c != ',') throw this.error("Not well formed JsonObject found");
+		}
+	}
+
+	/**
+	 * Call the handler for the array that starts at the current position, the cursor must be on the open bracket.
+	 *
+	 * @param handler the callbacks for the tokens
+	 * @return false if the handler stopped the parse
+	 */
+	private boolean emitArray(JsonHandler handler) {
+		JsonHandler.Action action = handler.startArray();
+		if (action == JsonHandler.Action.STOP) return false;
+		if (action == JsonHandler.Action.SKIP) {
+			this.skipValue();
+			return true;
+		}
+		this.pos++;
+		this.skipWhitespace();
+		if (this.peek() == ']') {
+			this.pos++;
+			return handler.endArray() != JsonHandler.Action.STOP;
+		}
+		while (true) {
+			if (!this.emitValue(handler)) return false;
+			this.skipWhitespace();
+			char c = this.peek();
+			this.pos++;
+			if (c == ']') return handler.endArray() != JsonHandler.Action.STOP;
+			if (c != ',') throw this.error("Not well formed JsonArray found");
+		}
+	}
+
+	/**
+	 * Read the value that starts at the current position if it is selected by the projection, otherwise skip it.
+	 *
+	 * @param projection the projection of the value
+	 * @return the JsonElement read or null if the value is skipped
+	 */
+	private JsonElement readProjectedValue(Projection projection) {
+		if (projection.whole()) return this.readValue();
+		char c = this.peek();
+		if (c == '{') return this.readProjectedObject(projection);
+		if (c == '[') return this.readProjectedArray(projection);
+		// a path that continues after a scalar value selects nothing
+		this.skipValue();
+		return null;
+	}
+
+	/**
+	 * Read a JSON object with only the fields selected by the projection, the cursor must be on the open brace.
+	 * The keys are compared in place, so the fields skipped do not create any object.
+	 *
+	 * @param projection the projection of the object
+	 * @return the JsonObject read
+	 */
+	private JsonObject readProjectedObject(Projection projection) {
+		JsonObject node = new JsonObject();
+		this.pos++;
+		this.skipWhitespace();
+		if (this.peek() == '}') {
+			this.pos++;
+			return node;
+		}
+		while (true) {
+			this.skipWhitespace();
+			if (this.peek() != '"') throw this.error("Key expected");
+			int keyStart = this.pos + 1;
+			this.skipString();
+			int keyEnd = this.pos - 1;
+			this.skipWhitespace();
+			if (this.peek() != ':') throw this.error("Colon expected");
+			this.pos++;
+			this.skipWhitespace();
+			Projection child = projection.child(this.input, keyStart, keyEnd);
+			JsonElement sub = null;
+			if (child == null) this.skipValue();
+			else sub = this.readProjectedValue(child);
+			if (sub != null) {
+				sub.setParent(node);
+				node.add(this.keys == null ? this.input.substring(keyStart, keyEnd) : this.keys.intern(this.input, keyStart, keyEnd), sub);
+			}
+			this.skipWhitespace();
+			char c = this.peek();
+			this.pos++;
+			if (c == '}') return node;
+			if (c != ',') throw this.error("Not well formed JsonObject found");
+		}
+	}
+
+	/**
+	 * Read a JSON array with the elements selected by the projection, the cursor must be on the open bracket.
+	 *
+	 * @param projection the projection of the array
+	 * @return the JsonArray read or null if the array is skipped
+	 */
+	private JsonArray readProjectedArray(Projection projection) {
+		Projection elements = projection.elements();
+		if (elements == null) {
+			this.skipValue();
+			return null;
+		}
+		if (elements.whole()) return this.readArray();
+		JsonArray node = new JsonArray();
+		this.pos++;
+		this.skipWhitespace();
+		if (this.peek() == ']') {
+			this.pos++;
+			return node;
+		}
+		while (true) {
+			this.skipWhitespace();
+			JsonElement sub = this.readProjectedValue(elements);
+			if (sub != null) {
+				sub.setParent(node);
+				node.add(sub);
+			}
+			this.skipWhitespace();
+			char c = this.peek();
+			this.pos++;
+			if (c == ']') return node;
+			if (c != ',') throw this.error("Not well formed JsonArray found");
+		}
+	}
+
+	/**
+	 * Read a JSON object recording only the position of keys and values, the cursor must be on the open brace.
+	 * Nested objects and arrays are skipped counting brackets and quotation marks.
+	 *
+	 * @return the LazyJsonObject read
+	 */
+	private JsonObject readLazyObject() {
+		int[] index = new int[16];
+		int count = 0;
+		this.pos++;
+		this.skipWhitespace();
+		if (this.peek() == '}') {
+			this.pos++;
+			return new LazyJsonObject(this.input, index, count);
+		}
+		while (true) {
+			this.skipWhitespace();
+			if (this.peek() != '"') throw this.error("Key expected");
+			if (count * 4 == index.length) index = Arrays.copyOf(index, index.length * 2);
+			index[count * 4] = this.pos + 1;
+			this.skipString();
+			index[count * 4 + 1] = this.pos - 1;
+			this.skipWhitespace();
+			if (this.peek() != ':') throw this.error("Colon expected");
+			this.pos++;
+			this.skipWhitespace();
+			index[count * 4 + 2] = this.pos;
+			this.skipValue();
+			index[count * 4 + 3] = this.pos;
+			count++;
+			this.skipWhitespace();
+			char c = this.peek();
+			this.pos++;
+			if (c == '}') return new LazyJsonObject(this.input, index, count);
+			if (c != ',') throw this.error("Not well formed JsonObject found");
+		}
+	}
+
+	/**
+	 * Read a JSON array recording only the position of the values, the cursor must be on the open bracket.
+	 *
+	 * @return the LazyJsonArray read
+	 */
+	private JsonArray readLazyArray() {
+		int[] index = new int[16];
+		int count = 0;
+		this.pos++;
+		this.skipWhitespace();
+		if (this.peek() == ']') {
+			this.pos++;
+			return new LazyJsonArray(this.input, index, count);
+		}
+		while (true) {
+			this.skipWhitespace();
+			if (count * 2 == index.length) index = Arrays.copyOf(index, index.length * 2);
+			index[count * 2] = this.pos;
+			this.skipValue();
+			index[count * 2 + 1] = this.pos;
+			count++;
+			this.skipWhitespace();
+			char c = this.peek();
+			this.pos++;
+			if (c == ']') return new LazyJsonArray(this.input, index, count);
+			if (c != ',') throw this.error("Not well formed JsonArray found");
+		}
+	}
+
+	/**
+	 * Move the cursor after the value that starts at the current position without creating any object.
+	 * The content of objects and arrays is not validated, only brackets and quotation marks are counted.
+	 */
+	private void skipValue() {
+		char c = this.peek();
+		switch (c) {
+			case '{':
+			case '[':
+				int level = 0;
+				do {
+					c = this.peek();
+					if (c == '"') {
+						this.skipString();
+						continue;
+					}
+					if (this.pos >= this.end) throw this.error("Unexpected end of input");
+					if (c == '{' || c == '[') level++;
+					else if (c == '}' || c == ']') level--;
+					this.pos++;
+				} while (level > 0);
+				break;
+			case '"':
+				this.skipString();
+				break;
+			case 't':
+				this.readLiteral("true");
+				break;
+			case 'f':
+				this.readLiteral("false");
+				break;
+			case 'n':
+				this.readLiteral("null");
+				break;
+			default:
+				if (c != '-' && (c < '0' || c > '9')) throw this.error("Invalid JSON type");
+				this.skipNumber();
+		}
+	}
+
+	/**
+	 * Read a string, the cursor must be on the opening quotation mark.
+	 * The returned value does not contains the quotation marks, escape sequences are kept as is.
+	 *
+	 * @return the content of the string
+	 */
+	private String readString() {
+		int start = this.pos + 1;
+		this.skipString();
+		return this.input.substring(start, this.pos - 1);
+	}
+
+	/**
+	 * Read a key, the cursor must be on the opening quotation mark.
+	 * When a KeyCache is used the same String is returned for the same key.
+	 *
+	 * @return the content of the key
+	 */
+	private String readKey() {
+		if (this.keys == null) return this.readString();
+		int start = this.pos + 1;
+		this.skipString();
+		return this.keys.intern(this.input, start, this.pos - 1);
+	}
+
+	/**
+	 * Move the cursor after the string that starts at the current position.
+	 */
+	private void skipString() {
+		// the loop stops at the end of the part to parse: the lines of JsonLines and the values of the
+		// lazy nodes are parsed from the whole document, a search to the end of the string would read it again
+		this.pos++;
+		while (this.pos < this.end) {
+			char c = this.input.charAt(this.pos++);
+			if (c == '"') return;
+			if (c == '\\') this.pos++;
+			else if (c < 0x20) throw this.error("Not well formed JsonString found");
+		}
+		throw this.error("Not well formed JsonString found");
+	}
+
+	/**
+	 * Move the cursor after the number that starts at the current position.
+	 *
+	 * @return true if the number is an integer that fit in a long
+	 */
+	private boolean skipNumber() {
+		int start = this.pos;
+		if (this.peek() == '-') this.pos++;
+		if (this.peek() == '0') this.pos++;
+		else if (this.skipDigits() == 0) throw this.error("Invalid JSON number");
+		boolean integer = true;
+		if (this.peek() == '.') {
+			this.pos++;
+			if (this.skipDigits() == 0) throw this.error("Invalid JSON number");
+			integer = false;
+		}
+		char c = this.peek();
+		if (c == 'e' || c == 'E') {
+			this.pos++;
+			c = this.peek();
+			if (c == '+' || c == '-') this.pos++;
+			if (this.skipDigits() == 0) throw this.error("Invalid JSON number");
+			integer = false;
+		}
+		return integer && this.fitsLong(start);
+	}
+
+	/**
+	 * Return true if the integer between start and the current position fit in a long.
+	 *
+	 * @param start the index of the first char of the integer
+	 * @return true if the integer fit in a long
+	 */
+	private boolean fitsLong(int start) {
+		boolean negative = this.input.charAt(start) == '-';
+		int digits = negative ? this.pos - start - 1 : this.pos - start;
+		// -0 is read as the double -0.0, that keeps the sign
+		if (negative && digits == 1 && this.input.charAt(start + 1) == '0') return false;
+		if (digits != 19) return digits < 19;
+		// same number of digits, so the strings are sorted as the numbers
+		return this.input.substring(this.pos - 19, this.pos).compareTo(negative ? "9223372036854775808" : "9223372036854775807") <= 0;
+	}
+
+	/**
+	 * Read the specified literal (true, false or null).
+	 *
+	 * @param literal the expected literal
+	 */
+	private void readLiteral(String literal) {
+		if (this.pos + literal.length() > this.end || !this.input.startsWith(literal, this.pos)) throw this.error("Invalid JSON type");
+		this.pos += literal.length();
+	}
+
+	private int skipDigits() {
+		int start = this.pos;
+		while (this.pos < this.end) {
+			char c = this.input.charAt(this.pos);
+			if (c < '0' || c > '9') break;
+			this.pos++;
+		}
+		return this.pos - start;
+	}
+
+	private void skipWhitespace() {
+		while (this.pos < this.end) {
+			char c = this.input.charAt(this.pos);
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+			this.pos++;
+		}
+	}
+
+	/**
+	 * Return the char at the current position or 0 at the end of input.
+	 *
+	 * @return the current char
+	 */
+	private char peek() { return this.pos < this.end ? this.input.charAt(this.pos) : 0; }
+
+	private UnsupportedOperationException error(String message) {
+		return new UnsupportedOperationException(String.format("%s at position %d", message, this.pos));
+	}
+}
@@ -0,0 +1,126 @@
+package it.icapito.json;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Structural diff of two JSON documents as a list of JSON Patch operations (RFC 6902).
+ * The objects and arrays with the same digest are skipped without visiting them, so comparing two
+ * large documents that differ in few values costs time proportional to the changed part, once the
+ * digests of the documents are cached. Two objects or arrays are considered equal when their 64 bit
+ * digests are equal, the probability of a collision is negligible for any practical document;
+ * scalar values are compared as equals does.
+ *
+ * <pre>
+ * JsonArray patch = JsonPatch.diff(oldConfig, newConfig);
+ * if (patch.size() > 0) reload(patch);
+ * </pre>
+ *
+ * @see JsonElement#equals(Object)
+ *
+ * @author BlackCodec
+ *
+ */
+public final class JsonPatch {
+
+	private JsonPatch() {}
+
+	/**
+	 * Return the operations that change the source document into the target document.
+	 * Every operation is an object with the members op (add, remove or replace), path (a JSON Pointer,
+	 * RFC 6901) and value for add and replace. The values are the elements of the target, not copies.
+	 * Arrays are compared element by element after the common prefix and suffix, so an element inserted
+	 * or removed in the middle of an array is reported as the replace of the following elements.
+	 *
+	 * @param source the original document
+	 * @param target the changed document
+	 * @return the operations to apply in order, an empty array if the documents are equal
+	 */
+	public static JsonArray diff(JsonElement source, JsonElement target) {
+		JsonArray patch = new JsonArray();
+		if (!same(source, target)) diff(source, target, new StringBuilder(), patch);
+		return patch;
+	}
+
+	/**
+	 * Add the operations for the different values at the path, the path is restored before returning.
+	 */
+	private static void diff(JsonElement source, JsonElement target, StringBuilder path, JsonArray patch) {
+		if (source instanceof JsonObject && target instanceof JsonObject) diffObject((JsonObject) source, (JsonObject) target, path, patch);
+		else if (source instanceof JsonArray && target instanceof JsonArray) diffArray((JsonArray) source, (JsonArray) target, path, patch);
+		else patch.add(operation("replace", path, target));
+	}
+
+	private static void diffObject(JsonObject source, JsonObject target, StringBuilder path, JsonArray patch) {
+		int length = path.length();
+		for (int i = 0; i < source.size(); i++) {
+			String key = source.keyAt(i);
+			JsonElement value = target.get(key);
+			// the path is built only for the changed values
+			if (value != null && same(source.valueAt(i), value)) continue;
+			if (value == null) patch.add(operation("remove", child(path, key), null));
+			else diff(source.valueAt(i), value, child(path, key), patch);
+			path.setLength(length);
+		}
+		for (int i = 0; i < target.size(); i++) {
+			String key = target.keyAt(i);
+			if (source.contains(key)) continue;
+			patch.add(operation("add", child(path, key), target.valueAt(i)));
+			path.setLength(length);
+		}
+	}
+
+	private static void diffArray(JsonArray source, JsonArray target, StringBuilder path, JsonArray patch) {
+		int sourceSize = source.size();
+		int targetSize = target.size();
+		int prefix = 0;
+		while (prefix < sourceSize && prefix < targetSize && same(source.get(prefix), target.get(prefix))) prefix++;
+		int suffix = 0;
+		while (suffix < sourceSize - prefix && suffix < targetSize - prefix
+				&& same(source.get(sourceSize - 1 - suffix), target.get(targetSize - 1 - suffix))) suffix++;
+		int sourceEnd = sourceSize - suffix;
+		int targetEnd = targetSize - suffix;
+		int common = Math.min(sourceEnd, targetEnd);
+		int length = path.length();
+		for (int i = prefix; i < common; i++) {
+			if (i > prefix && same(source.get(i), target.get(i))) continue;
+			diff(source.get(i), target.get(i), path.append('/').append(i), patch);
+			path.setLength(length);
+		}
+		for (int i = common; i < targetEnd; i++) {
+			patch.add(operation("add", path.append('/').append(i), target.get(i)));
+			path.setLength(length);
+		}
+		// from the last one, so the positions of the others do not change
+		for (int i = sourceEnd - 1; i >= common; i--) {
+			patch.add(operation("remove", path.append('/').append(i), null));
+			path.setLength(length);
+		}
+	}
+
+	private static boolean same(JsonElement source, JsonElement target) {
+		if (source == target) return true;
+		if (source.type() != target.type()) return false;
+		// the digests of the containers are cached, the scalars are cheaper to compare than to hash
+		if (source instanceof JsonObject || source instanceof JsonArray) return source.digest() == target.digest();
+		return source.equals(target);
+	}
+
+	/**
+	 * Return the pointer of a member, with the key decoded and ~ and / escaped as ~0 and ~1.
+	 */
+	private static StringBuilder child(StringBuilder path, String key) {
+		String name = JsonStrings.decode(key);
+		if (name.indexOf('~') >= 0 || name.indexOf('/') >= 0) name = name.replace("~", "~0").replace("/", "~1");
+		return path.append('/').append(name);
+	}
+
+	private static JsonObject operation(String op, StringBuilder path, JsonElement value) {
+		JsonObject operation = new JsonObject();
+		operation.add("op", new JsonElement(JsonElement.Types.JSON_STRING, op));
+		operation.add("path", new JsonElement(JsonElement.Types.JSON_STRING, JsonStrings.encode(path.toString())));
+		if (value != null) operation.add("value", value);
+		return operation;
+	}
+}
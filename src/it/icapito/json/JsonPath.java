@@ -0,0 +1,508 @@
+package it.icapito.json;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Compiled JsonPath expression that selects the elements of a tree of JsonObject and JsonArray.
+ * The supported syntax is:
+ * <ul>
+ * <li>$ the root element, always the first char of the expression</li>
+ * <li>.name or ['name'] the value of the key of an object</li>
+ * <li>.* or [*] all the values of an object or all the elements of an array</li>
+ * <li>[n] the element at the index n of an array, negative indexes count from the end</li>
+ * <li>[start:end:step] the elements of an array from start (included) to end (excluded), every one can be omitted</li>
+ * <li>[?(@.name op literal)] the values of an object or the elements of an array that match the filter,
+ * where op is one of == != &lt; &lt;= &gt; &gt;= and literal is a number, a 'string', true, false or null;
+ * [?(@.name)] checks only that the key exists and @ alone is the value itself</li>
+ * <li>..selector applies the following selector to the element and to all its descendants</li>
+ * </ul>
+ * A JsonPath is immutable and can be used by many threads at the same time. The evaluation
+ * reads the children in place and creates nothing but the result collection.
+ * The expressions compiled with compile are kept in a bounded cache, so the same expression
+ * is compiled only once while it is used often.
+ *
+ * @author BlackCodec
+ *
+ */
+public final class JsonPath {
+
+	private static final int CHILD = 0;
+	private static final int WILDCARD = 1;
+	private static final int INDEX = 2;
+	private static final int SLICE = 3;
+	private static final int FILTER = 4;
+
+	private static final int EXISTS = 0;
+	private static final int EQUAL = 1;
+	private static final int NOT_EQUAL = 2;
+	private static final int LESS = 3;
+	private static final int LESS_EQUAL = 4;
+	private static final int GREATER = 5;
+	private static final int GREATER_EQUAL = 6;
+
+	// missing start or end of a slice
+	private static final int NONE = Integer.MIN_VALUE;
+
+	private static final int CACHE_SETS = 128;
+	// two ways for every set, see KeyCache for the same replacement scheme
+	private static final JsonPath[] CACHE = new JsonPath[CACHE_SETS * 2];
+	private static final byte[] RECENT = new byte[CACHE_SETS];
+
+	private final String expression;
+	private final Step[] steps;
+
+	private JsonPath(String expression, Step[] steps) {
+		this.expression = expression;
+		this.steps = steps;
+	}
+
+	/**
+	 * Return the compiled form of the expression.
+	 * The recently used expressions are taken from a cache, the others are compiled and added to the cache.
+	 *
+	 * @param expression the JsonPath expression
+	 * @return the compiled expression
+	 * @throws UnsupportedOperationException if the expression is not valid
+	 */
+	public static JsonPath compile(String expression) throws UnsupportedOperationException {
+		int hash = expression.hashCode();
+		int set = (hash ^ (hash >>> 16)) & (CACHE_SETS - 1);
+		for (int way = 0; way < 2; way++) {
+			// a JsonPath is immutable, so a racy read of the cache returns a complete object or null
+			JsonPath cached = CACHE[set * 2 + way];
+			if (cached != null && cached.expression.equals(expression)) {
+				RECENT[set] = (byte) way;
+				return cached;
+			}
+		}
+		JsonPath compiled = new JsonPath(expression, new Compiler(expression).compile());
+		int way = 1 - RECENT[set];
+		CACHE[set * 2 + way] = compiled;
+		RECENT[set] = (byte) way;
+		return compiled;
+	}
+
+	/**
+	 * Return the expression of this JsonPath.
+	 *
+	 * @return the source expression
+	 */
+	public String expression() { return this.expression; }
+
+	/**
+	 * Return all the elements selected by this JsonPath in the specified tree.
+	 *
+	 * @param root the element that is $ in the expression
+	 * @return the selected elements in document order, or an empty list
+	 */
+	public List<JsonElement> select(JsonElement root) { return this.select(root, new ArrayList<>()); }
+
+	/**
+	 * Add all the elements selected by this JsonPath in the specified tree to the collection.
+	 *
+	 * @param <C>    the type of the collection
+	 * @param root   the element that is $ in the expression
+	 * @param result the collection where the selected elements are added
+	 * @return the collection
+	 */
+	public <C extends Collection<? super JsonElement>> C select(JsonElement root, C result) {
+		this.evaluate(root, 0, result, false);
+		return result;
+	}
+
+	/**
+	 * Return the first element selected by this JsonPath in the specified tree.
+	 * The evaluation stops at the first match.
+	 *
+	 * @param root the element that is $ in the expression
+	 * @return the first selected element or null if nothing is selected
+	 */
+	public JsonElement first(JsonElement root) {
+		List<JsonElement> result = new ArrayList<>(1);
+		this.evaluate(root, 0, result, true);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	@Override
+	public String toString() { return this.expression; }
+
+	/**
+	 * Return the key selected by every step, null for the wildcards.
+	 * Used by Projection, that accepts only paths made of names and wildcards.
+	 *
+	 * @return the keys of the steps
+	 * @throws UnsupportedOperationException if a step is not a name or a wildcard
+	 */
+	String[] names() throws UnsupportedOperationException {
+		String[] names = new String[this.steps.length];
+		for (int i = 0; i < names.length; i++) {
+			Step step = this.steps[i];
+			if (step.descendants || (step.kind != CHILD && step.kind != WILDCARD))
+				throw new UnsupportedOperationException(String.format("Only names and wildcards are supported in JsonPath %s", this.expression));
+			names[i] = step.name;
+		}
+		return names;
+	}
+
+	/**
+	 * Apply the steps from the specified one to the node and add the selected elements to the result.
+	 *
+	 * @return true if the evaluation must stop
+	 */
+	private boolean evaluate(JsonElement node, int position, Collection<? super JsonElement> result, boolean first) {
+		if (position == this.steps.length) {
+			result.add(node);
+			return first;
+		}
+		Step step = this.steps[position];
+		if (this.apply(step, node, position, result, first)) return true;
+		if (!step.descendants) return false;
+		// the same step is applied to every child, so it is applied to all the descendants
+		if (node instanceof JsonObject) {
+			JsonObject object = (JsonObject) node;
+			for (int i = 0, size = object.size(); i < size; i++) {
+				if (this.evaluate(object.valueAt(i), position, result, first)) return true;
+			}
+		} else if (node instanceof JsonArray) {
+			JsonArray array = (JsonArray) node;
+			for (int i = 0, size = array.size(); i < size; i++) {
+				if (this.evaluate(array.get(i), position, result, first)) return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean apply(Step step, JsonElement node, int position, Collection<? super JsonElement> result, boolean first) {
+		int next = position + 1;
+		if (node instanceof JsonObject) {
+			JsonObject object = (JsonObject) node;
+			switch (step.kind) {
+				case CHILD:
+					JsonElement child = object.get(step.name);
+					return child != null && this.evaluate(child, next, result, first);
+				case WILDCARD:
+				case FILTER:
+					for (int i = 0, size = object.size(); i < size; i++) {
+						JsonElement value = object.valueAt(i);
+						if ((step.kind == WILDCARD || step.matches(value)) && this.evaluate(value, next, result, first)) return true;
+					}
+					return false;
+				default:
+					return false;
+			}
+		}
+		if (!(node instanceof JsonArray)) return false;
+		JsonArray array = (JsonArray) node;
+		int size = array.size();
+		switch (step.kind) {
+			case INDEX:
+				int index = step.start < 0 ? size + step.start : step.start;
+				return index >= 0 && index < size && this.evaluate(array.get(index), next, result, first);
+			case WILDCARD:
+			case FILTER:
+				for (int i = 0; i < size; i++) {
+					JsonElement value = array.get(i);
+					if ((step.kind == WILDCARD || step.matches(value)) && this.evaluate(value, next, result, first)) return true;
+				}
+				return false;
+			case SLICE:
+				if (step.step > 0) {
+					int lower = bound(step.start == NONE ? 0 : step.start, size, 0, size);
+					int upper = bound(step.end == NONE ? size : step.end, size, 0, size);
+					for (int i = lower; i < upper; i += step.step) {
+						if (this.evaluate(array.get(i), next, result, first)) return true;
+					}
+				} else {
+					int upper = bound(step.start == NONE ? size - 1 : step.start, size, -1, size - 1);
+					int lower = step.end == NONE ? -1 : bound(step.end, size, -1, size - 1);
+					for (int i = upper; i > lower; i += step.step) {
+						if (this.evaluate(array.get(i), next, result, first)) return true;
+					}
+				}
+				return false;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Convert a negative index of a slice to a position from the end and limit it between min and max.
+	 */
+	private static int bound(int index, int size, int min, int max) {
+		if (index < 0) index += size;
+		return Math.max(min, Math.min(index, max));
+	}
+
+	/**
+	 * A single selector of the expression.
+	 */
+	private static final class Step {
+
+		private final int kind;
+		private final boolean descendants;
+		private final String name;
+		private final int start;
+		private final int end;
+		private final int step;
+		// filter: the keys from @ to the compared value, the operator and the literal
+		private final String[] path;
+		private final int operator;
+		private final JsonElement literal;
+
+		private Step(int kind, boolean descendants, String name, int start, int end, int step, String[] path, int operator, JsonElement literal) {
+			this.kind = kind;
+			this.descendants = descendants;
+			this.name = name;
+			this.start = start;
+			this.end = end;
+			this.step = step;
+			this.path = path;
+			this.operator = operator;
+			this.literal = literal;
+		}
+
+		/**
+		 * Return true if the filter of this step matches the value.
+		 */
+		private boolean matches(JsonElement value) {
+			for (String key: this.path) {
+				if (!(value instanceof JsonObject)) return false;
+				value = ((JsonObject) value).get(key);
+				if (value == null) return false;
+			}
+			if (this.operator == EXISTS) return true;
+			if (this.operator == EQUAL) return equal(value, this.literal);
+			if (this.operator == NOT_EQUAL) return !equal(value, this.literal);
+			// only numbers with numbers and strings with strings are ordered
+			if (value.type() != this.literal.type()) return false;
+			if (value.type() != JsonElement.Types.JSON_NUMBER && value.type() != JsonElement.Types.JSON_STRING) return false;
+			int comparison = compare(value, this.literal);
+			switch (this.operator) {
+				case LESS:
+					return comparison < 0;
+				case LESS_EQUAL:
+					return comparison <= 0;
+				case GREATER:
+					return comparison > 0;
+				default:
+					return comparison >= 0;
+			}
+		}
+
+		private static boolean equal(JsonElement value, JsonElement literal) {
+			if (value.type() != literal.type()) return false;
+			switch (value.type()) {
+				case JSON_NULL:
+					return true;
+				case JSON_NUMBER:
+				case JSON_STRING:
+					return compare(value, literal) == 0;
+				case JSON_BOOLEAN:
+					return value.booleanValue() == literal.booleanValue();
+				default:
+					// objects and arrays are never equal to a literal
+					return false;
+			}
+		}
+
+		private static int compare(JsonElement value, JsonElement literal) {
+			if (value.type() == JsonElement.Types.JSON_STRING) return value.value().compareTo(literal.value());
+			if (value instanceof JsonNumber && ((JsonNumber) value).isLong() && ((JsonNumber) literal).isLong())
+				return Long.compare(value.longValue(), literal.longValue());
+			return Double.compare(value.doubleValue(), literal.doubleValue());
+		}
+	}
+
+	/**
+	 * Single pass compiler of an expression in a list of steps.
+	 */
+	private static final class Compiler {
+
+		private final String input;
+		private int pos = 0;
+
+		private Compiler(String input) { this.input = input; }
+
+		private Step[] compile() {
+			this.skipWhitespace();
+			if (!this.consume('$')) throw this.error("Expected $");
+			List<Step> steps = new ArrayList<>();
+			while (this.pos < this.input.length()) {
+				char c = this.input.charAt(this.pos);
+				if (c == '.') {
+					this.pos++;
+					boolean descendants = this.consume('.');
+					if (this.consume('[')) steps.add(this.bracket(descendants));
+					else if (this.consume('*')) steps.add(new Step(WILDCARD, descendants, null, 0, 0, 0, null, 0, null));
+					else steps.add(new Step(CHILD, descendants, this.name(), 0, 0, 0, null, 0, null));
+				} else if (c == '[') {
+					this.pos++;
+					steps.add(this.bracket(false));
+				} else {
+					throw this.error("Unexpected char " + c);
+				}
+			}
+			return steps.toArray(new Step[0]);
+		}
+
+		/**
+		 * Compile the selector after an open square bracket, up to the closing one.
+		 */
+		private Step bracket(boolean descendants) {
+			this.skipWhitespace();
+			Step step;
+			char c = this.peek();
+			if (c == '*') {
+				this.pos++;
+				step = new Step(WILDCARD, descendants, null, 0, 0, 0, null, 0, null);
+			} else if (c == '\'' || c == '"') {
+				step = new Step(CHILD, descendants, this.quoted(), 0, 0, 0, null, 0, null);
+			} else if (c == '?') {
+				this.pos++;
+				step = this.filter(descendants);
+			} else {
+				int start = this.integer(NONE);
+				this.skipWhitespace();
+				if (this.peek() != ':') {
+					if (start == NONE) throw this.error("Expected index");
+					step = new Step(INDEX, descendants, null, start, 0, 0, null, 0, null);
+				} else {
+					this.pos++;
+					int end = this.integer(NONE);
+					int increment = 1;
+					this.skipWhitespace();
+					if (this.consume(':')) increment = this.integer(1);
+					if (increment == 0) throw this.error("Slice step cannot be 0");
+					step = new Step(SLICE, descendants, null, start, end, increment, null, 0, null);
+				}
+			}
+			this.skipWhitespace();
+			if (!this.consume(']')) throw this.error("Expected ]");
+			return step;
+		}
+
+		private Step filter(boolean descendants) {
+			this.skipWhitespace();
+			if (!this.consume('(')) throw this.error("Expected (");
+			this.skipWhitespace();
+			if (!this.consume('@')) throw this.error("Expected @");
+			List<String> path = new ArrayList<>();
+			while (this.pos < this.input.length()) {
+				if (this.consume('.')) path.add(this.name());
+				else if (this.peek() == '[' && this.pos + 1 < this.input.length() && (this.input.charAt(this.pos + 1) == '\'' || this.input.charAt(this.pos + 1) == '"')) {
+					this.pos++;
+					path.add(this.quoted());
+					if (!this.consume(']')) throw this.error("Expected ]");
+				} else break;
+			}
+			this.skipWhitespace();
+			int operator = this.operator();
+			JsonElement literal = null;
+			if (operator != EXISTS) {
+				this.skipWhitespace();
+				literal = this.literal();
+				this.skipWhitespace();
+			}
+			if (!this.consume(')')) throw this.error("Expected )");
+			return new Step(FILTER, descendants, null, 0, 0, 0, path.toArray(new String[0]), operator, literal);
+		}
+
+		private int operator() {
+			String[] operators = { "==", "!=", "<=", ">=", "<", ">" };
+			int[] codes = { EQUAL, NOT_EQUAL, LESS_EQUAL, GREATER_EQUAL, LESS, GREATER };
+			for (int i = 0; i < operators.length; i++) {
+				if (this.input.startsWith(operators[i], this.pos)) {
+					this.pos += operators[i].length();
+					return codes[i];
+				}
+			}
+			return EXISTS;
+		}
+
+		private JsonElement literal() {
+			char c = this.peek();
+			if (c == '\'' || c == '"') return new JsonElement(JsonElement.Types.JSON_STRING, this.quoted());
+			for (String constant: new String[] { "true", "false", "null" }) {
+				if (this.input.startsWith(constant, this.pos)) {
+					this.pos += constant.length();
+					return constant.equals("null") ? new JsonElement(JsonElement.Types.JSON_NULL, null) : new JsonElement(JsonElement.Types.JSON_BOOLEAN, constant);
+				}
+			}
+			int start = this.pos;
+			while (this.pos < this.input.length() && "+-.eE0123456789".indexOf(this.input.charAt(this.pos)) >= 0) this.pos++;
+			try {
+				return JsonNumber.parse(this.input.substring(start, this.pos));
+			} catch (NumberFormatException e) {
+				this.pos = start;
+				throw this.error("Invalid literal");
+			}
+		}
+
+		/**
+		 * Read a name after a dot, up to the next dot, square bracket, space or closing bracket.
+		 */
+		private String name() {
+			int start = this.pos;
+			while (this.pos < this.input.length() && ".[]() \t!=<>".indexOf(this.input.charAt(this.pos)) < 0) this.pos++;
+			if (this.pos == start) throw this.error("Expected name");
+			return this.input.substring(start, this.pos);
+		}
+
+		/**
+		 * Read a name between single or double quotes, a backslash escapes the next char.
+		 */
+		private String quoted() {
+			char quote = this.input.charAt(this.pos++);
+			StringBuilder builder = new StringBuilder();
+			while (this.pos < this.input.length()) {
+				char c = this.input.charAt(this.pos++);
+				if (c == quote) return builder.toString();
+				if (c == '\\' && this.pos < this.input.length()) c = this.input.charAt(this.pos++);
+				builder.append(c);
+			}
+			throw this.error("Unterminated string");
+		}
+
+		/**
+		 * Read an optional integer, return the default value if there is none.
+		 */
+		private int integer(int missing) {
+			this.skipWhitespace();
+			int start = this.pos;
+			if (this.peek() == '-') this.pos++;
+			while (this.pos < this.input.length() && Character.isDigit(this.input.charAt(this.pos))) this.pos++;
+			if (this.pos == start) return missing;
+			try {
+				return Integer.parseInt(this.input.substring(start, this.pos));
+			} catch (NumberFormatException e) {
+				this.pos = start;
+				throw this.error("Invalid index");
+			}
+		}
+
+		private boolean consume(char expected) {
+			if (this.pos < this.input.length() && this.input.charAt(this.pos) == expected) {
+				this.pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private char peek() { return this.pos < this.input.length() ? this.input.charAt(this.pos) : 0; }
+
+		private void skipWhitespace() {
+			while (this.pos < this.input.length() && Character.isWhitespace(this.input.charAt(this.pos))) this.pos++;
+		}
+
+		private UnsupportedOperationException error(String message) {
+			return new UnsupportedOperationException(String.format("%s at position %d of JsonPath %s", message, this.pos, this.input));
+		}
+	}
+}
@@ -0,0 +1,435 @@
+package it.icapito.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonNumberArray;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Incremental parser that receives UTF-8 text in chunks of any size, for example the buffers read
+ * from a non blocking channel. The parser never waits for input: every call of feed consumes all
+ * the bytes received, keeps the state of the string, number or literal not yet completed and
+ * returns. Every JsonObject is passed to the consumer as soon as its closing brace is received,
+ * so a stream can contain many objects separated by whitespace (as NDJSON).
+ * Strings keep the escape sequences as the other parsers; a multi byte UTF-8 char split between
+ * two chunks is decoded when the string is completed.
+ * An instance is not thread safe and must be used by one thread at a time.
+ *
+ * @see JsonService#parse(String)
+ *
+ * @author BlackCodec
+ *
+ */
+public final class JsonPushParser {
+
+	private enum State {
+		// whitespace or the open brace of a new JsonObject
+		DOCUMENT,
+		// a key or the close brace after an open brace
+		KEY_OR_END,
+		// a key after a comma
+		KEY,
+		COLON,
+		// a value or the close bracket after an open bracket
+		VALUE_OR_END,
+		VALUE,
+		// a comma or the close brace or bracket of the current container
+		AFTER_VALUE,
+		STRING,
+		NUMBER,
+		LITERAL,
+		FAILED;
+	}
+
+	private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+	private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+	private final Consumer<? super JsonObject> consumer;
+
+	private State state = State.DOCUMENT;
+	// JsonObject or list of the elements of a JsonArray for every open container
+	private Object[] containers = new Object[16];
+	private String[] keys = new String[16];
+	private int depth = 0;
+
+	// bytes of the string, number or literal not yet completed
+	private byte[] token = new byte[64];
+	private int length = 0;
+	private boolean key = false;
+	private boolean escape = false;
+	private byte[] literal = null;
+
+	private long position = 0;
+	// index of the chunk that corresponds to position
+	private int base = 0;
+	private long documents = 0;
+
+	/**
+	 * Construct a parser that passes every JsonObject completed to the consumer.
+	 *
+	 * @param consumer the consumer of the parsed JSON objects, called from the thread that calls feed
+	 */
+	public JsonPushParser(Consumer<? super JsonObject> consumer) { this.consumer = Objects.requireNonNull(consumer); }
+
+	/**
+	 * Parse all the bytes of the array.
+	 *
+	 * @param chunk the bytes received
+	 * @throws UnsupportedOperationException if the bytes do not continue a valid JSON object
+	 */
+	public void feed(byte[] chunk) throws UnsupportedOperationException { this.feed(chunk, 0, chunk.length); }
+
+	/**
+	 * Parse the bytes remaining in the buffer, the position of the buffer is moved to its limit.
+	 *
+	 * @param chunk the bytes received
+	 * @throws UnsupportedOperationException if the bytes do not continue a valid JSON object
+	 */
+	public void feed(ByteBuffer chunk) throws UnsupportedOperationException {
+		if (chunk.hasArray()) {
+			this.feed(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+			chunk.position(chunk.limit());
+			return;
+		}
+		byte[] buffer = new byte[Math.min(chunk.remaining(), 8192)];
+		while (chunk.hasRemaining()) {
+			int count = Math.min(chunk.remaining(), buffer.length);
+			chunk.get(buffer, 0, count);
+			this.feed(buffer, 0, count);
+		}
+	}
+
+	/**
+	 * Parse the specified bytes of the array.
+	 *
+	 * @param chunk  the array that contains the bytes received
+	 * @param offset the index of the first byte
+	 * @param count  the number of bytes
+	 * @throws UnsupportedOperationException if the bytes do not continue a valid JSON object
+	 */
+	public void feed(byte[] chunk, int offset, int count) throws UnsupportedOperationException {
+		Objects.checkFromIndexSize(offset, count, chunk.length);
+		if (this.state == State.FAILED) throw new UnsupportedOperationException("The parser has been stopped by a previous error");
+		int end = offset + count;
+		int i = offset;
+		this.base = offset;
+		try {
+			while (i < end) i = this.step(chunk, i, end);
+		} catch (UnsupportedOperationException e) {
+			this.state = State.FAILED;
+			throw e;
+		} finally {
+			this.position += i - offset;
+		}
+	}
+
+	/**
+	 * Declare the end of the input.
+	 *
+	 * @throws UnsupportedOperationException if the input ends inside a JsonObject
+	 */
+	public void end() throws UnsupportedOperationException {
+		if (this.state == State.FAILED) throw new UnsupportedOperationException("The parser has been stopped by a previous error");
+		if (this.state != State.DOCUMENT) {
+			this.state = State.FAILED;
+			throw this.error("Unexpected end of input", this.position);
+		}
+	}
+
+	/**
+	 * Discard the JsonObject not yet completed and any previous error, so the parser can receive a new stream.
+	 */
+	public void reset() {
+		Arrays.fill(this.containers, 0, this.depth, null);
+		Arrays.fill(this.keys, 0, this.depth, null);
+		this.depth = 0;
+		this.length = 0;
+		this.literal = null;
+		this.state = State.DOCUMENT;
+	}
+
+	/**
+	 * Return true if the parser is between two JsonObjects, so the input can end here.
+	 *
+	 * @return true if no JsonObject is partially received
+	 */
+	public boolean isIdle() { return this.state == State.DOCUMENT; }
+
+	/**
+	 * Return the number of bytes parsed since the construction of the parser.
+	 *
+	 * @return the number of bytes parsed
+	 */
+	public long position() { return this.position; }
+
+	/**
+	 * Return the number of JsonObjects passed to the consumer.
+	 *
+	 * @return the number of JSON objects parsed
+	 */
+	public long documents() { return this.documents; }
+
+	/**
+	 * Consume the bytes for the current state.
+	 *
+	 * @return the index of the first byte not consumed
+	 */
+	private int step(byte[] chunk, int i, int end) {
+		switch (this.state) {
+			case STRING:
+				return this.string(chunk, i, end);
+			case NUMBER:
+				return this.number(chunk, i, end);
+			case LITERAL:
+				return this.literal(chunk, i, end);
+			default:
+				break;
+		}
+		byte c = chunk[i];
+		if (c == ' ' || c == '\n' || c == '\r' || c == '\t') return i + 1;
+		switch (this.state) {
+			case DOCUMENT:
+				if (c != '{') throw this.error("JsonObject expected", i);
+				this.open(new JsonObject());
+				this.state = State.KEY_OR_END;
+				return i + 1;
+			case KEY_OR_END:
+				if (c == '}') return this.close(i);
+				return this.startKey(c, i);
+			case KEY:
+				return this.startKey(c, i);
+			case COLON:
+				if (c != ':') throw this.error("Colon expected", i);
+				this.state = State.VALUE;
+				return i + 1;
+			case VALUE_OR_END:
+				if (c == ']') return this.close(i);
+				return this.startValue(c, i);
+			case VALUE:
+				return this.startValue(c, i);
+			case AFTER_VALUE:
+				boolean object = this.containers[this.depth - 1] instanceof JsonObject;
+				if (c == ',') {
+					this.state = object ? State.KEY : State.VALUE;
+					return i + 1;
+				}
+				if (c == (object ? '}' : ']')) return this.close(i);
+				throw this.error(object ? "Not well formed JsonObject found" : "Not well formed JsonArray found", i);
+			default:
+				throw new IllegalStateException(this.state.name());
+		}
+	}
+
+	private int startKey(byte c, int i) {
+		if (c != '"') throw this.error("Key expected", i);
+		this.startString(true);
+		return i + 1;
+	}
+
+	private int startValue(byte c, int i) {
+		switch (c) {
+			case '{':
+				this.open(new JsonObject());
+				this.state = State.KEY_OR_END;
+				return i + 1;
+			case '[':
+				this.open(new ArrayList<JsonElement>());
+				this.state = State.VALUE_OR_END;
+				return i + 1;
+			case '"':
+				this.startString(false);
+				return i + 1;
+			case 't':
+				return this.startLiteral(TRUE, i);
+			case 'f':
+				return this.startLiteral(FALSE, i);
+			case 'n':
+				return this.startLiteral(NULL, i);
+			default:
+				if (c != '-' && (c < '0' || c > '9')) throw this.error("Invalid JSON type", i);
+				this.length = 0;
+				this.state = State.NUMBER;
+				return i;
+		}
+	}
+
+	private void startString(boolean key) {
+		this.key = key;
+		this.escape = false;
+		this.length = 0;
+		this.state = State.STRING;
+	}
+
+	private int startLiteral(byte[] literal, int i) {
+		this.literal = literal;
+		this.length = 0;
+		this.state = State.LITERAL;
+		return i;
+	}
+
+	/**
+	 * Read the bytes of the string until the closing quotation mark, the escape sequences are kept as is.
+	 */
+	private int string(byte[] chunk, int i, int end) {
+		int start = i;
+		// the char escaped at the end of the previous chunk
+		if (this.escape && i < end) {
+			this.escape = false;
+			i++;
+		}
+		while (i < end) {
+			i = JsonStrings.scan(chunk, i, end, false);
+			if (i == end) break;
+			byte c = chunk[i];
+			if (c == '"') break;
+			if (c != '\\') throw this.error("Not well formed JsonString found", i);
+			if (i + 1 == end) this.escape = true;
+			i = Math.min(i + 2, end);
+		}
+		if (i == end) {
+			this.append(chunk, start, i);
+			return end;
+		}
+		String text;
+		// a string contained in the chunk is decoded in place
+		if (this.length == 0) text = new String(chunk, start, i - start, StandardCharsets.UTF_8);
+		else {
+			this.append(chunk, start, i);
+			text = new String(this.token, 0, this.length, StandardCharsets.UTF_8);
+		}
+		if (this.key) {
+			this.keys[this.depth - 1] = text;
+			this.state = State.COLON;
+		} else this.value(new JsonElement(JsonElement.Types.JSON_STRING, text));
+		return i + 1;
+	}
+
+	/**
+	 * Read the chars of the number until the first char that cannot be part of it.
+	 */
+	private int number(byte[] chunk, int i, int end) {
+		int start = i;
+		while (i < end) {
+			byte c = chunk[i];
+			if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') break;
+			i++;
+		}
+		if (i == end) {
+			this.append(chunk, start, i);
+			return end;
+		}
+		// a number contained in the chunk is read in place
+		JsonNumber number;
+		if (this.length == 0) number = toNumber(chunk, start, i);
+		else {
+			this.append(chunk, start, i);
+			number = toNumber(this.token, 0, this.length);
+		}
+		if (number == null) throw this.error("Invalid JSON number", i);
+		this.value(number);
+		return i;
+	}
+
+	private int literal(byte[] chunk, int i, int end) {
+		while (i < end && this.length < this.literal.length) {
+			if (chunk[i] != this.literal[this.length]) throw this.error("Invalid JSON type", i);
+			this.length++;
+			i++;
+		}
+		if (this.length == this.literal.length) {
+			if (this.literal == NULL) this.value(new JsonElement(JsonElement.Types.JSON_NULL, null));
+			else this.value(new JsonElement(JsonElement.Types.JSON_BOOLEAN, this.literal == TRUE ? "true" : "false"));
+			this.literal = null;
+		}
+		return i;
+	}
+
+	private void open(Object container) {
+		if (this.depth == this.containers.length) {
+			this.containers = Arrays.copyOf(this.containers, this.depth * 2);
+			this.keys = Arrays.copyOf(this.keys, this.depth * 2);
+		}
+		this.containers[this.depth++] = container;
+	}
+
+	/**
+	 * Close the current container and add it to its parent, or pass it to the consumer if it is the root.
+	 */
+	@SuppressWarnings("unchecked")
+	private int close(int i) {
+		Object container = this.containers[--this.depth];
+		this.containers[this.depth] = null;
+		this.keys[this.depth] = null;
+		JsonElement element;
+		if (container instanceof JsonObject) element = (JsonObject) container;
+		else {
+			List<JsonElement> elements = (List<JsonElement>) container;
+			JsonArray array = JsonNumberArray.of(elements);
+			if (array == null) {
+				array = new JsonArray();
+				for (JsonElement sub: elements) {
+					sub.setParent(array);
+					array.add(sub);
+				}
+			}
+			element = array;
+		}
+		if (this.depth > 0) this.value(element);
+		else {
+			this.state = State.DOCUMENT;
+			this.documents++;
+			this.consumer.accept((JsonObject) element);
+		}
+		return i + 1;
+	}
+
+	/**
+	 * Add a completed value to the current container.
+	 */
+	@SuppressWarnings("unchecked")
+	private void value(JsonElement value) {
+		Object container = this.containers[this.depth - 1];
+		if (container instanceof JsonObject) {
+			JsonObject object = (JsonObject) container;
+			value.setParent(object);
+			object.add(this.keys[this.depth - 1], value);
+		} else ((List<JsonElement>) container).add(value);
+		this.state = State.AFTER_VALUE;
+	}
+
+	private void append(byte[] chunk, int start, int end) {
+		int count = end - start;
+		if (count == 0) return;
+		if (this.length + count > this.token.length) this.token = Arrays.copyOf(this.token, Math.max(this.token.length * 2, this.length + count));
+		System.arraycopy(chunk, start, this.token, this.length, count);
+		this.length += count;
+	}
+
+	/**
+	 * Return the JsonNumber of the chars between start and end, or null if they are not a valid JSON number.
+	 * The number is read in place without creating a String, see JsonNumbers.
+	 */
+	private static JsonNumber toNumber(byte[] chars, int start, int end) {
+		try {
+			return JsonNumbers.parse(chars, start, end);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private UnsupportedOperationException error(String message, int i) { return this.error(message, this.position + i - this.base); }
+
+	private UnsupportedOperationException error(String message, long position) {
+		return new UnsupportedOperationException(String.format("%s at position %d", message, position));
+	}
+}
@@ -0,0 +1,393 @@
+package it.icapito.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pull parser that reads JSON tokens from a Reader or an InputStream.
+ * The input is read through a fixed size buffer, so only the current token
+ * is kept in memory and inputs of any size can be processed.
+ * The text of strings and names is returned as is, escape sequences are not decoded.
+ *
+ * <pre>
+ * JsonReader reader = new JsonReader(input);
+ * while (reader.next() != JsonReader.Token.END_DOCUMENT) {
+ *     if (reader.token() == JsonReader.Token.NAME &amp;&amp; reader.text().equals("skip")) {
+ *         if (reader.next().isStart()) reader.skipChildren();
+ *     }
+ * }
+ * </pre>
+ *
+ * @author BlackCodec
+ *
+ */
+public class JsonReader implements Closeable {
+
+	public enum Token {
+
+		START_OBJECT,
+		END_OBJECT,
+		START_ARRAY,
+		END_ARRAY,
+		NAME,
+		STRING,
+		NUMBER,
+		BOOLEAN,
+		NULL,
+		END_DOCUMENT;
+
+		/**
+		 * Return true if this token opens a JSON object or a JSON array.
+		 *
+		 * @return true for START_OBJECT and START_ARRAY
+		 */
+		public boolean isStart() { return this == START_OBJECT || this == START_ARRAY; }
+	}
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	// scopes of the containers opened
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int DANGLING_NAME = 3;
+	private static final int NONEMPTY_OBJECT = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+
+	// modes of scanString
+	private static final int SKIP = 0;
+	private static final int STRING = 1;
+	private static final int NAME = 2;
+
+	private final Reader reader;
+	private final char[] buffer;
+	private int pos = 0;
+	private int limit = 0;
+	private long offset = 0;
+
+	private int[] stack = new int[32];
+	private int depth = 1;
+
+	private final StringBuilder builder = new StringBuilder();
+	private KeyCache keys = null;
+	private Token token = null;
+	private String text = null;
+
+	/**
+	 * Construct a new JsonReader that reads from the specified Reader.
+	 *
+	 * @param reader the source of the JSON text
+	 */
+	public JsonReader(Reader reader) { this(reader, DEFAULT_BUFFER_SIZE); }
+
+	/**
+	 * Construct a new JsonReader that reads from the specified Reader with a buffer of the specified size.
+	 *
+	 * @param reader     the source of the JSON text
+	 * @param bufferSize the number of chars read at once from the reader
+	 */
+	public JsonReader(Reader reader, int bufferSize) {
+		if (bufferSize < 16) throw new IllegalArgumentException("Buffer size must be at least 16 chars");
+		this.reader = reader;
+		this.buffer = new char[bufferSize];
+		this.stack[0] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * Construct a new JsonReader that reads UTF-8 text from the specified InputStream.
+	 *
+	 * @param input the source of the JSON text
+	 */
+	public JsonReader(InputStream input) { this(new InputStreamReader(input, StandardCharsets.UTF_8)); }
+
+	/**
+	 * Move to the next token and return it.
+	 * When the input contains many JSON values separated by spaces they are returned one after the other,
+	 * END_DOCUMENT is returned when the input ends.
+	 *
+	 * @return the token read
+	 * @throws IOException if the underlying reader fails
+	 * @throws UnsupportedOperationException if the input does not contains valid JSON
+	 */
+	public Token next() throws IOException, UnsupportedOperationException {
+		this.text = null;
+		int c;
+		switch (this.stack[this.depth - 1]) {
+			case EMPTY_ARRAY:
+				c = this.nextNonWhitespace();
+				if (c == ']') return this.close(Token.END_ARRAY);
+				this.stack[this.depth - 1] = NONEMPTY_ARRAY;
+				return this.readValue(c);
+			case NONEMPTY_ARRAY:
+				c = this.nextNonWhitespace();
+				if (c == ']') return this.close(Token.END_ARRAY);
+				if (c != ',') throw this.error("Not well formed JsonArray found");
+				return this.readValue(this.nextNonWhitespace());
+			case EMPTY_OBJECT:
+				c = this.nextNonWhitespace();
+				if (c == '}') return this.close(Token.END_OBJECT);
+				return this.readName(c);
+			case NONEMPTY_OBJECT:
+				c = this.nextNonWhitespace();
+				if (c == '}') return this.close(Token.END_OBJECT);
+				if (c != ',') throw this.error("Not well formed JsonObject found");
+				return this.readName(this.nextNonWhitespace());
+			case DANGLING_NAME:
+				if (this.nextNonWhitespace() != ':') throw this.error("Colon expected");
+				this.stack[this.depth - 1] = NONEMPTY_OBJECT;
+				return this.readValue(this.nextNonWhitespace());
+			default:
+				c = this.nextNonWhitespace();
+				if (c == -1) return this.token = Token.END_DOCUMENT;
+				this.stack[0] = NONEMPTY_DOCUMENT;
+				return this.readValue(c);
+		}
+	}
+
+	/**
+	 * Return the current token, or null if next was never called.
+	 *
+	 * @return the current token
+	 */
+	public Token token() { return this.token; }
+
+	/**
+	 * Return the text of the current token.
+	 * For NAME and STRING tokens the text does not contains the quotation marks,
+	 * for NUMBER and BOOLEAN tokens is the literal as found in the input, for other tokens is null.
+	 *
+	 * @return the text of the current token
+	 */
+	public String text() { return this.text; }
+
+	/**
+	 * Return the number of containers opened at the current token.
+	 *
+	 * @return the nesting level of the current token
+	 */
+	public int depth() { return this.depth - 1; }
+
+	/**
+	 * Return the number of chars consumed from the input.
+	 *
+	 * @return the position after the current token
+	 */
+	public long position() { return this.offset + this.pos; }
+
+	/**
+	 * Skip all the tokens of the container opened by the current token.
+	 * The content is only scanned for brackets and quotation marks, no text is created.
+	 * After the call the current token is the matching END_OBJECT or END_ARRAY.
+	 * If the current token is not START_OBJECT or START_ARRAY nothing is done.
+	 *
+	 * @throws IOException if the underlying reader fails
+	 * @throws UnsupportedOperationException if the input ends before the container is closed
+	 */
+	public void skipChildren() throws IOException, UnsupportedOperationException {
+		if (this.token == null || !this.token.isStart()) return;
+		int level = 1;
+		while (level > 0) {
+			if (this.pos == this.limit && !this.fill()) throw this.error("Unexpected end of input");
+			char c = this.buffer[this.pos++];
+			if (c == '"') this.scanString(SKIP);
+			else if (c == '{' || c == '[') level++;
+			else if (c == '}' || c == ']') level--;
+		}
+		this.close(this.token == Token.START_OBJECT ? Token.END_OBJECT : Token.END_ARRAY);
+	}
+
+	@Override
+	public void close() throws IOException { this.reader.close(); }
+
+	/**
+	 * Set the cache used to share the String instances of the names.
+	 *
+	 * @param keys the cache or null to create a new String for every name
+	 */
+	void setKeyCache(KeyCache keys) { this.keys = keys; }
+
+	private Token readValue(int c) throws IOException {
+		switch (c) {
+			case '{':
+				this.push(EMPTY_OBJECT);
+				return this.token = Token.START_OBJECT;
+			case '[':
+				this.push(EMPTY_ARRAY);
+				return this.token = Token.START_ARRAY;
+			case '"':
+				this.text = this.scanString(STRING);
+				return this.token = Token.STRING;
+			case 't':
+				this.readLiteral("true");
+				return this.token = Token.BOOLEAN;
+			case 'f':
+				this.readLiteral("false");
+				return this.token = Token.BOOLEAN;
+			case 'n':
+				this.readLiteral("null");
+				this.text = null;
+				return this.token = Token.NULL;
+			case -1:
+				throw this.error("Unexpected end of input");
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					this.text = this.readNumber();
+					return this.token = Token.NUMBER;
+				}
+				throw this.error("Invalid JSON type");
+		}
+	}
+
+	private Token readName(int c) throws IOException {
+		if (c != '"') throw this.error("Key expected");
+		this.stack[this.depth - 1] = DANGLING_NAME;
+		this.text = this.scanString(this.keys == null ? STRING : NAME);
+		return this.token = Token.NAME;
+	}
+
+	private Token close(Token end) {
+		this.depth--;
+		return this.token = end;
+	}
+
+	private void push(int scope) {
+		if (this.depth == this.stack.length) this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+		this.stack[this.depth++] = scope;
+	}
+
+	/**
+	 * Scan a string, the opening quotation mark was already consumed.
+	 *
+	 * @param mode SKIP to skip the string, STRING to return its content or NAME to return it through the key cache
+	 * @return the content of the string or null if the mode is SKIP
+	 */
+	private String scanString(int mode) throws IOException {
+		boolean keep = mode != SKIP;
+		this.builder.setLength(0);
+		int start = this.pos;
+		while (true) {
+			if (this.pos == this.limit) {
+				if (keep) this.builder.append(this.buffer, start, this.pos - start);
+				if (!this.fill()) throw this.error("Not well formed JsonString found");
+				start = this.pos;
+			}
+			char c = this.buffer[this.pos++];
+			if (c == '"') {
+				if (!keep) return null;
+				if (this.builder.length() == 0) {
+					if (mode == NAME) return this.keys.intern(this.buffer, start, this.pos - 1);
+					return new String(this.buffer, start, this.pos - start - 1);
+				}
+				return this.builder.append(this.buffer, start, this.pos - start - 1).toString();
+			}
+			if (c == '\\') {
+				if (this.pos == this.limit) {
+					if (keep) this.builder.append(this.buffer, start, this.pos - start);
+					if (!this.fill()) throw this.error("Not well formed JsonString found");
+					start = this.pos;
+				}
+				this.pos++;
+			} else if (c < 0x20) throw this.error("Not well formed JsonString found");
+		}
+	}
+
+	private String readNumber() throws IOException {
+		this.builder.setLength(0);
+		int start = --this.pos;
+		while (true) {
+			if (this.pos == this.limit) {
+				this.builder.append(this.buffer, start, this.pos - start);
+				if (!this.fill()) break;
+				start = this.pos;
+			}
+			char c = this.buffer[this.pos];
+			if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+				this.builder.append(this.buffer, start, this.pos - start);
+				break;
+			}
+			this.pos++;
+		}
+		String number = this.builder.toString();
+		if (!isNumber(number)) throw this.error("Invalid JSON number");
+		return number;
+	}
+
+	private void readLiteral(String literal) throws IOException {
+		for (int i = 1; i < literal.length(); i++) {
+			if (this.read() != literal.charAt(i)) throw this.error("Invalid JSON type");
+		}
+		this.text = literal;
+	}
+
+	private int read() throws IOException {
+		if (this.pos == this.limit && !this.fill()) return -1;
+		return this.buffer[this.pos++];
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		while (true) {
+			if (this.pos == this.limit && !this.fill()) return -1;
+			char c = this.buffer[this.pos++];
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+		}
+	}
+
+	/**
+	 * Read the next chars from the reader replacing the content of the buffer.
+	 *
+	 * @return false if the reader does not contains more chars
+	 */
+	private boolean fill() throws IOException {
+		this.offset += this.limit;
+		this.pos = 0;
+		this.limit = 0;
+		int read;
+		do {
+			read = this.reader.read(this.buffer, 0, this.buffer.length);
+		} while (read == 0);
+		if (read < 0) return false;
+		this.limit = read;
+		return true;
+	}
+
+	/**
+	 * Return true if the text is a number as defined by the JSON grammar.
+	 *
+	 * @param text the text to check
+	 * @return true if the text is a valid JSON number
+	 */
+	static boolean isNumber(CharSequence text) {
+		int i = 0;
+		int length = text.length();
+		if (i < length && text.charAt(i) == '-') i++;
+		if (i < length && text.charAt(i) == '0') i++;
+		else {
+			int digits = i;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') i++;
+			if (i == digits) return false;
+		}
+		if (i < length && text.charAt(i) == '.') {
+			int digits = ++i;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') i++;
+			if (i == digits) return false;
+		}
+		if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+			i++;
+			if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) i++;
+			int digits = i;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') i++;
+			if (i == digits) return false;
+		}
+		return i == length;
+	}
+
+	private UnsupportedOperationException error(String message) {
+		return new UnsupportedOperationException(String.format("%s at position %d", message, this.position()));
+	}
+}
@@ -1,15 +1,22 @@
 package it.icapito.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.TreeMap;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Class for manage JSON objects.
@@ -19,272 +26,495 @@ import java.util.regex.Pattern;
  */
 public class JsonService {
 	
-	private static final String REGEX_STRING=".*((\\\"[a-zA-Z0-9_#\\-.]*\\\")[ ]*:[ ]*(\\\".[^\\[\\]\\\"]*(?<!\\\\)\\\")).*";
-	private static final String REGEX_ESCAPE_STRING=".*((\\\"[a-zA-Z0-9_\\-.]*\\\")[ ]*:[ ]*(\\\".*(?<!\\\\)\\\")).*";
-	private static final String REGEX_NUMBER= ".*((\\\"[a-zA-Z0-9_#\\-.]*\\\")[ ]*:[ ]*([\\d]+[.\\d]+)).*";
-	private static final String REGEX_BOOLEAN= ".*((\\\"[a-zA-Z0-9_#\\-.]*\\\")[ ]*:[ ]*(true|false)).*";
-	private static final String REGEX_NULL= ".*((\\\"[a-zA-Z0-9_#\\-.]*\\\")[ ]*:[ ]*(null)).*";
-	private static final String REGEX_ARRAY= ".*(\\[[^\\[]*?\\]).*";
-	private static final String REGEX_OBJECT= ".*(\\{[^\\{]*?\\}).*";
+	private static final Logger VOID_LOGGER = voidLogger();
 	
-	private static final String REGEX_LEAF_MATCH="@leaf-[\\d]+@";
-	private static final String REGEX_ARRAY_MATCH="@arr-[\\d]+@";
-	private static final String REGEX_OBJECT_MATCH="@obj-[\\d]+@";
+	private static volatile Logger logger = VOID_LOGGER;
 	
-	private static Map<String,JsonElement> nodes = new HashMap<>();
-	private static Map<String,String> keys = new HashMap<>();
+	private static volatile KeyCache.Policy keyPolicy = KeyCache.Policy.OFF;
 	
-	private static Logger logger = null;
+	private static volatile boolean sortedOutput = false;
+	
+	private static volatile ParseCache parseCache = null;
+	
+	private static final int FILE_BUFFER_SIZE = 65536;
 	
 	private JsonService() {}
 	
 	/**
 	 * Append a logger where print messages for debug.
+	 * The logger receives a message at the end of every parse, with a null logger nothing is logged.
 	 * 
 	 * @param logger A class that implements java.util.logging.Logger capabilities.
 	 */
-	public static void appendLogger(Logger logger) { JsonService.logger = logger;}
+	public static void appendLogger(Logger logger) {
+		JsonService.logger = logger != null ? logger : VOID_LOGGER;
+		Instrumentation.setLogger(logger);
+	}
+	
+	/**
+	 * Enable or disable the counters of ParseMetrics. The default is false.
+	 * 
+	 * @param enabled true to count the parses
+	 * @see ParseMetrics
+	 */
+	public static void setMetrics(boolean enabled) { Instrumentation.setMetrics(enabled); }
+	
+	/**
+	 * Enable or disable the JDK Flight Recorder event it.icapito.json.Parse for every parse. The default is false.
+	 * The events are committed only while a recording with the event enabled is running.
+	 * 
+	 * @param enabled true to create the JFR events
+	 */
+	public static void setJfrEvents(boolean enabled) { Instrumentation.setJfr(enabled); }
+	
+	/**
+	 * Add a listener notified at the end of every parse.
+	 * 
+	 * @param listener the listener to add
+	 * @see ParseListener
+	 */
+	public static void addParseListener(ParseListener listener) { Instrumentation.addListener(Objects.requireNonNull(listener)); }
+	
+	/**
+	 * Remove a listener added with addParseListener.
+	 * 
+	 * @param listener the listener to remove
+	 */
+	public static void removeParseListener(ParseListener listener) { Instrumentation.removeListener(listener); }
+	
+	/**
+	 * Select how the String instances of the object keys are shared between the parsed objects.
+	 * With PER_PARSE the keys repeated in a document are the same instance, with GLOBAL_LRU 
+	 * the keys are shared by all the parses through a bounded cache. The default is OFF.
+	 * 
+	 * @param policy the policy for the keys
+	 * @see KeyCache
+	 */
+	public static void setKeyCache(KeyCache.Policy policy) { JsonService.keyPolicy = policy != null ? policy : KeyCache.Policy.OFF; }
+	
+	/**
+	 * Return the policy selected for the object keys.
+	 * 
+	 * @return the policy for the keys
+	 */
+	public static KeyCache.Policy keyCache() { return keyPolicy; }
+	
+	/**
+	 * Select a cache of the parsed documents used by parse(String), or null to parse every string.
+	 * With a cache the returned JsonObjects are frozen and shared by all the callers that parse 
+	 * the same string, so they cannot be changed. The default is null.
+	 * 
+	 * @param cache the cache of the parsed documents or null
+	 * @see ParseCache
+	 */
+	public static void setParseCache(ParseCache cache) { JsonService.parseCache = cache; }
+	
+	/**
+	 * Return the cache of the parsed documents selected or null if none.
+	 * 
+	 * @return the cache used by parse(String)
+	 */
+	public static ParseCache parseCache() { return parseCache; }
+	
+	/**
+	 * Select if the keys of the JsonObjects are written sorted instead of in insertion order.
+	 * The default is false, so a parsed document is written with the keys in the same order.
+	 * 
+	 * @param sorted true to write the keys sorted
+	 */
+	public static void setSortedOutput(boolean sorted) { JsonService.sortedOutput = sorted; }
+	
+	/**
+	 * Return true if the keys of the JsonObjects are written sorted.
+	 * 
+	 * @return true if the keys are written sorted
+	 */
+	public static boolean isSortedOutput() { return sortedOutput; }
+	
+	/**
+	 * Return the logger appended to the service or a void logger if none was appended.
+	 * 
+	 * @return the logger where print messages for debug
+	 */
+	static Logger logger() { return logger; }
+	
+	private static Logger voidLogger() {
+		Logger result = Logger.getLogger(JsonService.class.getCanonicalName());
+		result.setLevel(Level.OFF);
+		return result;
+	}
 	
 	/**
 	 * Return a JsonObject from a string.
-	 * The method converts a string in a JSON object.
+	 * The method converts a string in a JSON object reading the string only once.
+	 * Every call uses its own parser state, so the method can be called from many threads 
+	 * at the same time and no reference to the parsed elements is kept after the return.
 	 * The string must contains a valid JSON object otherwise UnsupportedOperationException will be raised.
+	 * The parse is reported to the metrics, the listeners and the logger only when they are enabled.
+	 * When a ParseCache is selected the result is frozen and can be returned by the cache.
 	 * 
 	 * @param jsonString	a string that contains the JSON object
 	 * @return				the JSON object representation of the string
 	 * @see					JsonObject
+	 * @see					#setParseCache(ParseCache)
 	 * @throws UnsupportedOperationException if the input string does not represent a valid JSON object
 	 */
 	public static JsonObject parse(String jsonString) throws UnsupportedOperationException {
-		if (logger == null) {
-			// set to a void logger
-			logger = Logger.getLogger(JsonService.class.getCanonicalName());
-			logger.setLevel(Level.OFF);
-		}
-		logger.entering(JsonService.class.getCanonicalName(),"parse");
+		ParseCache cache = parseCache;
+		return cache != null ? cache.parse(jsonString) : parseText(jsonString);
+	}
+	
+	/**
+	 * Return a JsonObject from a string without the parse cache.
+	 * 
+	 * @param jsonString	a string that contains the JSON object
+	 * @return				the JSON object representation of the string
+	 * @throws UnsupportedOperationException if the input string does not represent a valid JSON object
+	 */
+	static JsonObject parseText(String jsonString) throws UnsupportedOperationException {
+		Instrumentation.Probe probe = Instrumentation.start(ParseEvent.Source.STRING, jsonString.length());
+		JsonObject parsed;
 		try {
-			// match all JSON number
-			logger.info("Parsing all numbers... ");
-			String parsed = extractLeaf(jsonString, REGEX_NUMBER, JsonElement.Types.JSON_NUMBER);
-			// match all JSON boolean
-			logger.info("Parsing all booleans ... ");
-			parsed = extractLeaf(parsed, REGEX_BOOLEAN, JsonElement.Types.JSON_BOOLEAN);
-			// match all JSON null
-			logger.info("Parsing all nulls ... ");
-			parsed = extractLeaf(parsed, REGEX_NULL, JsonElement.Types.JSON_NULL);
-			// match all JSON strings
-			logger.info("Parsing all strings ... ");
-			parsed = extractLeaf(parsed, REGEX_STRING, JsonElement.Types.JSON_STRING);
-			// match all JSON escaped strings
-			logger.info("Parsing all escaped strings ... ");
-			parsed = extractLeaf(parsed, REGEX_ESCAPE_STRING, JsonElement.Types.JSON_STRING);
-			logger.log(Level.FINE,"Current string: {0}",parsed);
-			logger.info("Removes end lines and unused spaces ... ");
-			// clear the rest of the string, remove all spaces
-			parsed = parsed.replace(System.lineSeparator(), "").replace(" ","").replace("\r", "").replace("\n", "").replace("\t", "");
-			logger.info("Parsing all JSON arrays... ");
-			// parse all JSON arrays
-			parsed = extractArray(parsed);
-			logger.info("Parsing all JSON objects... ");
-			// parse all JSON objects
-			parsed = extractObject(parsed);
-			// we expected to have a JSON object now
-			if (parsed.matches(REGEX_OBJECT_MATCH)) {
-				logger.info("Process completed: SUCCESS.");
-				return (JsonObject) nodes.get(parsed);
-			}
-			logger.warning("Process completed: Invalid JSON object");
-			return null;
-		} finally { logger.exiting(JsonService.class.getCanonicalName(),"parse"); }
+			parsed = new JsonParser(jsonString).parseObject();
+		} catch (RuntimeException e) {
+			if (probe != null) probe.failed(e);
+			throw e;
+		}
+		// outside the try, an exception of a listener is not a failure of the parse
+		if (probe != null) probe.parsed(parsed);
+		return parsed;
 	}
 	
 	/**
-	 * Private method that parse all JsonArray objects from string and add it to the nodes map
+	 * Return a lazy JsonObject from a string.
+	 * The string is scanned once to find the position of keys and values, but the values are 
+	 * decoded only when they are read with get, so the work done depends on the values read.
+	 * The content of nested objects and arrays is validated only when they are read, so 
+	 * UnsupportedOperationException can be raised by the methods of the returned object.
 	 * 
-	 * @param input string to parse
-	 * @return      the string parsed that contains reference to nodes map keys
-	 * @see JsonArray
-	 * @throws UnsupportedOperationException if the string does not contains a valid json
+	 * @param jsonString	a string that contains the JSON object
+	 * @return				the lazy JSON object representation of the string
+	 * @see					JsonObject
+	 * @throws UnsupportedOperationException if the input string does not represent a valid JSON object
 	 */
-	private static String extractArray(String input) throws UnsupportedOperationException {
-		logger.entering(JsonService.class.getCanonicalName(),"extractArray");
+	public static JsonObject parseLazy(String jsonString) throws UnsupportedOperationException {
+		Instrumentation.Probe probe = Instrumentation.start(ParseEvent.Source.LAZY, jsonString.length());
+		JsonObject parsed;
 		try {
-			logger.log(Level.FINEST,"Pattern: {0}\nInput: {1}", new String[] {REGEX_ARRAY,input});
-			Pattern pattern = Pattern.compile(REGEX_ARRAY,Pattern.MULTILINE);
-			Matcher matcher = pattern.matcher(input);
-			if (matcher.find()) {
-				String values = matcher.group(1); // [@id-1@,@id-2@...]
-				String replace = values;
-				if (values.startsWith("[")) values = values.substring(1);
-				if (values.endsWith("]")) values = values.substring(0,values.length()-1);
-				// this is an array so create a new JSON array
-				if (values.contains("{")) {
-					if (!values.contains("}")) 
-						throw new UnsupportedOperationException("Not well formed JsonObject found");
-					// is an array objects
-					values = extractObject(values);
-				}
-				// is an array of element, split comma
-				JsonArray node = new JsonArray();
-				for (String child: values.split(",")) {
-					if (child != null && !child.isEmpty()) {
-						JsonElement sub = null;
-						if (child.matches(REGEX_LEAF_MATCH) || child.matches(REGEX_ARRAY_MATCH) || child.matches(REGEX_OBJECT_MATCH)) {
-							sub = nodes.get(child);
-						} else {
-							// is a value so check if value is a string
-							if (child.trim().startsWith("\"")) {
-								logger.log(Level.FINEST,"String: {0}", child);
-								if (!child.trim().endsWith("\"")) {
-									// invalid string
-									logger.severe("Invalid string!");
-									throw new UnsupportedOperationException("Not well formed JsonString found");
-								}
-								sub = new JsonElement(JsonElement.Types.JSON_STRING,clearText(child));
-							} else {
-								// clear the text
-								child = clearText(child);
-								// if record is true or false is a boolean
-								if (child.equals("true") || child.equals("false")) {
-									logger.log(Level.FINEST,"Boolean: {0}", child);
-									sub = new JsonElement(JsonElement.Types.JSON_BOOLEAN, child);
-								} else if (child.matches("[\\d]+")) {
-									logger.log(Level.FINEST,"Number: {0}", child);
-									sub = new JsonElement(JsonElement.Types.JSON_NUMBER, child);
-								} else if (child.equals("null")){
-									logger.log(Level.FINEST,"Null: {0}", child);
-									sub = new JsonElement(JsonElement.Types.JSON_NULL, null);
-								}
-							}
-						}
-						if (sub != null) {
-							logger.log(Level.FINEST,"Json child: {0}", sub);
-							sub.setParent(node);
-							node.add(sub);
-						} else 
-							throw new UnsupportedOperationException("Invalid JSON type");
-					}
-				}
-				// calculate the is of this object
-				String id = String.format("@arr-%d@", nodes.size());
-				logger.log(Level.FINEST,"id: {0}", id);
-				// add id to nodes only because this element does not have any key
-				nodes.put(id, node);
-				// now replace the old string and return
-				return extractArray(input.replace(replace, id));
-			}
-			logger.warning("No match!");
-			return input;
-		} finally { logger.exiting(JsonService.class.getCanonicalName(),"extractArray"); }
+			parsed = new JsonParser(jsonString).parseLazyObject();
+		} catch (RuntimeException e) {
+			if (probe != null) probe.failed(e);
+			throw e;
+		}
+		// outside the try, an exception of a listener is not a failure of the parse
+		if (probe != null) probe.parsed(parsed);
+		return parsed;
 	}
 	
 	/**
-	 * Private method that parse all JsonObject objects from string and add it to the nodes map
+	 * Return a JsonObject with only the values selected by the projection.
+	 * The values not selected are skipped counting brackets and quotation marks, without 
+	 * creating any object, so the work done depends mostly on the values kept. 
+	 * The content of the skipped values is not validated.
 	 * 
-	 * @param input string to parse
-	 * @return      the string parsed that contains reference to nodes map keys
-	 * @see JsonObject
-	 * @throws UnsupportedOperationException if the string does not contains a valid json
+	 * @param jsonString	a string that contains the JSON object
+	 * @param projection	the values to keep, for example Projection.of("$.item0.name", "$.key8[*].sk2")
+	 * @return				the JSON object with the selected values
+	 * @see					Projection
+	 * @throws UnsupportedOperationException if the input string does not represent a valid JSON object
 	 */
-	private static String extractObject(String input) throws UnsupportedOperationException { 
-		logger.entering(JsonService.class.getCanonicalName(),"extractObject");
+	public static JsonObject parse(String jsonString, Projection projection) throws UnsupportedOperationException {
+		Instrumentation.Probe probe = Instrumentation.start(ParseEvent.Source.PROJECTION, jsonString.length());
+		JsonObject parsed;
 		try {
-			logger.log(Level.FINEST,"Pattern: {0}\nInput: {1}", new String[] {REGEX_OBJECT,input});
-			Pattern pattern = Pattern.compile(REGEX_OBJECT,Pattern.MULTILINE);
-			Matcher matcher = pattern.matcher(input);
-			if (matcher.find()) {
-				String values = matcher.group(1); 
-				String replace = values;
-				if (values.startsWith("{")) values = values.substring(1);
-				if (values.endsWith("}")) values = values.substring(0,values.length()-1);
-				// this is an array so create a new JSON array
-				if (values.contains("[")) {
-					if (!values.contains("]")) {
-						logger.log(Level.FINEST,"Invalid array: {0}", values);
-						throw new UnsupportedOperationException("Not well formed JsonArray found");
-					}
-					// is an array objects
-					values = extractArray(values);
-				}
-				// is an array of element, split comma
-				logger.log(Level.FINEST,"Split comma for child value: {0}",values);
-				JsonObject node = new JsonObject();
-				for (String child: values.split(",")) {
-					if (child != null && !child.isEmpty()) {
-						JsonElement sub = null;
-						String key = null;
-						// check for key value pair
-						if (child.contains(":")) {
-							key = clearText(child.split(":")[0]);
-							child = child.split(":")[1];
-							logger.log(Level.FINEST,"Key: {0}\nValue: {1}", new String[] {key,child});
-						}
-						if (child.matches(REGEX_LEAF_MATCH) || child.matches(REGEX_ARRAY_MATCH) || child.matches(REGEX_OBJECT_MATCH)) {
-							sub = nodes.get(child);
-							if (key == null) key = keys.get(child);
-						} 
-						if (sub != null && key != null) {
-							logger.log(Level.FINEST,"Json child: {0}", sub);
-							sub.setParent(node);
-							node.add(key,sub);
-						} else { 
-							logger.log(Level.SEVERE,"Invalid JSON type: {0}.\nKey: {1}\nChild:{2}",new String[] {child, key, (sub!=null?sub.value():"null")});
-							throw new UnsupportedOperationException(String.format("Invalid JSON type: %s.%nKey: %s%nChild:%s",child, key, (sub!=null?sub.value():"null")));
-						}
-					}
-				}
-				// calculate the is of this object
-				String id = String.format("@obj-%d@", nodes.size());
-				logger.log(Level.FINEST,"id: {0}", id);
-				// add id to nodes only because this element does not have any key
-				nodes.put(id, node);
-				// now replace the old string and return
-				return extractObject(input.replace(replace, id));
-			}
-			logger.warning("No match!");
-			return input;
-		} finally { logger.exiting(JsonService.class.getCanonicalName(),"extractObject"); }
+			parsed = new JsonParser(jsonString).parseObject(projection);
+		} catch (RuntimeException e) {
+			if (probe != null) probe.failed(e);
+			throw e;
+		}
+		// outside the try, an exception of a listener is not a failure of the parse
+		if (probe != null) probe.parsed(parsed);
+		return parsed;
 	}
 	
 	/**
-	 * Private method that parse all JsonNode objects that are not JsonNode or 
-	 * JsonArray object from string and add it to the nodes map.
+	 * Parse a string calling the handler for every token, without building the tree.
+	 * The handler can skip an object, an array or the value of a key and stop the parse at any token,
+	 * the values skipped are scanned counting brackets and quotation marks and their content is not validated.
+	 * Use JsonHandler.TreeBuilder to build the same JsonObject returned by parse(String) and
+	 * JsonHandler.Serializer to write the tokens again.
+	 *
+	 * @param jsonString	a string that contains the JSON object
+	 * @param handler		the callbacks for the tokens
+	 * @return				true if the whole string has been read, false if the handler stopped the parse
+	 * @see					JsonHandler
+	 * @throws UnsupportedOperationException if the input string does not represent a valid JSON object
+	 */
+	public static boolean parse(String jsonString, JsonHandler handler) throws UnsupportedOperationException {
+		return new JsonParser(jsonString).parseObject(Objects.requireNonNull(handler));
+	}
+
+	/**
+	 * Read a JSON object from a Reader calling the handler for every token, without building the tree.
+	 * The reader is not closed by this method.
+	 *
+	 * @param reader	the source that contains the JSON object
+	 * @param handler	the callbacks for the tokens
+	 * @return			true if the whole input has been read, false if the handler stopped the parse
+	 * @see				#parse(String, JsonHandler)
+	 * @throws IOException if the reader fails
+	 * @throws UnsupportedOperationException if the input does not represent a valid JSON object
+	 */
+	public static boolean parse(Reader reader, JsonHandler handler) throws IOException, UnsupportedOperationException {
+		Objects.requireNonNull(handler);
+		JsonReader json = new JsonReader(reader);
+		json.setKeyCache(KeyCache.forParse(keyPolicy));
+		if (json.next() != JsonReader.Token.START_OBJECT)
+			throw new UnsupportedOperationException("JsonObject expected");
+		if (!emitElement(json, handler)) return false;
+		if (json.next() != JsonReader.Token.END_DOCUMENT)
+			throw new UnsupportedOperationException(String.format("Unexpected content after JsonObject at position %d", json.position()));
+		return true;
+	}
+
+	/**
+	 * Return a JsonObject read from a Reader.
+	 * The input is read through a JsonReader, so it is never loaded entirely in memory as a string.
+	 * The reader is not closed by this method.
 	 * 
-	 * @param input string to parse
-	 * @return      the string parsed that contains reference to nodes map keys
-	 * @see JsonElement
+	 * @param reader	the source that contains the JSON object
+	 * @return			the JSON object representation of the input
+	 * @see				JsonReader
+	 * @throws IOException if the reader fails
+	 * @throws UnsupportedOperationException if the input does not represent a valid JSON object
+	 */
+	public static JsonObject parse(Reader reader) throws IOException, UnsupportedOperationException {
+		return parse(new JsonReader(reader), Instrumentation.start(ParseEvent.Source.READER, -1));
+	}
+	
+	/**
+	 * Return a JsonObject read from an InputStream that contains UTF-8 text.
+	 * The stream is not closed by this method.
+	 * 
+	 * @param input	the source that contains the JSON object
+	 * @return		the JSON object representation of the input
+	 * @see			#parse(Reader)
+	 * @throws IOException if the stream fails
+	 * @throws UnsupportedOperationException if the input does not represent a valid JSON object
+	 */
+	public static JsonObject parse(InputStream input) throws IOException, UnsupportedOperationException {
+		return parse(new JsonReader(input), Instrumentation.start(ParseEvent.Source.READER, -1));
+	}
+	
+	/**
+	 * Return a JsonObject read from a file that contains UTF-8 text.
+	 * The file is mapped in memory and decoded while it is parsed, so the content 
+	 * is read from the page cache and never loaded in memory as a string.
+	 * 
+	 * @param path	the file that contains the JSON object
+	 * @return		the JSON object representation of the file content
+	 * @see			#parse(Reader)
+	 * @throws IOException if the file cannot be read or does not contains valid UTF-8 text
+	 * @throws UnsupportedOperationException if the file does not contains a valid JSON object
 	 */
-	private static String extractLeaf(String input, String regex, JsonElement.Types type) {
-		logger.entering(JsonService.class.getCanonicalName(),"extractLeaf");
+	public static JsonObject parse(Path path) throws IOException, UnsupportedOperationException {
+		try (MappedFileReader reader = new MappedFileReader(path)) {
+			return parse(new JsonReader(reader, FILE_BUFFER_SIZE), Instrumentation.start(ParseEvent.Source.FILE, reader.size()));
+		}
+	}
+	
+	/**
+	 * Return a JsonObject from an array that contains UTF-8 text.
+	 *
+	 * @param json	the bytes that contain the JSON object
+	 * @return		the JSON object representation of the bytes
+	 * @see			#parse(byte[], int, int)
+	 * @throws UnsupportedOperationException if the bytes do not represent a valid JSON object
+	 */
+	public static JsonObject parse(byte[] json) throws UnsupportedOperationException { return parse(json, 0, json.length); }
+
+	/**
+	 * Return a JsonObject from a part of an array that contains UTF-8 text.
+	 * The bytes are parsed without decoding the whole input in a string: keys are decoded when
+	 * they are read and string values only the first time their value is read, so the values never
+	 * read and the values written back with writeTo(OutputStream) are never decoded.
+	 * The range is copied once, so the array can be reused by the caller after the return; the copy
+	 * is kept by the tree until all its string values are decoded.
+	 * Positions in the error messages are in bytes from offset.
+	 *
+	 * @param json		the array that contains the JSON object
+	 * @param offset	the index of the first byte of the JSON object
+	 * @param length	the number of bytes of the JSON object
+	 * @return			the JSON object representation of the bytes
+	 * @see				JsonElement#writeTo(OutputStream)
+	 * @throws UnsupportedOperationException if the bytes do not represent a valid JSON object
+	 */
+	public static JsonObject parse(byte[] json, int offset, int length) throws UnsupportedOperationException {
+		Objects.checkFromIndexSize(offset, length, json.length);
+		Instrumentation.Probe probe = Instrumentation.start(ParseEvent.Source.BYTES, length);
+		JsonObject parsed;
 		try {
-			logger.log(Level.FINEST,"Input: {0}\nPattern: {1}\nType: {2}",new String[] {input,regex,type.name()});
-			Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-			Matcher matcher = pattern.matcher(input);
-			if (matcher.find()) {
-				logger.log(Level.FINEST,"Match: {0}",matcher.group(1));
-				String replace = matcher.group(1);
-				String key = JsonService.clearText(matcher.group(2));
-				String value = JsonService.clearText(matcher.group(3));
-				logger.log(Level.FINEST,"Analize: \n - Key: {0}\n - Child:{1}",new String[] {key, value});
-				JsonElement node = new JsonElement(type,value);
-				String id = String.format("@leaf-%d@", nodes.size());
-				logger.log(Level.FINEST,"id: {0}", id);
-				nodes.put(id, node);
-				keys.put(id, key);
-				return extractLeaf(input.replace(replace,id+","),regex,type);
-			}
-			logger.warning("No match!");
-			return input;
-		} finally { logger.exiting(JsonService.class.getCanonicalName(),"extractLeaf"); }
+			parsed = new Utf8Parser(Arrays.copyOfRange(json, offset, offset + length), 0, length).parseObject();
+		} catch (RuntimeException e) {
+			if (probe != null) probe.failed(e);
+			throw e;
+		}
+		// outside the try, an exception of a listener is not a failure of the parse
+		if (probe != null) probe.parsed(parsed);
+		return parsed;
+	}
+
+	private static JsonObject parse(JsonReader json, Instrumentation.Probe probe) throws IOException, UnsupportedOperationException {
+		json.setKeyCache(KeyCache.forParse(keyPolicy));
+		JsonObject parsed;
+		try {
+			if (json.next() != JsonReader.Token.START_OBJECT)
+				throw new UnsupportedOperationException("JsonObject expected");
+			parsed = (JsonObject) readElement(json);
+			if (json.next() != JsonReader.Token.END_DOCUMENT)
+				throw new UnsupportedOperationException(String.format("Unexpected content after JsonObject at position %d", json.position()));
+		} catch (IOException | RuntimeException e) {
+			if (probe != null) probe.failed(e);
+			throw e;
+		}
+		// outside the try, an exception of a listener is not a failure of the parse
+		if (probe != null) probe.parsed(parsed);
+		return parsed;
 	}
 	
 	/**
-	 * Private method for remove the quotation marks from the begin and the end of a string
+	 * Build the JsonElement that starts at the current token of the reader.
 	 * 
-	 * @param input the string to clear
-	 * @return      the string without the quotation marks at the begin and at the end
+	 * @param json the reader positioned on the first token of the value
+	 * @return     the JsonElement read
+	 * @throws IOException if the reader fails
 	 */
-	private static String clearText(String input) { return input.trim().replaceAll("^\\\"(.*)\\\"$", "$1").trim(); }
+	static JsonElement readElement(JsonReader json) throws IOException {
+		switch (json.token()) {
+			case START_OBJECT:
+				JsonObject object = new JsonObject();
+				while (json.next() == JsonReader.Token.NAME) {
+					String key = json.text();
+					json.next();
+					JsonElement sub = readElement(json);
+					sub.setParent(object);
+					object.add(key, sub);
+				}
+				return object;
+			case START_ARRAY:
+				List<JsonElement> elements = new ArrayList<>();
+				while (json.next() != JsonReader.Token.END_ARRAY) elements.add(readElement(json));
+				JsonArray array = JsonNumberArray.of(elements);
+				if (array != null) return array;
+				array = new JsonArray();
+				for (JsonElement sub: elements) {
+					sub.setParent(array);
+					array.add(sub);
+				}
+				return array;
+			case STRING:
+				return new JsonElement(JsonElement.Types.JSON_STRING, json.text());
+			case NUMBER:
+				return JsonNumber.parse(json.text());
+			case BOOLEAN:
+				return new JsonElement(JsonElement.Types.JSON_BOOLEAN, json.text());
+			case NULL:
+				return new JsonElement(JsonElement.Types.JSON_NULL, null);
+			default:
+				throw new UnsupportedOperationException(String.format("Unexpected %s at position %d", json.token().name(), json.position()));
+		}
+	}
+	
+	/**
+	 * Call the handler for the value that starts at the current token of the reader.
+	 *
+	 * @param json		the reader positioned on the first token of the value
+	 * @param handler	the callbacks for the tokens
+	 * @return			false if the handler stopped the parse
+	 */
+	private static boolean emitElement(JsonReader json, JsonHandler handler) throws IOException {
+		JsonHandler.Action action;
+		switch (json.token()) {
+			case START_OBJECT:
+				action = handler.startObject();
+				if (action == JsonHandler.Action.SKIP) {
+					json.skipChildren();
+					return true;
+				}
+				if (action == JsonHandler.Action.STOP) return false;
+				while (json.next() == JsonReader.Token.NAME) {
+					action = handler.key(json.text());
+					if (action == JsonHandler.Action.STOP) return false;
+					if (action == JsonHandler.Action.SKIP) {
+						if (json.next().isStart()) json.skipChildren();
+					} else if (json.next() == JsonReader.Token.END_DOCUMENT || !emitElement(json, handler)) return false;
+				}
+				action = handler.endObject();
+				break;
+			case START_ARRAY:
+				action = handler.startArray();
+				if (action == JsonHandler.Action.SKIP) {
+					json.skipChildren();
+					return true;
+				}
+				if (action == JsonHandler.Action.STOP) return false;
+				while (json.next() != JsonReader.Token.END_ARRAY) {
+					if (!emitElement(json, handler)) return false;
+				}
+				action = handler.endArray();
+				break;
+			case STRING:
+				action = handler.stringValue(json.text());
+				break;
+			case NUMBER:
+				String text = json.text();
+				action = isLong(text) ? handler.longValue(Long.parseLong(text)) : handler.numberValue(text);
+				break;
+			case BOOLEAN:
+				action = handler.booleanValue(json.text().equals("true"));
+				break;
+			case NULL:
+				action = handler.nullValue();
+				break;
+			default:
+				throw new UnsupportedOperationException(String.format("Unexpected %s at position %d", json.token().name(), json.position()));
+		}
+		return action != JsonHandler.Action.STOP;
+	}
+
+	/**
+	 * Return true if the text of a number is an integer that fit in a long.
+	 *
+	 * @param text the text of a valid JSON number
+	 * @return true if the number can be parsed with Long.parseLong
+	 */
+	private static boolean isLong(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '.' || c == 'e' || c == 'E') return false;
+		}
+		boolean negative = text.charAt(0) == '-';
+		int digits = negative ? text.length() - 1 : text.length();
+		// -0 is read as the double -0.0, that keeps the sign
+		if (negative && digits == 1 && text.charAt(1) == '0') return false;
+		if (digits != 19) return digits < 19;
+		// same number of digits, so the strings are sorted as the numbers
+		return text.substring(text.length() - 19).compareTo(negative ? "9223372036854775808" : "9223372036854775807") <= 0;
+	}
+
+	/**
+	 * Freeze a value added to a frozen container, the container becomes its parent only 
+	 * if the value is not already part of a frozen tree.
+	 * 
+	 * @param value     the value to add
+	 * @param container the new container of the value
+	 * @return the frozen value
+	 */
+	private static JsonElement adopt(JsonElement value, JsonElement container) {
+		Objects.requireNonNull(value);
+		if (!value.isFrozen() && value.parent() == null) value.setParent(container);
+		return value.freeze();
+	}
 	
 	/* Json element classes */
 	public static class JsonElement {
@@ -299,7 +529,16 @@ public class JsonService {
 			JSON_OBJECT;
 		}
 
-		private String value;
+		// seeds of the digests of the scalar values and of the containers
+		static final long NULL_DIGEST = 0x6a09e667f3bcc909L;
+		static final long TRUE_DIGEST = 0xbb67ae8584caa73bL;
+		static final long FALSE_DIGEST = 0x3c6ef372fe94f82bL;
+		static final long NUMBER_DIGEST = 0xa54ff53a5f1d36f1L;
+		static final long ARRAY_DIGEST = 0x510e527fade682d1L;
+		static final long OBJECT_DIGEST = 0x9b05688c2b3e6c1fL;
+
+		// package-private so the lazy subclasses can set it when they decode their value
+		String value;
 		private Types type;
 		private JsonElement parent = null;
 		
@@ -346,16 +585,66 @@ public class JsonService {
 		
 		/**
 		 * Return the value of this node as a integer.
-		 * This method is applicable only for JSON_NUMBER types.
+		 * This method is applicable only for JSON_NUMBER types, the decimal part is discarded.
 		 * 
 		 * @return the value of this JsonNode as a integer
 		 * @throws UnsupportedOperationException if the JsonNode type is not JSON_NUMBER
+		 * @throws ArithmeticException if the value does not fit in a integer
+		 */
+		public int intValue() throws UnsupportedOperationException { return Math.toIntExact(this.longValue()); }
+		
+		/**
+		 * Return the value of this node as a long.
+		 * This method is applicable only for JSON_NUMBER types, the decimal part is discarded.
+		 * 
+		 * @return the value of this JsonNode as a long
+		 * @throws UnsupportedOperationException if the JsonNode type is not JSON_NUMBER
+		 */
+		public long longValue() throws UnsupportedOperationException {
+			this.checkType(Types.JSON_NUMBER);
+			try {
+				return Long.parseLong(this.value);
+			} catch (NumberFormatException e) {
+				return new BigDecimal(this.value).longValue();
+			}
+		}
+		
+		/**
+		 * Return the value of this node as a double.
+		 * This method is applicable only for JSON_NUMBER types.
+		 * 
+		 * @return the value of this JsonNode as a double
+		 * @throws UnsupportedOperationException if the JsonNode type is not JSON_NUMBER
 		 */
-		public int intValue() throws UnsupportedOperationException {
-			if (this.type.equals(Types.JSON_NUMBER)) return Integer.parseInt(this.value);
-			else throw new UnsupportedOperationException(String.format("Exception type %s but found %s", Types.JSON_NUMBER.name(),this.type.name()));
+		public double doubleValue() throws UnsupportedOperationException {
+			this.checkType(Types.JSON_NUMBER);
+			return Double.parseDouble(this.value);
 		}
 		
+		/**
+		 * Return the exact value of this node as a BigDecimal.
+		 * This method is applicable only for JSON_NUMBER types.
+		 * 
+		 * @return the value of this JsonNode as a BigDecimal
+		 * @throws UnsupportedOperationException if the JsonNode type is not JSON_NUMBER
+		 */
+		public BigDecimal decimalValue() throws UnsupportedOperationException {
+			this.checkType(Types.JSON_NUMBER);
+			return new BigDecimal(this.value);
+		}
+		
+		/**
+		 * Return the value of this node as a String with the escape sequences decoded.
+		 * This method is applicable only for JSON_STRING types, value() returns the text as written in the document.
+		 *
+		 * @return the value of this JsonNode as a decoded String
+		 * @throws UnsupportedOperationException if the JsonNode type is not JSON_STRING or the text contains an invalid escape sequence
+		 */
+		public String stringValue() throws UnsupportedOperationException {
+			this.checkType(Types.JSON_STRING);
+			return JsonStrings.decode(this.value());
+		}
+
 		/**
 		 * Return the value of this node as a boolean.
 		 * This method is applicable only for JSON_BOOLEAN types.
@@ -369,48 +658,484 @@ public class JsonService {
 		}
 		
 		/**
-		 * Return the parent JsonNode object if any, otherwise null.
-		 * 
-		 * @return the JsonNode parent or null
+		 * Raise UnsupportedOperationException if this node is not of the specified type.
+		 * 
+		 * @param expected the type expected
+		 * @throws UnsupportedOperationException if the JsonNode type is not the expected one
+		 */
+		protected void checkType(Types expected) throws UnsupportedOperationException {
+			if (!this.type.equals(expected))
+				throw new UnsupportedOperationException(String.format("Exception type %s but found %s", expected.name(),this.type.name()));
+		}
+		
+		/**
+		 * Return the parent JsonNode object if any, otherwise null.
+		 * 
+		 * @return the JsonNode parent or null
+		 */
+		public JsonElement parent() { return this.parent; }
+		
+		/**
+		 * Return true if the JsonNode has a parent associated.
+		 * 
+		 * @return true if this JsonNode has a parent
+		 */
+		public boolean hasParent() { return this.parent != null; }
+		
+		/**
+		 * Associate a parent to this JsonNode.
+		 * 
+		 * @param node the JsonNode parent to associate
+		 * @throws UnsupportedOperationException if this JsonNode is frozen
+		 */
+		public void setParent(JsonElement node) throws UnsupportedOperationException {
+			this.checkNotFrozen();
+			this.parent = node;
+		}
+		
+		/**
+		 * Make this JsonNode and all its children read only, so the tree can be shared by many threads.
+		 * A value is frozen when its object or array is frozen; the methods that change a frozen 
+		 * tree raise UnsupportedOperationException and childs returns read only views.
+		 * 
+		 * @return this JsonNode
+		 */
+		public JsonElement freeze() { return this; }
+		
+		/**
+		 * Keep the JSON text of this object or array after the first write, and of all the objects and arrays 
+		 * written with it, so toString, value and writeTo return the same text without writing the tree again.
+		 * A change clears the text of the changed container and of its ancestors only, through the parent links, 
+		 * so the next write serializes only the changed path and copies the texts of the other children.
+		 * The text is also kept as UTF-8 bytes for writeTo(OutputStream) and toUtf8Bytes. 
+		 * Useful for large documents written many times and changed rarely; scalar values keep nothing.
+		 * A value added to two containers notifies its changes only to its parent.
+		 * 
+		 * @return this JsonNode
+		 */
+		public JsonElement cacheOutput() { return this; }
+		
+		/**
+		 * Return true if this JsonNode cannot be changed, see freeze.
+		 * 
+		 * @return true if this JsonNode is read only
+		 */
+		public boolean isFrozen() { return this.parent != null && this.parent.isFrozen(); }
+		
+		/**
+		 * Raise UnsupportedOperationException if this JsonNode is frozen.
+		 * 
+		 * @throws UnsupportedOperationException if this JsonNode is read only
+		 */
+		void checkNotFrozen() throws UnsupportedOperationException {
+			if (this.isFrozen()) throw new UnsupportedOperationException("The JsonElement is frozen");
+		}
+
+		/**
+		 * Called by the containers when their content is changed: the values cached by this node
+		 * and by its ancestors are cleared following the parent links.
+		 * 
+		 * @param index the position of the child replaced, -1 if children are added, removed or moved
+		 */
+		void changed(int index) {
+			if (!this.invalidate(index)) return;
+			for (JsonElement node = this.parent; node != null; node = node.parent) {
+				if (!node.invalidate()) return;
+			}
+		}
+
+		/**
+		 * Clear the values cached by this node, called when one of its descendants is changed.
+		 *
+		 * @return false if nothing was cached, so nothing is cached by the ancestors too
+		 */
+		boolean invalidate() { return true; }
+		
+		/**
+		 * Clear the values cached by this node and the ones cached for its child at the specified position.
+		 * 
+		 * @param index the position of the child replaced, -1 if children are added, removed or moved
+		 * @return false if nothing was cached by this node, so nothing is cached by the ancestors too
+		 */
+		boolean invalidate(int index) { return this.invalidate(); }
+
+		/**
+		 * Return the 64 bit structural hash of this node: equal nodes have the same digest.
+		 * Objects and arrays combine the digests of their children (a Merkle tree) and cache
+		 * the result until they are changed.
+		 *
+		 * @return the digest of this node
+		 */
+		long digest() {
+			switch (this.type) {
+				case JSON_NULL:
+					return NULL_DIGEST;
+				case JSON_BOOLEAN:
+					return this.booleanValue() ? TRUE_DIGEST : FALSE_DIGEST;
+				case JSON_NUMBER:
+					return JsonNumber.parse(this.value()).digest();
+				default:
+					return digest(this.value());
+			}
+		}
+
+		/**
+		 * Return true if this node and the other, of the same type, have the same content.
+		 *
+		 * @param other a node of the same type
+		 * @return true if the nodes are equal
+		 */
+		boolean sameContent(JsonElement other) {
+			switch (this.type) {
+				case JSON_NULL:
+					return true;
+				case JSON_BOOLEAN:
+					return this.booleanValue() == other.booleanValue();
+				case JSON_NUMBER:
+					return this.decimalValue().compareTo(other.decimalValue()) == 0;
+				default:
+					return Objects.equals(this.value(), other.value());
+			}
+		}
+
+		/**
+		 * Return the 64 bit FNV-1a hash of the chars of a string, mixed with mix.
+		 *
+		 * @param text the string
+		 * @return the digest of the string
+		 */
+		static long digest(String text) {
+			if (text == null) return NULL_DIGEST;
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0; i < text.length(); i++) hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+			return mix(hash ^ text.length());
+		}
+
+		/**
+		 * Spread the bits of a value (the finalizer of SplitMix64), so similar values have unrelated digests.
+		 *
+		 * @param value the value to mix
+		 * @return the mixed value
+		 */
+		static long mix(long value) {
+			value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+			value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+			return value ^ (value >>> 31);
+		}
+
+		/**
+		 * Return the elements selected by a JsonPath expression, where $ is this node.
+		 * The expression is compiled once and kept in the cache of JsonPath.
+		 * 
+		 * @param path the JsonPath expression, for example $.key8[*].sk2
+		 * @return the selected elements, or an empty list
+		 * @throws UnsupportedOperationException if the expression is not valid
+		 * @see JsonPath
+		 */
+		public List<JsonElement> select(String path) throws UnsupportedOperationException { return JsonPath.compile(path).select(this); }
+		
+		/**
+		 * Write the JSON text of this node to the specified sink.
+		 * Every char is appended exactly once, no intermediate string is created for the children.
+		 * 
+		 * @param out the sink where the JSON text is written, for example a StringBuilder or a Writer
+		 * @throws IOException if the sink fails
+		 */
+		public void writeTo(Appendable out) throws IOException {
+			switch (this.type) {
+				case JSON_NULL:
+					out.append("null");
+					break;
+				case JSON_NUMBER:
+				case JSON_BOOLEAN:
+					out.append(this.value);
+					break;
+				case JSON_STRING:
+					out.append('"').append(this.value).append('"');
+					break;
+				default:
+					break;
+			}
+		}
+
+		/**
+		 * Write the JSON text of this node to the specified stream as UTF-8.
+		 * The text is encoded directly in a byte buffer reused by the thread, without creating
+		 * the string of the node; string values parsed from bytes and never read are copied as they are.
+		 * The stream is not flushed nor closed by this method.
+		 *
+		 * @param out the stream where the UTF-8 bytes are written
+		 * @throws IOException if the stream fails
+		 * @see JsonService#parse(byte[], int, int)
+		 */
+		public void writeTo(OutputStream out) throws IOException {
+			Utf8Writer writer = Utf8Writer.acquire(Objects.requireNonNull(out));
+			try {
+				this.writeTo(writer);
+				writer.flush();
+			} finally {
+				writer.release();
+			}
+		}
+
+		/**
+		 * Return the JSON text of this node encoded in UTF-8.
+		 *
+		 * @return the UTF-8 bytes of the JSON text, the same as toString().getBytes(StandardCharsets.UTF_8)
+		 * @see #writeTo(OutputStream)
+		 */
+		public byte[] toUtf8Bytes() {
+			Utf8Writer writer = Utf8Writer.acquire(null);
+			try {
+				this.writeTo(writer);
+				return writer.toByteArray();
+			} catch (IOException e) {
+				// without a stream the writer never raise IOException
+				throw new UncheckedIOException(e);
+			} finally {
+				writer.release();
+			}
+		}
+
+		/**
+		 * Write the JSON text of this node as a child of an object or array that keeps its text, see cacheOutput.
+		 * 
+		 * @param out where to write the text
+		 * @throws IOException if the output fails
+		 */
+		void writeChild(Appendable out) throws IOException { this.writeTo(out); }
+		
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			try {
+				this.writeTo(builder);
+			} catch (IOException e) {
+				// a StringBuilder never raise IOException
+				throw new UncheckedIOException(e);
+			}
+			return builder.toString();
+		}
+
+		/**
+		 * Return true if the other object is a JsonNode with the same content.
+		 * Objects are equal when they have the same keys with equal values in any order, arrays when
+		 * they have equal elements in the same order, numbers when they have the same value (1 and 1.0
+		 * are equal) and strings when they have the same text, escape sequences included.
+		 * Objects and arrays with different cached digests are not equal, so most of the different
+		 * subtrees are rejected without visiting them.
+		 *
+		 * @param other the object to compare
+		 * @return true if the other object is an equal JsonNode
+		 */
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) return true;
+			if (!(other instanceof JsonElement)) return false;
+			JsonElement element = (JsonElement) other;
+			if (this.type != element.type) return false;
+			if ((this.type == Types.JSON_OBJECT || this.type == Types.JSON_ARRAY) && this.digest() != element.digest()) return false;
+			return this.sameContent(element);
+		}
+
+		/**
+		 * Return a hash code consistent with equals, derived from the structural digest.
+		 * The hash of objects and arrays is cached and cleared when they or their children are changed.
+		 *
+		 * @return the hash code of this node
+		 */
+		@Override
+		public int hashCode() {
+			long digest = this.digest();
+			return (int) (digest ^ (digest >>> 32));
+		}
+	}
+
+	/**
+	 * Class that represent a JSON number stored in primitive form.
+	 * Integers that fit in a long are stored as long, other numbers as double when they have 
+	 * at most 15 significant digits (so the double keeps the same decimal value), otherwise as BigDecimal.
+	 * This class extends JsonNode
+	 * 
+	 * @see JsonElement
+	 * 
+	 * @author BlackCodec
+	 *
+	 */
+	public static class JsonNumber extends JsonElement {
+		
+		private static final byte LONG = 0;
+		private static final byte DOUBLE = 1;
+		private static final byte DECIMAL = 2;
+		
+		// the long value or the raw bits of the double value
+		private final long bits;
+		private final byte kind;
+		private final BigDecimal decimal;
+		
+		/**
+		 * Construct a new JsonNumber with a long value.
+		 * 
+		 * @param value the value of the number
+		 */
+		public JsonNumber(long value) { this(value, LONG, null); }
+		
+		/**
+		 * Construct a new JsonNumber with a double value.
+		 * 
+		 * @param value the value of the number
+		 * @throws IllegalArgumentException if the value is NaN or infinite
+		 */
+		public JsonNumber(double value) throws IllegalArgumentException {
+			this(Double.doubleToRawLongBits(value), DOUBLE, null);
+			if (Double.isNaN(value) || Double.isInfinite(value))
+				throw new IllegalArgumentException("JSON numbers cannot be NaN or infinite");
+		}
+		
+		/**
+		 * Construct a new JsonNumber with a BigDecimal value.
+		 * 
+		 * @param value the value of the number
+		 */
+		public JsonNumber(BigDecimal value) { this(0, DECIMAL, value); }
+		
+		private JsonNumber(long bits, byte kind, BigDecimal decimal) {
+			super(Types.JSON_NUMBER, null);
+			this.bits = bits;
+			this.kind = kind;
+			this.decimal = decimal;
+		}
+		
+		/**
+		 * Return a JsonNumber for the text of a JSON number, stored in the smallest form that keeps the value.
+		 * Integers are stored as long when they fit, the other numbers as double when they have up to 15
+		 * significant digits and their value is in the range of double, as BigDecimal otherwise.
+		 * The integer -0 is stored as the double -0.0, that keeps the sign.
+		 * 
+		 * @param text the text of the number as defined by the JSON grammar
+		 * @return the JsonNumber that represents the text
+		 * @throws NumberFormatException if the text is not a JSON number
+		 */
+		public static JsonNumber parse(String text) throws NumberFormatException { return JsonNumbers.parse(text, 0, text.length()); }
+		
+		/**
+		 * Return true if the number is stored as a long, so longValue returns the exact value.
+		 * 
+		 * @return true if the number is an integer stored as long
+		 */
+		public boolean isLong() { return this.kind == LONG; }
+		
+		/**
+		 * Return true if the number is stored as a double.
+		 * 
+		 * @return true if the number is stored as a double
+		 */
+		public boolean isDouble() { return this.kind == DOUBLE; }
+		
+		@Override
+		public long longValue() {
+			switch (this.kind) {
+				case LONG: return this.bits;
+				case DOUBLE: return (long) Double.longBitsToDouble(this.bits);
+				default: return this.decimal.longValue();
+			}
+		}
+		
+		@Override
+		public double doubleValue() {
+			switch (this.kind) {
+				case LONG: return this.bits;
+				case DOUBLE: return Double.longBitsToDouble(this.bits);
+				default: return this.decimal.doubleValue();
+			}
+		}
+		
+		@Override
+		public BigDecimal decimalValue() {
+			switch (this.kind) {
+				case LONG: return BigDecimal.valueOf(this.bits);
+				case DOUBLE: return new BigDecimal(JsonNumbers.toString(Double.longBitsToDouble(this.bits)));
+				default: return this.decimal;
+			}
+		}
+		
+		@Override
+		long digest() {
+			switch (this.kind) {
+				case LONG: return longDigest(this.bits);
+				case DOUBLE: return doubleDigest(Double.longBitsToDouble(this.bits));
+				default: return decimalDigest(this.decimal);
+			}
+		}
+		
+		@Override
+		boolean sameContent(JsonElement other) {
+			if (other instanceof JsonNumber) {
+				JsonNumber number = (JsonNumber) other;
+				if (this.kind == LONG && number.kind == LONG) return this.bits == number.bits;
+				// 0.0 and -0.0 are equal
+				if (this.kind == DOUBLE && number.kind == DOUBLE) return Double.longBitsToDouble(this.bits) == Double.longBitsToDouble(number.bits);
+			}
+			return super.sameContent(other);
+		}
+		
+		/**
+		 * Return the digest of an integer, the same for all the numbers with the same value.
 		 */
-		public JsonElement parent() { return this.parent; }
+		static long longDigest(long value) { return mix(value ^ NUMBER_DIGEST); }
 		
 		/**
-		 * Return true if the JsonNode has a parent associated.
-		 * 
-		 * @return true if this JsonNode has a parent
+		 * Return the digest of a double, integers have the same digest of the long with the same value.
 		 */
-		public boolean hasParent() { return this.parent != null; }
+		static long doubleDigest(double value) {
+			if (value == Math.rint(value) && Math.abs(value) < 0x1p63) return longDigest((long) value);
+			return mix(Double.doubleToLongBits(value) ^ Long.rotateLeft(NUMBER_DIGEST, 32));
+		}
 		
 		/**
-		 * Associate a parent to this JsonNode.
-		 * 
-		 * @param node the JsonNode parent to associate
+		 * Return the digest of a BigDecimal, the same of the long or of the double with the same value if any.
 		 */
-		public void setParent(JsonElement node) { this.parent = node; }
+		private static long decimalDigest(BigDecimal value) {
+			BigDecimal stripped = value.stripTrailingZeros();
+			if (stripped.scale() <= 0 && stripped.precision() - stripped.scale() <= 19) {
+				try {
+					return longDigest(stripped.longValueExact());
+				} catch (ArithmeticException e) {
+					// out of the range of long, checked as double
+				}
+			}
+			double approximation = value.doubleValue();
+			if (!Double.isInfinite(approximation) && new BigDecimal(JsonNumbers.toString(approximation)).compareTo(value) == 0) return doubleDigest(approximation);
+			return mix(digest(stripped.toString()) ^ NUMBER_DIGEST);
+		}
 		
 		@Override
-		public String toString() {
-			switch (this.type) {
-				case JSON_NULL:
-					return "null";
-				case JSON_NUMBER:
-				case JSON_BOOLEAN:
-					return this.value;
-				case JSON_STRING:
-					return String.format("\"%s\"", this.value);
-				case JSON_OBJECT:
-					return ((JsonObject) this).toString();
-				case JSON_ARRAY:
-					return ((JsonArray) this).toString();
-				default:
-					return "";
+		public String value() {
+			switch (this.kind) {
+				case LONG: return Long.toString(this.bits);
+				case DOUBLE: return JsonNumbers.toString(Double.longBitsToDouble(this.bits));
+				default: return this.decimal.toString();
 			}
 		}
+		
+		@Override
+		public boolean isEmpty() { return true; }
+		
+		@Override
+		public int size() { return this.value().length(); }
+		
+		@Override
+		public void writeTo(Appendable out) throws IOException {
+			if (this.kind == LONG && out instanceof StringBuilder) ((StringBuilder) out).append(this.bits);
+			else if (this.kind == LONG && out instanceof Utf8Writer) ((Utf8Writer) out).writeLong(this.bits);
+			else if (this.kind == DOUBLE) JsonNumbers.write(Double.longBitsToDouble(this.bits), out);
+			else out.append(this.value());
+		}
 	}
 
 	/**
 	 * Class that represent a JSON object.
+	 * The keys are kept in insertion order, see JsonService.setSortedOutput to write them sorted.
 	 * This class extends JsonNode
 	 * 
 	 * @see JsonElement
@@ -420,12 +1145,26 @@ public class JsonService {
 	 */
 	public static class JsonObject extends JsonElement {
 
-		private Map<String, JsonElement> childs = new TreeMap<>();
+		private final FieldMap childs;
+		private boolean frozen = false;
+		// the cached digest, 0 when it must be computed
+		private volatile long digest = 0;
+		// for every field the term of the digest if the value is a scalar, the digest of the key if it 
+		// is a container (whose digest is cached by the container), 0 when it must be computed
+		private long[] terms = null;
+		// the text kept by cacheOutput or null
+		private OutputCache output = null;
 		
 		/**
 		 * Construct an empty JsonObject.
 		 */
-		public JsonObject() { super(JsonElement.Types.JSON_OBJECT,null); }
+		public JsonObject() { this(new FieldMap()); }
+		
+		private JsonObject(FieldMap childs) {
+			super(JsonElement.Types.JSON_OBJECT,null);
+			this.childs = childs;
+			this.childs.setOwner(this);
+		}
 		
 		/**
 		 * Associates the specified JsonNode value with the specified key.
@@ -433,7 +1172,10 @@ public class JsonService {
 		 * @param key key with which the specified value is to be associated
 		 * @param value JsonNode object to be associated with the specified key
 		 */
-		public void add(String key, JsonElement value) { this.childs.put(key, value); }
+		public void add(String key, JsonElement value) {
+			this.checkNotFrozen();
+			this.childs.put(key, value);
+		}
 		
 		/**
 		 * Returns the JsonNode object to which the specified key is mapped, 
@@ -455,17 +1197,86 @@ public class JsonService {
 		 * @param key key whose mapping is to be removed from the JsonObject
 		 */
 		public void remove(String key) { 
+			this.checkNotFrozen();
 			if (this.childs.containsKey(key))
 				this.childs.remove(key);
 		}
 		
+		/**
+		 * Return a frozen copy of this JsonObject where the specified key is associated with the value.
+		 * The copy shares all the other values with this JsonObject, that is frozen too, so an 
+		 * immutable tree is updated without copying the untouched values and the old version 
+		 * can still be read by other threads. The value is frozen; a shared element keeps the 
+		 * parent of the tree where it was frozen first.
+		 * 
+		 * @param key key with which the specified value is to be associated
+		 * @param value JsonNode object to be associated with the specified key
+		 * @return a new frozen JsonObject with the value
+		 * @see JsonElement#freeze()
+		 */
+		public JsonObject with(String key, JsonElement value) {
+			this.freeze();
+			JsonObject copy = new JsonObject(new FieldMap(this.childs));
+			copy.childs.put(Objects.requireNonNull(key), adopt(value, copy));
+			if (this.output != null) copy.output = new OutputCache();
+			copy.frozen = true;
+			return copy;
+		}
+		
+		/**
+		 * Return a frozen copy of this JsonObject without the specified key, that shares all the 
+		 * other values with this JsonObject. This JsonObject is frozen.
+		 * 
+		 * @param key key whose mapping is to be removed from the copy
+		 * @return a new frozen JsonObject without the key, or this JsonObject if it does not contain the key
+		 * @see #with(String, JsonElement)
+		 */
+		public JsonObject without(String key) {
+			this.freeze();
+			if (!this.childs.containsKey(key)) return this;
+			JsonObject copy = new JsonObject(new FieldMap(this.childs));
+			copy.childs.remove(key);
+			if (this.output != null) copy.output = new OutputCache();
+			copy.frozen = true;
+			return copy;
+		}
+		
+		/**
+		 * Return a frozen copy of this JsonObject where the element selected by the path is replaced 
+		 * with the value. Only the objects along the path are copied, the missing ones are created.
+		 * The path is a JsonPath made only of names, like $.key8.sk1 or $['a']['b'].
+		 * 
+		 * @param path the JsonPath of the element to replace
+		 * @param value JsonNode object to associate with the last name of the path
+		 * @return a new frozen JsonObject with the value
+		 * @throws UnsupportedOperationException if the path is not valid, is empty, contains other 
+		 * steps than names or crosses an element that is not a JsonObject
+		 * @see #with(String, JsonElement)
+		 */
+		public JsonObject withPath(String path, JsonElement value) throws UnsupportedOperationException {
+			String[] names = JsonPath.compile(path).names();
+			if (names.length == 0) throw new UnsupportedOperationException(String.format("Empty JsonPath %s", path));
+			return this.withPath(names, 0, path, value);
+		}
+		
+		private JsonObject withPath(String[] names, int depth, String path, JsonElement value) {
+			String key = names[depth];
+			if (key == null) throw new UnsupportedOperationException(String.format("Wildcard at step %d of JsonPath %s", depth + 1, path));
+			if (depth == names.length - 1) return this.with(key, value);
+			JsonElement child = this.get(key);
+			if (child == null) child = new JsonObject();
+			if (!(child instanceof JsonObject)) throw new UnsupportedOperationException(String.format("%s is not a JsonObject at step %d of JsonPath %s", child.type(), depth + 1, path));
+			return this.with(key, ((JsonObject) child).withPath(names, depth + 1, path, value));
+		}
+		
 		/**
 		 * Returns a Map that represents all the keys and the associated JsonNode objects, 
 		 * or null if this JsonObject contains no JsonNode objects.
+		 * The Map is read only if the JsonObject is frozen.
 
 		 * @return a Map of keys and JsonNode values contained in JsonObject
 		 */
-		public Map<String,JsonElement> childs() { return this.childs; }
+		public Map<String,JsonElement> childs() { return this.frozen ? Collections.unmodifiableMap(this.childs) : this.childs; }
 		
 		/**
 		 * Returns true if this JsonObject contains a mapping for the specified key. 
@@ -478,6 +1289,22 @@ public class JsonService {
 		 */
 		public boolean contains(String key) { return this.childs.containsKey(key); }
 		
+		/**
+		 * Return the value at the specified position, in insertion order.
+		 * 
+		 * @param index the position, between 0 and size() - 1
+		 * @return the value at the specified position
+		 */
+		JsonElement valueAt(int index) { return this.childs.valueAt(index); }
+		
+		/**
+		 * Return the key at the specified position, in insertion order.
+		 * 
+		 * @param index the position, between 0 and size() - 1
+		 * @return the key at the specified position
+		 */
+		String keyAt(int index) { return this.childs.keyAt(index); }
+		
 		/* OVERRIDES */
 		/**
 		 * Returns true if this JsonObject contains no key-value mappings.
@@ -502,14 +1329,122 @@ public class JsonService {
 		public String value() { return this.toString(); }
 		
 		@Override
-		public String toString() {
-			StringBuilder childBuilder = new StringBuilder();
-			for(Entry<String, JsonElement> child: this.childs.entrySet()) {
-				childBuilder.append(",").append(String.format("\"%s\"",child.getKey())).append(":").append(child.getValue().toString());
+		public String toString() { return this.output != null ? this.output.text(this::writeFields) : super.toString(); }
+		
+		@Override
+		public JsonElement freeze() {
+			if (this.frozen) return this;
+			for (int i = 0; i < this.childs.size(); i++) {
+				JsonElement child = this.childs.valueAt(i);
+				if (child.parent() == null) child.setParent(this);
+				child.freeze();
+			}
+			this.frozen = true;
+			return this;
+		}
+		
+		@Override
+		public boolean isFrozen() { return this.frozen; }
+		
+		@Override
+		public JsonElement cacheOutput() {
+			if (this.output == null) this.output = new OutputCache();
+			return this;
+		}
+		
+		@Override
+		boolean invalidate() {
+			// the ancestors of a container that keeps its text can keep their text too
+			if (this.output != null) this.output.clear();
+			if (this.digest == 0) return this.output != null;
+			this.digest = 0;
+			return true;
+		}
+		
+		@Override
+		boolean invalidate(int index) {
+			if (index < 0) this.terms = null;
+			else if (this.terms != null) this.terms[index] = 0;
+			return this.invalidate();
+		}
+		
+		/**
+		 * Return the digest of the object, that does not depend on the order of the keys.
+		 * The terms of the fields are kept, so after a change only the replaced values are hashed again.
+		 */
+		@Override
+		long digest() {
+			long digest = this.digest;
+			if (digest != 0) return digest;
+			int size = this.size();
+			long[] terms = this.terms;
+			if (terms == null || terms.length != size) terms = new long[size];
+			long sum = 0;
+			for (int i = 0; i < size; i++) {
+				JsonElement value = this.valueAt(i);
+				boolean container = value instanceof JsonObject || value instanceof JsonArray;
+				if (terms[i] == 0) terms[i] = container ? digest(this.keyAt(i)) : mix(digest(this.keyAt(i)) * 31 + value.digest());
+				sum += container ? mix(terms[i] * 31 + value.digest()) : terms[i];
+			}
+			this.terms = terms;
+			digest = mix(sum ^ size ^ OBJECT_DIGEST);
+			if (digest == 0) digest = 1;
+			this.digest = digest;
+			return digest;
+		}
+		
+		@Override
+		boolean sameContent(JsonElement other) {
+			if (!(other instanceof JsonObject)) return false;
+			JsonObject object = (JsonObject) other;
+			int size = this.size();
+			if (size != object.size()) return false;
+			for (int i = 0; i < size; i++) {
+				if (!this.valueAt(i).equals(object.get(this.keyAt(i)))) return false;
+			}
+			return true;
+		}
+		
+		@Override
+		public void writeTo(Appendable out) throws IOException {
+			if (this.output != null) this.output.writeTo(out, this::writeFields);
+			else this.writeFields(out);
+		}
+		
+		@Override
+		void writeChild(Appendable out) throws IOException {
+			this.cacheOutput();
+			this.output.writeChild(out, this::writeFields);
+		}
+		
+		@Override
+		public byte[] toUtf8Bytes() { return this.output != null ? this.output.bytes(this::writeFields).clone() : super.toUtf8Bytes(); }
+		
+		/**
+		 * Write the JSON text of the object, the objects and arrays of an object that keeps its text keep their text too.
+		 */
+		private void writeFields(Appendable out) throws IOException {
+			boolean cache = this.output != null;
+			out.append('{');
+			boolean first = true;
+			if (sortedOutput) {
+				for(Entry<String, JsonElement> child: new TreeMap<>(this.childs).entrySet()) {
+					if (!first) out.append(',');
+					out.append('"').append(child.getKey()).append("\":");
+					if (cache) child.getValue().writeChild(out);
+					else child.getValue().writeTo(out);
+					first = false;
+				}
+			} else {
+				for (int i = 0; i < this.childs.size(); i++) {
+					if (!first) out.append(',');
+					out.append('"').append(this.childs.keyAt(i)).append("\":");
+					if (cache) this.childs.valueAt(i).writeChild(out);
+					else this.childs.valueAt(i).writeTo(out);
+					first = false;
+				}
 			}
-			String child = childBuilder.toString();
-			if (child.startsWith(",")) child = child.substring(1);
-			return String.format("{%s}", child);
+			out.append('}');
 		}
 	}
 
@@ -524,7 +1459,14 @@ public class JsonService {
 	 */
 	public static class JsonArray extends JsonElement {
 
-		private List<JsonElement> childs = new ArrayList<>();
+		private List<JsonElement> childs = new ElementList(this);
+		private boolean frozen = false;
+		// the cached digest, 0 when it must be computed
+		private volatile long digest = 0;
+		// the digests of the scalar elements, 0 for the containers and when they must be computed
+		private long[] terms = null;
+		// the text kept by cacheOutput or null
+		private OutputCache output = null;
 		
 		/**
 		 * Construct an empty JsonArray.
@@ -537,7 +1479,10 @@ public class JsonService {
 		 * @param node JsonNode object to add
 		 * @see JsonElement
 		 */
-		public void add(JsonElement node) { this.childs.add(node); }
+		public void add(JsonElement node) {
+			this.checkNotFrozen();
+			this.childs.add(node);
+		}
 		
 		/**
 		 * Add a JsonNode object at specific position.
@@ -547,7 +1492,10 @@ public class JsonService {
 		 * @see ArrayList
 		 * @see JsonElement
 		 */
-		public void add(int index, JsonElement node) { this.childs.add(index, node); }
+		public void add(int index, JsonElement node) {
+			this.checkNotFrozen();
+			this.childs.add(index, node);
+		}
 		
 		/**
 		 * Return the JsonNode object at specific position in the array.
@@ -562,12 +1510,73 @@ public class JsonService {
 		
 		/**
 		 * Return all the JsonNode elements as a list.
+		 * The list is read only if the JsonArray is frozen.
 		 * 
 		 * @return the list of all elements
 		 * @see JsonElement
 		 * @see List
 		 */
-		public List<JsonElement> childs() { return this.childs; }
+		public List<JsonElement> childs() { return this.frozen ? Collections.unmodifiableList(this.childs) : this.childs; }
+		
+		/**
+		 * Return a frozen copy of this JsonArray where the element at the specified position is 
+		 * replaced with the value. The copy shares all the other elements with this JsonArray, 
+		 * that is frozen too. The value is frozen.
+		 * 
+		 * @param index the position of the element to replace
+		 * @param node  JsonNode object to store at the position
+		 * @return a new frozen JsonArray with the value
+		 * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+		 * @see JsonObject#with(String, JsonElement)
+		 */
+		public JsonArray with(int index, JsonElement node) throws IndexOutOfBoundsException {
+			this.freeze();
+			Objects.checkIndex(index, this.size());
+			JsonArray copy = new JsonArray();
+			copy.childs = new ElementList(copy, this.childs());
+			copy.childs.set(index, adopt(node, copy));
+			if (this.output != null) copy.output = new OutputCache();
+			copy.frozen = true;
+			return copy;
+		}
+		
+		/**
+		 * Return a frozen copy of this JsonArray with the value added at the end, 
+		 * that shares all the elements with this JsonArray. This JsonArray and the value are frozen.
+		 * 
+		 * @param node JsonNode object to add
+		 * @return a new frozen JsonArray with the value
+		 * @see JsonObject#with(String, JsonElement)
+		 */
+		public JsonArray withAdded(JsonElement node) {
+			this.freeze();
+			JsonArray copy = new JsonArray();
+			copy.childs = new ElementList(copy, this.childs());
+			copy.childs.add(adopt(node, copy));
+			if (this.output != null) copy.output = new OutputCache();
+			copy.frozen = true;
+			return copy;
+		}
+		
+		/**
+		 * Return a frozen copy of this JsonArray without the element at the specified position, 
+		 * that shares all the other elements with this JsonArray. This JsonArray is frozen.
+		 * 
+		 * @param index the position of the element to remove
+		 * @return a new frozen JsonArray without the element
+		 * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+		 * @see JsonObject#with(String, JsonElement)
+		 */
+		public JsonArray without(int index) throws IndexOutOfBoundsException {
+			this.freeze();
+			Objects.checkIndex(index, this.size());
+			JsonArray copy = new JsonArray();
+			copy.childs = new ElementList(copy, this.childs());
+			copy.childs.remove(index);
+			if (this.output != null) copy.output = new OutputCache();
+			copy.frozen = true;
+			return copy;
+		}
 		
 		/* OVERRIDES */
 		/**
@@ -592,14 +1601,329 @@ public class JsonService {
 		public String value() { return this.toString(); }
 		
 		@Override
-		public String toString() {
-			StringBuilder childBuilder = new StringBuilder();
+		public String toString() { return this.output != null ? this.output.text(this::writeElements) : super.toString(); }
+		
+		@Override
+		public JsonElement freeze() {
+			if (this.frozen) return this;
+			for (JsonElement child: this.childs) {
+				if (child.parent() == null) child.setParent(this);
+				child.freeze();
+			}
+			this.frozen = true;
+			return this;
+		}
+		
+		@Override
+		public boolean isFrozen() { return this.frozen; }
+		
+		@Override
+		public JsonElement cacheOutput() {
+			if (this.output == null) this.output = new OutputCache();
+			return this;
+		}
+		
+		@Override
+		boolean invalidate() {
+			// the ancestors of a container that keeps its text can keep their text too
+			if (this.output != null) this.output.clear();
+			if (this.digest == 0) return this.output != null;
+			this.digest = 0;
+			return true;
+		}
+		
+		@Override
+		boolean invalidate(int index) {
+			if (index < 0) this.terms = null;
+			else if (this.terms != null) this.terms[index] = 0;
+			return this.invalidate();
+		}
+		
+		@Override
+		long digest() {
+			long digest = this.digest;
+			if (digest != 0) return digest;
+			digest = mix(this.computeDigest() ^ this.size() ^ ARRAY_DIGEST);
+			if (digest == 0) digest = 1;
+			this.digest = digest;
+			return digest;
+		}
+		
+		/**
+		 * Combine the digests of the elements in order. The digests of the scalar elements are kept, 
+		 * so after a change only the replaced elements are hashed again.
+		 * 
+		 * @return the combination of the digests of the elements
+		 */
+		long computeDigest() {
+			int size = this.size();
+			long[] terms = this.terms;
+			if (terms == null || terms.length != size) terms = new long[size];
+			long digest = 0;
+			for (int i = 0; i < size; i++) {
+				long term = terms[i];
+				if (term == 0) {
+					JsonElement element = this.get(i);
+					term = element.digest();
+					if (!(element instanceof JsonObject || element instanceof JsonArray)) terms[i] = term;
+				}
+				digest = digest * 0x9E3779B97F4A7C15L + term;
+			}
+			this.terms = terms;
+			return digest;
+		}
+		
+		@Override
+		boolean sameContent(JsonElement other) {
+			if (!(other instanceof JsonArray)) return false;
+			JsonArray array = (JsonArray) other;
+			int size = this.size();
+			if (size != array.size()) return false;
+			for (int i = 0; i < size; i++) {
+				if (!this.get(i).equals(array.get(i))) return false;
+			}
+			return true;
+		}
+		
+		@Override
+		public void writeTo(Appendable out) throws IOException {
+			if (this.output != null) this.output.writeTo(out, this::writeElements);
+			else this.writeElements(out);
+		}
+		
+		@Override
+		void writeChild(Appendable out) throws IOException {
+			this.cacheOutput();
+			this.output.writeChild(out, this::writeElements);
+		}
+		
+		@Override
+		public byte[] toUtf8Bytes() { return this.output != null ? this.output.bytes(this::writeElements).clone() : super.toUtf8Bytes(); }
+		
+		/**
+		 * Write the JSON text of the array, the objects and arrays of an array that keeps its text keep their text too.
+		 * 
+		 * @param out where to write the text
+		 * @throws IOException if the output fails
+		 */
+		void writeElements(Appendable out) throws IOException {
+			boolean cache = this.output != null;
+			out.append('[');
+			boolean first = true;
 			for(JsonElement child: this.childs) {
-				childBuilder.append(",").append(child.toString());
+				if (!first) out.append(',');
+				if (cache) child.writeChild(out);
+				else child.writeTo(out);
+				first = false;
+			}
+			out.append(']');
+		}
+	}
+
+	/**
+	 * Class that represent a JSON array that contains only numbers, stored in a long or in a double array.
+	 * The elements returned by get are created when requested; childs and the methods that change the 
+	 * array convert the values in JsonNumber elements and from then on the array works as a JsonArray.
+	 * This class extends JsonArray
+	 * 
+	 * @see JsonArray
+	 * 
+	 * @author BlackCodec
+	 *
+	 */
+	public static class JsonNumberArray extends JsonArray {
+		
+		private long[] longs;
+		private double[] doubles;
+		private int count;
+		
+		/**
+		 * Construct a JsonNumberArray with the first values of the specified array.
+		 * 
+		 * @param values the values of the array, the array is not copied
+		 * @param count  the number of values used
+		 */
+		public JsonNumberArray(long[] values, int count) {
+			this.longs = values;
+			this.count = count;
+		}
+		
+		/**
+		 * Construct a JsonNumberArray with the first values of the specified array.
+		 * 
+		 * @param values the values of the array, the array is not copied
+		 * @param count  the number of values used
+		 */
+		public JsonNumberArray(double[] values, int count) {
+			this.doubles = values;
+			this.count = count;
+		}
+		
+		/**
+		 * Return true if the values are stored as long.
+		 * 
+		 * @return true if all the values are integers stored in a long array
+		 */
+		public boolean isLong() { return this.longs != null; }
+		
+		/**
+		 * Return the value at specific position as a long, without creating any element.
+		 * 
+		 * @param index the position
+		 * @return the value at the specified position
+		 * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+		 */
+		public long longAt(int index) throws IndexOutOfBoundsException {
+			if (this.isPrimitive()) {
+				Objects.checkIndex(index, this.count);
+				return this.longs != null ? this.longs[index] : (long) this.doubles[index];
+			}
+			return super.get(index).longValue();
+		}
+		
+		/**
+		 * Return the value at specific position as a double, without creating any element.
+		 * 
+		 * @param index the position
+		 * @return the value at the specified position
+		 * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+		 */
+		public double doubleAt(int index) throws IndexOutOfBoundsException {
+			if (this.isPrimitive()) {
+				Objects.checkIndex(index, this.count);
+				return this.longs != null ? this.longs[index] : this.doubles[index];
+			}
+			return super.get(index).doubleValue();
+		}
+		
+		@Override
+		public JsonElement get(int index) throws IndexOutOfBoundsException {
+			if (!this.isPrimitive()) return super.get(index);
+			Objects.checkIndex(index, this.count);
+			JsonElement node = this.longs != null ? new JsonNumber(this.longs[index]) : new JsonNumber(this.doubles[index]);
+			node.setParent(this);
+			return node;
+		}
+		
+		@Override
+		public void add(JsonElement node) {
+			this.checkNotFrozen();
+			this.materialize();
+			super.add(node);
+		}
+		
+		@Override
+		public void add(int index, JsonElement node) {
+			this.checkNotFrozen();
+			this.materialize();
+			super.add(index, node);
+		}
+		
+		@Override
+		public List<JsonElement> childs() {
+			if (this.isFrozen() && this.isPrimitive()) {
+				// a frozen array is never changed, so the elements are created for every call
+				JsonElement[] elements = new JsonElement[this.count];
+				for (int i = 0; i < this.count; i++) elements[i] = this.get(i);
+				return Collections.unmodifiableList(Arrays.asList(elements));
+			}
+			this.materialize();
+			return super.childs();
+		}
+		
+		@Override
+		public boolean isEmpty() { return this.isPrimitive() ? this.count > 0 : super.isEmpty(); }
+		
+		@Override
+		public int size() { return this.isPrimitive() ? this.count : super.size(); }
+		
+		@Override
+		void writeElements(Appendable out) throws IOException {
+			if (!this.isPrimitive()) {
+				super.writeElements(out);
+				return;
+			}
+			out.append('[');
+			for (int i = 0; i < this.count; i++) {
+				if (i > 0) out.append(',');
+				if (this.longs == null) JsonNumbers.write(this.doubles[i], out);
+				else if (out instanceof StringBuilder) ((StringBuilder) out).append(this.longs[i]);
+				else if (out instanceof Utf8Writer) ((Utf8Writer) out).writeLong(this.longs[i]);
+				else out.append(Long.toString(this.longs[i]));
+			}
+			out.append(']');
+		}
+		
+		@Override
+		long computeDigest() {
+			if (!this.isPrimitive()) return super.computeDigest();
+			long digest = 0;
+			for (int i = 0; i < this.count; i++) {
+				long element = this.longs != null ? JsonNumber.longDigest(this.longs[i]) : JsonNumber.doubleDigest(this.doubles[i]);
+				digest = digest * 0x9E3779B97F4A7C15L + element;
+			}
+			return digest;
+		}
+		
+		@Override
+		boolean sameContent(JsonElement other) {
+			// the values are compared without creating the elements when both the arrays use the same primitive type
+			if (other instanceof JsonNumberArray && this.isPrimitive() && ((JsonNumberArray) other).isPrimitive()) {
+				JsonNumberArray array = (JsonNumberArray) other;
+				if (this.count != array.count) return false;
+				if (this.longs != null && array.longs != null) return Arrays.equals(this.longs, 0, this.count, array.longs, 0, this.count);
+				if (this.doubles != null && array.doubles != null) {
+					for (int i = 0; i < this.count; i++) {
+						if (this.doubles[i] != array.doubles[i]) return false;
+					}
+					return true;
+				}
+			}
+			return super.sameContent(other);
+		}
+		
+		/**
+		 * Return true if the values are still stored in the primitive array.
+		 * 
+		 * @return true if the array has not been converted in elements
+		 */
+		boolean isPrimitive() { return this.longs != null || this.doubles != null; }
+		
+		/**
+		 * Convert the values in JsonNumber elements and release the primitive array.
+		 */
+		private void materialize() {
+			if (!this.isPrimitive()) return;
+			for (int i = 0; i < this.count; i++) super.add(this.get(i));
+			this.longs = null;
+			this.doubles = null;
+		}
+		
+		/**
+		 * Return a JsonNumberArray with the values of the elements if all of them are JsonNumber 
+		 * stored as long or all stored as double, otherwise null, so the integers of a mixed array are not written as decimals.
+		 * 
+		 * @param elements the elements of the array
+		 * @return a JsonNumberArray with the same values or null
+		 */
+		static JsonNumberArray of(List<JsonElement> elements) {
+			int count = elements.size();
+			if (count == 0) return null;
+			if (!(elements.get(0) instanceof JsonNumber)) return null;
+			boolean integers = ((JsonNumber) elements.get(0)).isLong();
+			for (JsonElement element: elements) {
+				if (!(element instanceof JsonNumber)) return null;
+				JsonNumber number = (JsonNumber) element;
+				if (integers ? !number.isLong() : !number.isDouble()) return null;
+			}
+			if (integers) {
+				long[] values = new long[count];
+				for (int i = 0; i < count; i++) values[i] = elements.get(i).longValue();
+				return new JsonNumberArray(values, count);
 			}
-			String child = childBuilder.toString();
-			if (child.startsWith(",")) child = child.substring(1);
-			return String.format("[%s]", child);
+			double[] values = new double[count];
+			for (int i = 0; i < count; i++) values[i] = elements.get(i).doubleValue();
+			return new JsonNumberArray(values, count);
 		}
 	}
 
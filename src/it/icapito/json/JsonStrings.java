@@ -0,0 +1,218 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Conversion between the text of a JSON string, as stored in the JSON_STRING elements with the
+ * escape sequences, and the Java String that it represents, and the scan of the strings of a document.
+ * The quotation marks and the reverse solidus are searched with String.indexOf, that the JVM runs
+ * with vector instructions, and in the UTF-8 bytes 8 at a time in a long (SWAR).
+ *
+ * @author BlackCodec
+ *
+ */
+final class JsonStrings {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	// the longs of a byte array in the order of the bytes
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+	// the chars decoded by the thread, a buffer grown over this size is not kept
+	private static final int MAX_RETAINED_SIZE = 1 << 16;
+	private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	private JsonStrings() {}
+
+	/**
+	 * Return the String represented by the text of a JSON string, decoding the escape sequences.
+	 *
+	 * @param text the text between the quotation marks
+	 * @return the decoded String, the same instance if the text does not contain escape sequences
+	 * @throws UnsupportedOperationException if the text contains an invalid escape sequence
+	 */
+	static String decode(String text) throws UnsupportedOperationException {
+		int escape = text.indexOf('\\');
+		if (escape < 0) return text;
+		int length = text.length();
+		// the builder keeps the compact form of a Latin-1 text, so the runs are copied without widening them
+		StringBuilder builder = buffer();
+		int start = 0;
+		while (escape >= 0) {
+			builder.append(text, start, escape);
+			if (escape + 1 >= length) throw error(escape);
+			char c = text.charAt(escape + 1);
+			start = escape + 2;
+			switch (c) {
+				case '"':
+				case '\\':
+				case '/':
+					builder.append(c);
+					break;
+				case 'b':
+					builder.append('\b');
+					break;
+				case 'f':
+					builder.append('\f');
+					break;
+				case 'n':
+					builder.append('\n');
+					break;
+				case 'r':
+					builder.append('\r');
+					break;
+				case 't':
+					builder.append('\t');
+					break;
+				case 'u':
+					// a surrogate pair is written as two escapes, decoded one after the other
+					if (escape + 6 > length) throw error(escape);
+					int code = 0;
+					for (int i = escape + 2; i < escape + 6; i++) {
+						int digit = Character.digit(text.charAt(i), 16);
+						if (digit < 0) throw error(escape);
+						code = code * 16 + digit;
+					}
+					builder.append((char) code);
+					start = escape + 6;
+					break;
+				default:
+					throw error(escape);
+			}
+			escape = text.indexOf('\\', start);
+		}
+		String decoded = builder.append(text, start, length).toString();
+		if (builder.capacity() > MAX_RETAINED_SIZE) BUFFERS.remove();
+		return decoded;
+	}
+
+	/**
+	 * Return the text of a JSON string that represents the String, with the escape sequences
+	 * for quotation marks, reverse solidus and control chars.
+	 *
+	 * @param value the String to encode
+	 * @return the text to write between the quotation marks, the same instance if nothing is escaped
+	 */
+	static String encode(String value) {
+		if (escaped(value) == value.length()) return value;
+		StringBuilder builder = new StringBuilder(value.length() + 16);
+		try {
+			encode(value, builder);
+		} catch (IOException e) {
+			// StringBuilder does not raise IOException
+			throw new IllegalStateException(e);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Write the text of a JSON string that represents the String, without the quotation marks.
+	 *
+	 * @param value the String to encode
+	 * @param out   where to write the text
+	 * @throws IOException if the output fails
+	 */
+	static void encode(String value, Appendable out) throws IOException {
+		int length = value.length();
+		// the next quotation mark and reverse solidus, the chars before them are checked only for control chars
+		int quote = next(value, '"', 0);
+		int backslash = next(value, '\\', 0);
+		int start = 0;
+		int i = 0;
+		while (true) {
+			int stop = Math.min(quote, backslash);
+			while (i < stop && value.charAt(i) >= 0x20) i++;
+			if (i == length) break;
+			char c = value.charAt(i);
+			out.append(value, start, i);
+			start = i + 1;
+			switch (c) {
+				case '"':
+					out.append("\\\"");
+					quote = next(value, '"', start);
+					break;
+				case '\\':
+					out.append("\\\\");
+					backslash = next(value, '\\', start);
+					break;
+				case '\n':
+					out.append("\\n");
+					break;
+				case '\r':
+					out.append("\\r");
+					break;
+				case '\t':
+					out.append("\\t");
+					break;
+				default:
+					out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+			}
+			i = start;
+		}
+		out.append(value, start, length);
+	}
+
+	/**
+	 * Return the index of the first char of the value that must be escaped, or the length of the value.
+	 */
+	private static int escaped(String value) {
+		int stop = Math.min(next(value, '"', 0), next(value, '\\', 0));
+		for (int i = 0; i < stop; i++) {
+			if (value.charAt(i) < 0x20) return i;
+		}
+		return stop;
+	}
+
+	/**
+	 * Return the index of the char from the specified index, found with the vectorized String.indexOf, or the length of the value.
+	 */
+	private static int next(String value, char c, int from) {
+		int index = value.indexOf(c, from);
+		return index < 0 ? value.length() : index;
+	}
+
+	/**
+	 * Return the index of the first byte between from and end that is a quotation mark, a reverse solidus
+	 * or a control char, or with ascii also the first byte of a non ASCII char, end if there is none.
+	 * The bytes are read 8 at a time in a long: a byte equal to b is found as a zero byte of the long xor b,
+	 * and the lowest flag of the zero bytes is exact since a borrow only flags the bytes after a zero one.
+	 *
+	 * @param bytes the UTF-8 bytes
+	 * @param from  the index of the first byte to check
+	 * @param end   the index after the last byte to check
+	 * @param ascii true to stop also at the bytes of the non ASCII chars
+	 * @return the index of the first byte found or end
+	 */
+	static int scan(byte[] bytes, int from, int end, boolean ascii) {
+		long high = ascii ? HIGHS : 0;
+		int i = from;
+		for (; i + 8 <= end; i += 8) {
+			long word = (long) LONGS.get(bytes, i);
+			long quote = word ^ (ONES * '"');
+			long backslash = word ^ (ONES * '\\');
+			long found = ((quote - ONES) & ~quote | (backslash - ONES) & ~backslash | (word - ONES * 0x20) & ~word) & HIGHS | word & high;
+			if (found != 0) return i + (Long.numberOfTrailingZeros(found) >>> 3);
+		}
+		for (; i < end; i++) {
+			byte c = bytes[i];
+			if (c == '"' || c == '\\' || (c >= 0 ? c < 0x20 : ascii)) return i;
+		}
+		return end;
+	}
+
+	/**
+	 * Return the empty buffer of the thread.
+	 */
+	private static StringBuilder buffer() {
+		StringBuilder builder = BUFFERS.get();
+		builder.setLength(0);
+		return builder;
+	}
+
+	private static UnsupportedOperationException error(int position) {
+		return new UnsupportedOperationException(String.format("Invalid escape sequence at position %d", position));
+	}
+}
@@ -0,0 +1,195 @@
+package it.icapito.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache used by the parsers to share the String instances of the object keys.
+ * A key found in the cache is returned without creating a new String: the hash and the chars
+ * are compared directly with the input. The cache is a two ways set associative table where
+ * the least recently used key of a set is replaced, so it never grows over its capacity.
+ * The policy is selected with JsonService.setKeyCache.
+ *
+ * @see JsonService#setKeyCache(Policy)
+ *
+ * @author BlackCodec
+ *
+ */
+public final class KeyCache {
+
+	public enum Policy {
+
+		// every key is a new String
+		OFF,
+		// keys are shared only inside a single parse
+		PER_PARSE,
+		// keys are shared by all the parses of all threads
+		GLOBAL_LRU;
+	}
+
+	private static final int PER_PARSE_CAPACITY = 256;
+	private static final int GLOBAL_CAPACITY = 8192;
+
+	private static final KeyCache GLOBAL = new KeyCache(GLOBAL_CAPACITY);
+	private static final LongAdder HITS = new LongAdder();
+	private static final LongAdder MISSES = new LongAdder();
+
+	private final String[] keys;
+	// the way of every set used more recently
+	private final byte[] recent;
+	private final int mask;
+
+	/**
+	 * Construct a cache that contains at most the specified number of keys.
+	 *
+	 * @param capacity the number of keys, rounded up to a power of two
+	 */
+	private KeyCache(int capacity) {
+		int sets = Integer.highestOneBit(Math.max(2, capacity - 1) >> 1) << 1;
+		this.keys = new String[sets * 2];
+		this.recent = new byte[sets];
+		this.mask = sets - 1;
+	}
+
+	/**
+	 * Return the cache to use for a single parse with the specified policy.
+	 *
+	 * @param policy the policy selected
+	 * @return the cache to use or null if the policy is OFF
+	 */
+	static KeyCache forParse(Policy policy) {
+		switch (policy) {
+			case PER_PARSE:
+				return new KeyCache(PER_PARSE_CAPACITY);
+			case GLOBAL_LRU:
+				return GLOBAL;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Return the number of keys found in the caches since the start or the last reset.
+	 *
+	 * @return the number of keys found
+	 */
+	public static long hits() { return HITS.sum(); }
+
+	/**
+	 * Return the number of keys not found in the caches since the start or the last reset.
+	 *
+	 * @return the number of keys created and added to the caches
+	 */
+	public static long misses() { return MISSES.sum(); }
+
+	/**
+	 * Return the ratio between the keys found and the keys searched in the caches.
+	 *
+	 * @return the hit rate, between 0 and 1
+	 */
+	public static double hitRate() {
+		long hits = hits();
+		long total = hits + misses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Reset the hits and misses counters.
+	 */
+	public static void resetStatistics() {
+		HITS.reset();
+		MISSES.reset();
+	}
+
+	/**
+	 * Return the String with the chars of the input between start and end.
+	 *
+	 * @param input the string that contains the key
+	 * @param start the index of the first char of the key
+	 * @param end   the index after the last char of the key
+	 * @return the cached key or a new String added to the cache
+	 */
+	String intern(String input, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) hash = 31 * hash + input.charAt(i);
+		int set = (hash ^ (hash >>> 16)) & this.mask;
+		int length = end - start;
+		for (int way = 0; way < 2; way++) {
+			String key = this.keys[set * 2 + way];
+			if (key != null && key.hashCode() == hash && key.length() == length && input.regionMatches(start, key, 0, length))
+				return this.hit(set, way, key);
+		}
+		return this.miss(set, input.substring(start, end));
+	}
+
+	/**
+	 * Return the String with the chars of the buffer between start and end.
+	 *
+	 * @param buffer the chars that contains the key
+	 * @param start  the index of the first char of the key
+	 * @param end    the index after the last char of the key
+	 * @return the cached key or a new String added to the cache
+	 */
+	String intern(char[] buffer, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) hash = 31 * hash + buffer[i];
+		int set = (hash ^ (hash >>> 16)) & this.mask;
+		int length = end - start;
+		for (int way = 0; way < 2; way++) {
+			String key = this.keys[set * 2 + way];
+			if (key != null && key.hashCode() == hash && key.length() == length && matches(key, buffer, start))
+				return this.hit(set, way, key);
+		}
+		return this.miss(set, new String(buffer, start, length));
+	}
+
+	/**
+	 * Return the String with the ASCII bytes of the buffer between start and end.
+	 *
+	 * @param buffer the bytes that contains the key, all of them must be ASCII chars
+	 * @param start  the index of the first byte of the key
+	 * @param end    the index after the last byte of the key
+	 * @return the cached key or a new String added to the cache
+	 */
+	String intern(byte[] buffer, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) hash = 31 * hash + buffer[i];
+		int set = (hash ^ (hash >>> 16)) & this.mask;
+		int length = end - start;
+		for (int way = 0; way < 2; way++) {
+			String key = this.keys[set * 2 + way];
+			if (key != null && key.hashCode() == hash && key.length() == length && matches(key, buffer, start))
+				return this.hit(set, way, key);
+		}
+		return this.miss(set, new String(buffer, start, length, StandardCharsets.ISO_8859_1));
+	}
+
+	private String hit(int set, int way, String key) {
+		// concurrent updates of the recent way are harmless, it is only a hint for the replacement
+		this.recent[set] = (byte) way;
+		HITS.increment();
+		return key;
+	}
+
+	private String miss(int set, String key) {
+		int way = 1 - this.recent[set];
+		this.keys[set * 2 + way] = key;
+		this.recent[set] = (byte) way;
+		MISSES.increment();
+		return key;
+	}
+
+	private static boolean matches(String key, char[] buffer, int start) {
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != buffer[start + i]) return false;
+		}
+		return true;
+	}
+
+	private static boolean matches(String key, byte[] buffer, int start) {
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != buffer[start + i]) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,123 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.util.List;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+
+/**
+ * JsonArray that keeps only the position of its values in the source string.
+ * A value is decoded in a JsonElement the first time it is read with get, writeTo
+ * copies the strings and literals not yet read from the source and the methods that
+ * need all the children decode all the values.
+ *
+ * @see LazyJsonObject
+ *
+ * @author BlackCodec
+ *
+ */
+final class LazyJsonArray extends JsonArray {
+
+	private String source;
+	// start and end of every value
+	private int[] index;
+	private int count;
+	private JsonElement[] values;
+
+	/**
+	 * Construct a new lazy JsonArray.
+	 *
+	 * @param source the string that contains the array
+	 * @param index  start and end of every value
+	 * @param count  the number of values
+	 */
+	LazyJsonArray(String source, int[] index, int count) {
+		this.source = source;
+		this.index = index;
+		this.count = count;
+		this.values = new JsonElement[count];
+	}
+
+	@Override
+	public JsonElement get(int index) throws IndexOutOfBoundsException {
+		if (this.source == null) return super.get(index);
+		if (index < 0 || index >= this.count) throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, this.count));
+		return this.value(index);
+	}
+
+	@Override
+	public void add(JsonElement node) {
+		this.materialize();
+		super.add(node);
+	}
+
+	@Override
+	public void add(int index, JsonElement node) {
+		this.materialize();
+		super.add(index, node);
+	}
+
+	@Override
+	public List<JsonElement> childs() {
+		this.materialize();
+		return super.childs();
+	}
+
+	@Override
+	public JsonElement freeze() {
+		this.materialize();
+		return super.freeze();
+	}
+
+	@Override
+	public JsonElement cacheOutput() {
+		this.materialize();
+		return super.cacheOutput();
+	}
+
+	@Override
+	public boolean isEmpty() { return this.source == null ? super.isEmpty() : this.count > 0; }
+
+	@Override
+	public int size() { return this.source == null ? super.size() : this.count; }
+
+	@Override
+	public void writeTo(Appendable out) throws IOException {
+		if (this.source == null) {
+			super.writeTo(out);
+			return;
+		}
+		out.append('[');
+		for (int position = 0; position < this.count; position++) {
+			if (position > 0) out.append(',');
+			int start = this.index[position * 2];
+			char c = this.source.charAt(start);
+			// strings keep their escaped text, so the values not yet read are written as they are in the source
+			if (this.values[position] == null && (c == '"' || c == 't' || c == 'f' || c == 'n')) out.append(this.source, start, this.index[position * 2 + 1]);
+			else this.value(position).writeTo(out);
+		}
+		out.append(']');
+	}
+
+	private JsonElement value(int position) {
+		JsonElement value = this.values[position];
+		if (value == null) {
+			value = new JsonParser(this.source, this.index[position * 2], this.index[position * 2 + 1]).readLazyValue();
+			value.setParent(this);
+			this.values[position] = value;
+		}
+		return value;
+	}
+
+	/**
+	 * Decode all the values and add them to the children of the array, then release the source.
+	 */
+	private void materialize() {
+		if (this.source == null) return;
+		for (int position = 0; position < this.count; position++) super.add(this.value(position));
+		this.source = null;
+		this.index = null;
+		this.values = null;
+	}
+}
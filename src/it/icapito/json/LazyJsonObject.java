@@ -0,0 +1,193 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.util.Map;
+
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * JsonObject that keeps only the position of its keys and values in the source string.
+ * A value is decoded in a JsonElement the first time it is read with get, nested objects
+ * and arrays are lazy too. size counts the distinct keys of the index and writeTo copies the
+ * keys, strings and literals not yet read from the source. Methods that need all the children
+ * (childs, add, remove, freeze) decode all the values and from then on the object works as a JsonObject.
+ *
+ * @see JsonService#parseLazy(String)
+ *
+ * @author BlackCodec
+ *
+ */
+final class LazyJsonObject extends JsonObject {
+
+	private String source;
+	// start and end of key and value of every field
+	private int[] index;
+	private int count;
+	// the number of distinct keys, -1 until it is counted
+	private int distinct = -1;
+	private JsonElement[] values;
+
+	/**
+	 * Construct a new lazy JsonObject.
+	 *
+	 * @param source the string that contains the object
+	 * @param index  key start, key end, value start and value end of every field
+	 * @param count  the number of fields
+	 */
+	LazyJsonObject(String source, int[] index, int count) {
+		this.source = source;
+		this.index = index;
+		this.count = count;
+		this.values = new JsonElement[count];
+	}
+
+	@Override
+	public JsonElement get(String key) {
+		if (this.source == null) return super.get(key);
+		int field = this.find(key);
+		return field < 0 ? null : this.value(field);
+	}
+
+	@Override
+	public boolean contains(String key) { return this.source == null ? super.contains(key) : this.find(key) >= 0; }
+
+	@Override
+	public void add(String key, JsonElement value) {
+		this.materialize();
+		super.add(key, value);
+	}
+
+	@Override
+	public void remove(String key) {
+		this.materialize();
+		super.remove(key);
+	}
+
+	@Override
+	public Map<String, JsonElement> childs() {
+		this.materialize();
+		return super.childs();
+	}
+
+	@Override
+	JsonElement valueAt(int index) {
+		this.materialize();
+		return super.valueAt(index);
+	}
+
+	@Override
+	String keyAt(int index) {
+		this.materialize();
+		return super.keyAt(index);
+	}
+
+	@Override
+	public JsonElement freeze() {
+		this.materialize();
+		return super.freeze();
+	}
+
+	@Override
+	public JsonElement cacheOutput() {
+		this.materialize();
+		return super.cacheOutput();
+	}
+
+	@Override
+	public boolean isEmpty() { return this.source == null ? super.isEmpty() : this.count > 0; }
+
+	@Override
+	public int size() {
+		if (this.source == null) return super.size();
+		if (this.distinct < 0) this.distinct = this.countKeys();
+		return this.distinct;
+	}
+
+	@Override
+	public void writeTo(Appendable out) throws IOException {
+		// duplicate keys and sorted keys are written by the JsonObject
+		if (this.source == null || this.size() != this.count || JsonService.isSortedOutput()) {
+			this.materialize();
+			super.writeTo(out);
+			return;
+		}
+		out.append('{');
+		for (int field = 0; field < this.count; field++) {
+			if (field > 0) out.append(',');
+			out.append('"').append(this.source, this.index[field * 4], this.index[field * 4 + 1]).append("\":");
+			int start = this.index[field * 4 + 2];
+			char c = this.source.charAt(start);
+			// strings keep their escaped text, so the values not yet read are written as they are in the source
+			if (this.values[field] == null && (c == '"' || c == 't' || c == 'f' || c == 'n')) out.append(this.source, start, this.index[field * 4 + 3]);
+			else this.value(field).writeTo(out);
+		}
+		out.append('}');
+	}
+
+	/**
+	 * Count the distinct keys with a hash table of the fields, comparing the keys in the source without creating them.
+	 *
+	 * @return the number of distinct keys
+	 */
+	private int countKeys() {
+		if (this.count == 0) return 0;
+		int[] table = new int[Integer.highestOneBit(this.count * 4 - 1)];
+		int mask = table.length - 1;
+		int keys = 0;
+		for (int field = 0; field < this.count; field++) {
+			int start = this.index[field * 4];
+			int length = this.index[field * 4 + 1] - start;
+			int hash = 0;
+			for (int i = start; i < start + length; i++) hash = 31 * hash + this.source.charAt(i);
+			for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+				int other = table[slot] - 1;
+				if (other < 0) {
+					table[slot] = field + 1;
+					keys++;
+					break;
+				}
+				int otherStart = this.index[other * 4];
+				if (this.index[other * 4 + 1] - otherStart == length && this.source.regionMatches(start, this.source, otherStart, length)) break;
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Return the last field with the specified key, as the last one replaces the others when they are added.
+	 *
+	 * @param key the key to search
+	 * @return the index of the field or -1 if not found
+	 */
+	private int find(String key) {
+		int length = key.length();
+		for (int field = this.count - 1; field >= 0; field--) {
+			int start = this.index[field * 4];
+			if (this.index[field * 4 + 1] - start == length && this.source.regionMatches(start, key, 0, length)) return field;
+		}
+		return -1;
+	}
+
+	private JsonElement value(int field) {
+		JsonElement value = this.values[field];
+		if (value == null) {
+			value = new JsonParser(this.source, this.index[field * 4 + 2], this.index[field * 4 + 3]).readLazyValue();
+			value.setParent(this);
+			this.values[field] = value;
+		}
+		return value;
+	}
+
+	/**
+	 * Decode all the values and add them to the children of the object, then release the source.
+	 */
+	private void materialize() {
+		if (this.source == null) return;
+		for (int field = 0; field < this.count; field++)
+			super.add(this.source.substring(this.index[field * 4], this.index[field * 4 + 1]), this.value(field));
+		this.source = null;
+		this.index = null;
+		this.values = null;
+	}
+}
@@ -0,0 +1,90 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader that decodes an UTF-8 file mapped in memory.
+ * The file is mapped with FileChannel.map in regions of at most 1 GB and decoded
+ * directly in the buffer of the caller, so the bytes are read from the page cache
+ * without copying the whole file on the heap.
+ *
+ * @author BlackCodec
+ *
+ */
+final class MappedFileReader extends Reader {
+
+	private static final long REGION_SIZE = 1L << 30;
+
+	private final FileChannel channel;
+	private final long size;
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+	private MappedByteBuffer buffer;
+	private long regionStart = 0;
+	private boolean lastRegion = false;
+	private boolean flushed = false;
+
+	/**
+	 * Open and map the specified file.
+	 *
+	 * @param path the file to read
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	MappedFileReader(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			this.size = this.channel.size();
+			this.map(0);
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the size of the file.
+	 *
+	 * @return the size in bytes
+	 */
+	long size() { return this.size; }
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		if (this.flushed) return -1;
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		while (true) {
+			CoderResult result = this.decoder.decode(this.buffer, out, this.lastRegion);
+			if (result.isError()) result.throwException();
+			if (out.position() > off) return out.position() - off;
+			if (this.lastRegion) {
+				this.decoder.flush(out);
+				this.flushed = true;
+				return out.position() > off ? out.position() - off : -1;
+			}
+			// the bytes not decoded (a split UTF-8 sequence) are mapped again at the begin of the next region
+			this.map(this.regionStart + this.buffer.position());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.buffer = null;
+		this.channel.close();
+	}
+
+	private void map(long start) throws IOException {
+		long length = Math.min(REGION_SIZE, this.size - start);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		this.regionStart = start;
+		this.lastRegion = start + length >= this.size;
+	}
+}
@@ -0,0 +1,145 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * JSON text of a JsonObject or JsonArray kept after the first write, as String and as UTF-8 bytes.
+ * The text is cleared by the container when it or one of its descendants is changed. A changed container
+ * written by its parent writes its content directly in the text of the parent, copying the texts still
+ * kept by its children, so after a change only the changed path is serialized and no text is created
+ * for the containers along the path. The text written with sorted keys is not returned when the sorted
+ * output is disabled, and vice versa.
+ *
+ * @see JsonService.JsonElement#cacheOutput()
+ *
+ * @author BlackCodec
+ *
+ */
+final class OutputCache {
+
+	/**
+	 * Writer of the content of the container, called when the text is not kept.
+	 */
+	interface Content {
+
+		void writeTo(Appendable out) throws IOException;
+	}
+
+	private volatile String text = null;
+	private volatile byte[] bytes = null;
+	private volatile boolean sorted = false;
+	// true when the text was cleared by a change and not written again by this container
+	private volatile boolean changed = false;
+
+	/**
+	 * Write the text of the container, a Utf8Writer receives the UTF-8 bytes.
+	 * The text is written and kept if it is not kept yet.
+	 *
+	 * @param out     where to write the text
+	 * @param content the writer of the container
+	 * @throws IOException if the output fails
+	 */
+	void writeTo(Appendable out, Content content) throws IOException {
+		if (out instanceof Utf8Writer) {
+			byte[] bytes = this.bytes(content);
+			((Utf8Writer) out).write(bytes, 0, bytes.length);
+		} else {
+			out.append(this.text(content));
+		}
+	}
+
+	/**
+	 * Write the text of the container as a child of a container that keeps its text.
+	 * The text of a changed container is not kept, its content is written directly.
+	 *
+	 * @param out     where to write the text
+	 * @param content the writer of the container
+	 * @throws IOException if the output fails
+	 */
+	void writeChild(Appendable out, Content content) throws IOException {
+		boolean valid = this.sorted == JsonService.isSortedOutput();
+		if (out instanceof Utf8Writer) {
+			byte[] bytes = this.bytes;
+			if (bytes != null && valid) ((Utf8Writer) out).write(bytes, 0, bytes.length);
+			else if (this.changed) content.writeTo(out);
+			else this.writeTo(out, content);
+		} else {
+			String text = this.text;
+			if (text != null && valid) out.append(text);
+			else if (this.changed) content.writeTo(out);
+			else this.writeTo(out, content);
+		}
+	}
+
+	/**
+	 * Return the text of the container, written and kept if it is not kept yet.
+	 *
+	 * @param content the writer of the container
+	 * @return the JSON text of the container
+	 */
+	String text(Content content) {
+		boolean sorted = JsonService.isSortedOutput();
+		String text = this.text;
+		if (text != null && this.sorted == sorted) return text;
+		StringBuilder builder = new StringBuilder();
+		try {
+			content.writeTo(builder);
+		} catch (IOException e) {
+			// a StringBuilder never raise IOException
+			throw new UncheckedIOException(e);
+		}
+		text = builder.toString();
+		this.keep(sorted);
+		this.text = text;
+		return text;
+	}
+
+	/**
+	 * Return the UTF-8 bytes of the text of the container, written and kept if they are not kept yet.
+	 * The array is shared and must not be changed.
+	 *
+	 * @param content the writer of the container
+	 * @return the UTF-8 bytes of the JSON text of the container
+	 */
+	byte[] bytes(Content content) {
+		boolean sorted = JsonService.isSortedOutput();
+		byte[] bytes = this.bytes;
+		if (bytes != null && this.sorted == sorted) return bytes;
+		// the writer of the thread is busy when the container is written by its parent, a new one is used
+		Utf8Writer writer = Utf8Writer.acquire(null);
+		try {
+			content.writeTo(writer);
+			bytes = writer.toByteArray();
+		} catch (IOException e) {
+			// without a stream the writer never raise IOException
+			throw new UncheckedIOException(e);
+		} finally {
+			writer.release();
+		}
+		this.keep(sorted);
+		this.bytes = bytes;
+		return bytes;
+	}
+
+	/**
+	 * Clear the text kept, called when the container or one of its descendants is changed.
+	 */
+	void clear() {
+		this.text = null;
+		this.bytes = null;
+		this.changed = true;
+	}
+
+	/**
+	 * Prepare to keep a text written with the specified order of the keys.
+	 */
+	private void keep(boolean sorted) {
+		if (this.sorted != sorted) {
+			this.text = null;
+			this.bytes = null;
+		}
+		this.sorted = sorted;
+		this.changed = false;
+	}
+}
@@ -0,0 +1,239 @@
+package it.icapito.json;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumberArray;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Bounded cache of parsed documents, used by JsonService.parse when selected with setParseCache.
+ * A document is found with a 64 bits hash of its content and the cached source is compared with
+ * the input, so a collision never returns a wrong tree. The returned JsonObjects are frozen, so
+ * they can be shared by many threads: the methods that change them raise UnsupportedOperationException.
+ * When the entries or the estimated bytes of source and tree are over the limits, the least
+ * recently used documents are removed.
+ *
+ * @see JsonService#setParseCache(ParseCache)
+ * @see JsonElement#freeze()
+ *
+ * @author BlackCodec
+ *
+ */
+public final class ParseCache {
+
+	// estimated bytes of an element, of a field and of a source char
+	private static final int ELEMENT_BYTES = 48;
+	private static final int FIELD_BYTES = 24;
+	private static final int CHAR_BYTES = 2;
+
+	private final int maxEntries;
+	private final long maxBytes;
+	// guarded by this
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes = 0;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Construct a cache with the specified limits.
+	 * A document larger than maxBytes is parsed and frozen but not added to the cache.
+	 *
+	 * @param maxEntries the maximum number of documents
+	 * @param maxBytes   the maximum estimated bytes of the documents and their sources
+	 * @throws UnsupportedOperationException if a limit is not positive
+	 */
+	public ParseCache(int maxEntries, long maxBytes) throws UnsupportedOperationException {
+		if (maxEntries <= 0 || maxBytes <= 0) throw new UnsupportedOperationException(String.format("Invalid limits %d entries and %d bytes for the parse cache", maxEntries, maxBytes));
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Return the frozen JsonObject of the string, parsing it only if it is not in the cache.
+	 *
+	 * @param jsonString a string that contains the JSON object
+	 * @return the frozen JSON object representation of the string
+	 * @throws UnsupportedOperationException if the input string does not represent a valid JSON object
+	 */
+	public JsonObject parse(String jsonString) throws UnsupportedOperationException {
+		Key key = new Key(jsonString);
+		synchronized (this) {
+			Entry entry = this.entries.get(key);
+			if (entry != null) {
+				this.hits.increment();
+				return entry.document;
+			}
+		}
+		this.misses.increment();
+		// the parse is done out of the lock, two threads can parse the same string at the same time
+		JsonObject document = JsonService.parseText(jsonString);
+		document.freeze();
+		long size = (long) jsonString.length() * CHAR_BYTES + estimate(document);
+		if (size > this.maxBytes) return document;
+		synchronized (this) {
+			Entry old = this.entries.put(key, new Entry(document, size));
+			if (old != null) this.bytes -= old.bytes;
+			this.bytes += size;
+			this.evict();
+		}
+		return document;
+	}
+
+	/**
+	 * Return the number of documents found in the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long hits() { return this.hits.sum(); }
+
+	/**
+	 * Return the number of documents parsed because not found in the cache.
+	 *
+	 * @return the number of misses
+	 */
+	public long misses() { return this.misses.sum(); }
+
+	/**
+	 * Return the number of documents removed to respect the limits.
+	 *
+	 * @return the number of evictions
+	 */
+	public long evictions() { return this.evictions.sum(); }
+
+	/**
+	 * Return the ratio between the documents found and the documents requested.
+	 *
+	 * @return the hit rate, between 0 and 1
+	 */
+	public double hitRate() {
+		long hits = this.hits();
+		long total = hits + this.misses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Return the number of documents in the cache.
+	 *
+	 * @return the number of documents
+	 */
+	public synchronized int size() { return this.entries.size(); }
+
+	/**
+	 * Return the estimated bytes of the documents in the cache and their sources.
+	 *
+	 * @return the estimated bytes
+	 */
+	public synchronized long estimatedBytes() { return this.bytes; }
+
+	/**
+	 * Remove all the documents, the statistics are not changed.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.bytes = 0;
+	}
+
+	/**
+	 * Reset the hits, misses and evictions counters.
+	 */
+	public void resetStatistics() {
+		this.hits.reset();
+		this.misses.reset();
+		this.evictions.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ParseCache[entries=%d/%d, bytes=%d/%d, hits=%d, misses=%d, evictions=%d]",
+				this.size(), this.maxEntries, this.estimatedBytes(), this.maxBytes, this.hits(), this.misses(), this.evictions());
+	}
+
+	private void evict() {
+		Iterator<Entry> eldest = this.entries.values().iterator();
+		while ((this.entries.size() > this.maxEntries || this.bytes > this.maxBytes) && eldest.hasNext()) {
+			this.bytes -= eldest.next().bytes;
+			eldest.remove();
+			this.evictions.increment();
+		}
+	}
+
+	/**
+	 * Return the estimated bytes used by the elements of a tree.
+	 *
+	 * @param element the root of the tree
+	 * @return the estimated bytes
+	 */
+	private static long estimate(JsonElement element) {
+		long size = ELEMENT_BYTES;
+		if (element instanceof JsonObject) {
+			for (Map.Entry<String, JsonElement> field: ((JsonObject) element).childs().entrySet())
+				size += FIELD_BYTES + (long) field.getKey().length() * CHAR_BYTES + estimate(field.getValue());
+		} else if (element instanceof JsonArray) {
+			JsonArray array = (JsonArray) element;
+			if (array instanceof JsonNumberArray && ((JsonNumberArray) array).isPrimitive()) size += (long) array.size() * Long.BYTES;
+			else for (JsonElement child: array.childs()) size += Integer.BYTES + estimate(child);
+		} else {
+			String value = element.value();
+			if (value != null) size += (long) value.length() * CHAR_BYTES;
+		}
+		return size;
+	}
+
+	/**
+	 * Key of a document: the hash and the length are compared before the chars of the source.
+	 */
+	private static final class Key {
+
+		private final String source;
+		private final long hash;
+
+		Key(String source) {
+			this.source = source;
+			this.hash = hash(source);
+		}
+
+		@Override
+		public int hashCode() { return (int) (this.hash ^ (this.hash >>> 32)); }
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) return true;
+			if (!(other instanceof Key)) return false;
+			Key key = (Key) other;
+			return this.hash == key.hash && this.source.length() == key.source.length() && this.source.equals(key.source);
+		}
+
+		/**
+		 * Return a 64 bits FNV-1a hash of the chars, read two at a time.
+		 *
+		 * @param source the string to hash
+		 * @return the hash of the string
+		 */
+		private static long hash(String source) {
+			long hash = 0xcbf29ce484222325L;
+			int length = source.length();
+			int i = 0;
+			for (; i + 1 < length; i += 2) hash = (hash ^ (source.charAt(i) | (long) source.charAt(i + 1) << 16)) * 0x100000001b3L;
+			if (i < length) hash = (hash ^ source.charAt(i)) * 0x100000001b3L;
+			return hash ^ length;
+		}
+	}
+
+	private static final class Entry {
+
+		private final JsonObject document;
+		private final long bytes;
+
+		Entry(JsonObject document, long bytes) {
+			this.document = document;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package it.icapito.json;
+
+/**
+ * Description of a single parse, passed to the ParseListeners.
+ *
+ * @see ParseListener
+ *
+ * @author BlackCodec
+ *
+ */
+public final class ParseEvent {
+
+	public enum Source {
+
+		// JsonService.parse(String)
+		STRING,
+		// JsonService.parseLazy(String)
+		LAZY,
+		// JsonService.parse(String, Projection)
+		PROJECTION,
+		// JsonService.parse(Reader) and parse(InputStream)
+		READER,
+		// JsonService.parse(Path)
+		FILE,
+		// a line parsed by JsonLines
+		LINE,
+		// JsonService.parse(byte[])
+		BYTES;
+	}
+
+	private final Source source;
+	private final long chars;
+	private final long nanos;
+	private final long nodes;
+	private final int depth;
+	private final String failure;
+
+	ParseEvent(Source source, long chars, long nanos, long nodes, int depth, String failure) {
+		this.source = source;
+		this.chars = chars;
+		this.nanos = nanos;
+		this.nodes = nodes;
+		this.depth = depth;
+		this.failure = failure;
+	}
+
+	/**
+	 * Return the method used to parse the document.
+	 *
+	 * @return the source of the document
+	 */
+	public Source source() { return this.source; }
+
+	/**
+	 * Return the size of the input, in chars for strings and in bytes for files and arrays.
+	 *
+	 * @return the size of the input or -1 if it is not known (readers and streams)
+	 */
+	public long chars() { return this.chars; }
+
+	/**
+	 * Return the time spent in the parse.
+	 *
+	 * @return the elapsed time in nanoseconds
+	 */
+	public long nanos() { return this.nanos; }
+
+	/**
+	 * Return the number of elements of the parsed tree, the root included.
+	 *
+	 * @return the number of elements or -1 if the parse failed or the tree is lazy
+	 */
+	public long nodes() { return this.nodes; }
+
+	/**
+	 * Return the maximum depth of the parsed tree, 1 for an object without objects or arrays.
+	 *
+	 * @return the depth or -1 if the parse failed or the tree is lazy
+	 */
+	public int depth() { return this.depth; }
+
+	/**
+	 * Return true if the parse returned a JsonObject.
+	 *
+	 * @return true if the parse completed
+	 */
+	public boolean success() { return this.failure == null; }
+
+	/**
+	 * Return the cause of the failure: the message of the exception without the position,
+	 * for example "Key expected", or the name of the exception if there is no message.
+	 *
+	 * @return the cause of the failure or null if the parse completed
+	 */
+	public String failure() { return this.failure; }
+
+	@Override
+	public String toString() {
+		return String.format("ParseEvent[source=%s, chars=%d, nanos=%d, nodes=%d, depth=%d, failure=%s]",
+				this.source, this.chars, this.nanos, this.nodes, this.depth, this.failure);
+	}
+}
@@ -0,0 +1,41 @@
+package it.icapito.json;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event committed for every parse when JsonService.setJfrEvents is enabled.
+ * The event is recorded only while a recording is running, for example with -XX:StartFlightRecording,
+ * and can be disabled in the recording with the setting it.icapito.json.Parse#enabled=false.
+ *
+ * @see JsonService#setJfrEvents(boolean)
+ *
+ * @author BlackCodec
+ *
+ */
+@Name("it.icapito.json.Parse")
+@Label("JSON Parse")
+@Category("JsonService")
+@Description("Parse of a JSON document")
+final class ParseJfrEvent extends Event {
+
+	@Label("Source")
+	String source;
+
+	@Label("Size")
+	@DataAmount(DataAmount.BYTES)
+	long chars;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Depth")
+	int depth;
+
+	@Label("Failure")
+	String failure;
+}
@@ -0,0 +1,25 @@
+package it.icapito.json;
+
+/**
+ * Listener notified at the end of every parse, successful or failed.
+ * The listeners are called from the thread that parsed the document, after the parse,
+ * so they must be fast and thread safe; they are added with JsonService.addParseListener.
+ * An exception raised by a listener is logged: it does not change the result of the parse
+ * and the other listeners are still called.
+ *
+ * @see JsonService#addParseListener(ParseListener)
+ * @see ParseEvent
+ *
+ * @author BlackCodec
+ *
+ */
+@FunctionalInterface
+public interface ParseListener {
+
+	/**
+	 * Called at the end of a parse.
+	 *
+	 * @param event the description of the parse
+	 */
+	void parsed(ParseEvent event);
+}
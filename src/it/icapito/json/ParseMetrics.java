@@ -0,0 +1,167 @@
+package it.icapito.json;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of all the parses executed while the metrics are enabled with JsonService.setMetrics.
+ * The counters are shared by all the threads and can be read at any time, for example by a 
+ * scheduled task that exports them; the time of the parses is kept in a histogram with a bucket 
+ * for every power of two of microseconds.
+ *
+ * @see JsonService#setMetrics(boolean)
+ *
+ * @author BlackCodec
+ *
+ */
+public final class ParseMetrics {
+
+	private static final int BUCKETS = 32;
+
+	private static final LongAdder DOCUMENTS = new LongAdder();
+	private static final LongAdder CHARS = new LongAdder();
+	private static final LongAdder NODES = new LongAdder();
+	private static final LongAdder NANOS = new LongAdder();
+	private static final LongAccumulator MAX_DEPTH = new LongAccumulator(Math::max, 0);
+	private static final LongAdder[] HISTOGRAM = new LongAdder[BUCKETS];
+	private static final Map<String, LongAdder> FAILURES = new ConcurrentHashMap<>();
+
+	static {
+		for (int i = 0; i < BUCKETS; i++) HISTOGRAM[i] = new LongAdder();
+	}
+
+	private ParseMetrics() {}
+
+	/**
+	 * Return the number of documents parsed successfully.
+	 *
+	 * @return the number of documents parsed
+	 */
+	public static long documents() { return DOCUMENTS.sum(); }
+
+	/**
+	 * Return the number of parses that failed.
+	 *
+	 * @return the number of failures
+	 */
+	public static long failures() {
+		long total = 0;
+		for (LongAdder count: FAILURES.values()) total += count.sum();
+		return total;
+	}
+
+	/**
+	 * Return the number of failures for every cause, see ParseEvent.failure for the causes.
+	 *
+	 * @return the failures by cause, sorted by cause
+	 */
+	public static Map<String, Long> failuresByCause() {
+		Map<String, Long> result = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> entry: FAILURES.entrySet()) result.put(entry.getKey(), entry.getValue().sum());
+		return result;
+	}
+
+	/**
+	 * Return the chars (bytes for files) of the documents parsed successfully, when the size is known.
+	 *
+	 * @return the number of chars parsed
+	 */
+	public static long chars() { return CHARS.sum(); }
+
+	/**
+	 * Return the elements created by the parses, lazy parses excluded.
+	 *
+	 * @return the number of elements created
+	 */
+	public static long nodes() { return NODES.sum(); }
+
+	/**
+	 * Return the maximum depth of the parsed documents, lazy parses excluded.
+	 *
+	 * @return the maximum depth
+	 */
+	public static long maxDepth() { return MAX_DEPTH.get(); }
+
+	/**
+	 * Return the time spent in the parses successfully completed.
+	 *
+	 * @return the total time in nanoseconds
+	 */
+	public static long nanos() { return NANOS.sum(); }
+
+	/**
+	 * Return the chars parsed for every second spent in the parses.
+	 *
+	 * @return the parse throughput in chars per second
+	 */
+	public static double charsPerSecond() {
+		long nanos = nanos();
+		return nanos == 0 ? 0 : chars() * 1e9 / nanos;
+	}
+
+	/**
+	 * Return the histogram of the parse time. The bucket 0 counts the parses shorter than 1 microsecond,
+	 * the bucket i the parses between 2^(i-1) and 2^i microseconds.
+	 *
+	 * @return the count of parses of every bucket
+	 */
+	public static long[] timeHistogram() {
+		long[] result = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) result[i] = HISTOGRAM[i].sum();
+		return result;
+	}
+
+	/**
+	 * Return an upper bound of the parse time of the specified fraction of the parses.
+	 *
+	 * @param quantile the fraction of the parses, between 0 and 1, for example 0.99
+	 * @return the upper bound of the bucket that contains the quantile, in microseconds
+	 */
+	public static long timeQuantileMicros(double quantile) {
+		long[] histogram = timeHistogram();
+		long total = 0;
+		for (long count: histogram) total += count;
+		long target = (long) Math.ceil(total * quantile);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += histogram[i];
+			if (seen >= target && seen > 0) return 1L << i;
+		}
+		return 0;
+	}
+
+	/**
+	 * Reset all the counters.
+	 */
+	public static void reset() {
+		DOCUMENTS.reset();
+		CHARS.reset();
+		NODES.reset();
+		NANOS.reset();
+		MAX_DEPTH.reset();
+		for (LongAdder bucket: HISTOGRAM) bucket.reset();
+		FAILURES.clear();
+	}
+
+	/**
+	 * Add a parse to the counters.
+	 *
+	 * @param event the description of the parse
+	 */
+	static void record(ParseEvent event) {
+		if (!event.success()) {
+			FAILURES.computeIfAbsent(event.failure(), cause -> new LongAdder()).increment();
+			return;
+		}
+		DOCUMENTS.increment();
+		if (event.chars() > 0) CHARS.add(event.chars());
+		if (event.nodes() > 0) NODES.add(event.nodes());
+		if (event.depth() > 0) MAX_DEPTH.accumulate(event.depth());
+		NANOS.add(event.nanos());
+		long micros = event.nanos() / 1000;
+		HISTOGRAM[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+	}
+}
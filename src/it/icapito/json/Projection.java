@@ -0,0 +1,164 @@
+package it.icapito.json;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Set of fields to keep when a string is parsed with JsonService.parse(String, Projection).
+ * Only the values selected by the projection are converted in JsonElement, all the others
+ * are skipped counting brackets and quotation marks without creating any object.
+ * The objects and arrays on the path of a selected value are kept, so the result has the
+ * same shape of the full parse with only the selected fields.
+ * A Projection is immutable and can be shared by many threads and parses.
+ *
+ * @see JsonService#parse(String, Projection)
+ *
+ * @author BlackCodec
+ *
+ */
+public final class Projection {
+
+	private static final String[] NO_NAMES = new String[0];
+	private static final Projection[] NO_CHILDREN = new Projection[0];
+	// a value kept with all its content
+	private static final Projection WHOLE = new Projection();
+
+	private String[] names = NO_NAMES;
+	private Projection[] children = NO_CHILDREN;
+	// the projection of all the other keys and of the elements of arrays
+	private Projection any;
+	private Predicate<String> filter;
+
+	private Projection() {}
+
+	/**
+	 * Return a projection that keeps the values selected by the specified paths.
+	 * A path is a JsonPath expression made only of names and wildcards, for example
+	 * $.item0.name, $['key3.1'] or $.key8[*].sk2; the wildcard selects all the values 
+	 * of an object or all the elements of an array.
+	 *
+	 * @param paths the paths of the values to keep
+	 * @return the projection of the paths
+	 * @throws UnsupportedOperationException if a path is not valid or contains other selectors
+	 * @see JsonPath
+	 */
+	public static Projection of(String... paths) throws UnsupportedOperationException {
+		Projection root = new Projection();
+		for (String path: paths) {
+			Projection node = root;
+			String[] names = JsonPath.compile(path).names();
+			if (names.length == 0) return WHOLE;
+			for (int i = 0; i < names.length && node != WHOLE; i++)
+				node = node.add(names[i], i == names.length - 1);
+		}
+		root.resolve();
+		return root;
+	}
+
+	/**
+	 * Return a projection that keeps the fields of the root object whose key is accepted by the filter.
+	 * The keys of the root object are converted in strings to be tested, the values of the other fields are skipped.
+	 *
+	 * @param filter the test of the keys of the root object
+	 * @return the projection of the accepted fields
+	 */
+	public static Projection fields(Predicate<String> filter) {
+		Projection root = new Projection();
+		root.filter = filter;
+		return root;
+	}
+
+	/**
+	 * Add the projection of the specified key, or of the wildcard if the key is null.
+	 *
+	 * @param name the key or null for the wildcard
+	 * @param last true if the key is the last step of the path, so its value is kept whole
+	 * @return the projection of the key
+	 */
+	private Projection add(String name, boolean last) {
+		if (name == null) {
+			if (last || this.any == null) this.any = last ? WHOLE : new Projection();
+			return this.any;
+		}
+		for (int i = 0; i < this.names.length; i++) {
+			if (this.names[i].equals(name)) {
+				if (last) this.children[i] = WHOLE;
+				return this.children[i];
+			}
+		}
+		this.names = Arrays.copyOf(this.names, this.names.length + 1);
+		this.children = Arrays.copyOf(this.children, this.children.length + 1);
+		this.names[this.names.length - 1] = name;
+		this.children[this.children.length - 1] = last ? WHOLE : new Projection();
+		return this.children[this.children.length - 1];
+	}
+
+	/**
+	 * Merge the projection of the wildcard in the projection of every key, 
+	 * so a key matched by name keeps also the values selected by the wildcard.
+	 */
+	private void resolve() {
+		for (int i = 0; i < this.children.length; i++) {
+			this.children[i] = merge(this.children[i], this.any);
+			this.children[i].resolve();
+		}
+		if (this.any != null) this.any.resolve();
+	}
+
+	/**
+	 * Return the union of two projections.
+	 */
+	private static Projection merge(Projection first, Projection second) {
+		if (first == null) return second;
+		if (second == null) return first;
+		if (first == WHOLE || second == WHOLE) return WHOLE;
+		Projection result = new Projection();
+		result.names = first.names.clone();
+		result.children = first.children.clone();
+		for (int i = 0; i < second.names.length; i++) {
+			int found = Arrays.asList(result.names).indexOf(second.names[i]);
+			if (found >= 0) result.children[found] = merge(result.children[found], second.children[i]);
+			else {
+				result.names = Arrays.copyOf(result.names, result.names.length + 1);
+				result.children = Arrays.copyOf(result.children, result.children.length + 1);
+				result.names[result.names.length - 1] = second.names[i];
+				result.children[result.children.length - 1] = second.children[i];
+			}
+		}
+		result.any = merge(first.any, second.any);
+		return result;
+	}
+
+	/**
+	 * Return true if the value must be kept with all its content.
+	 *
+	 * @return true if the value is selected whole
+	 */
+	boolean whole() { return this == WHOLE; }
+
+	/**
+	 * Return the projection of the value of the key between start and end of the input.
+	 * The key is compared in place with the names of the projection.
+	 *
+	 * @param input the string that contains the key
+	 * @param start the index of the first char of the key
+	 * @param end   the index after the last char of the key
+	 * @return the projection of the value or null if the value must be skipped
+	 */
+	Projection child(String input, int start, int end) {
+		if (this.filter != null) return this.filter.test(input.substring(start, end)) ? WHOLE : null;
+		int length = end - start;
+		for (int i = 0; i < this.names.length; i++) {
+			String name = this.names[i];
+			if (name.length() == length && input.regionMatches(start, name, 0, length)) return this.children[i];
+		}
+		return this.any;
+	}
+
+	/**
+	 * Return the projection of the elements of an array.
+	 *
+	 * @return the projection of the elements or null if the array must be skipped
+	 */
+	Projection elements() { return this.any; }
+}
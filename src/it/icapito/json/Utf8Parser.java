@@ -0,0 +1,319 @@
+package it.icapito.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import it.icapito.json.JsonService.JsonArray;
+import it.icapito.json.JsonService.JsonElement;
+import it.icapito.json.JsonService.JsonNumber;
+import it.icapito.json.JsonService.JsonNumberArray;
+import it.icapito.json.JsonService.JsonObject;
+
+/**
+ * Single pass parser that builds the JsonObject tree directly from UTF-8 bytes.
+ * It works as JsonParser, but the input is never decoded as a whole: keys are decoded when
+ * they are added to their object and string values keep only their position in the bytes,
+ * so they are decoded the first time they are read.
+ *
+ * @see JsonParser
+ * @see Utf8String
+ *
+ * @author BlackCodec
+ *
+ */
+final class Utf8Parser {
+
+	private final byte[] input;
+	private final int start;
+	private final int end;
+	private final KeyCache keys;
+	private int pos;
+
+	/**
+	 * Construct a new parser for the specified bytes, the array must not be changed while the tree is used.
+	 *
+	 * @param input  the array that contains the UTF-8 text
+	 * @param offset the index of the first byte to parse
+	 * @param length the number of bytes to parse
+	 */
+	Utf8Parser(byte[] input, int offset, int length) {
+		this.input = input;
+		this.start = offset;
+		this.pos = offset;
+		this.end = offset + length;
+		this.keys = KeyCache.forParse(JsonService.keyCache());
+	}
+
+	/**
+	 * Parse the whole input as a JSON object.
+	 *
+	 * @return the JSON object representation of the input
+	 * @throws UnsupportedOperationException if the input does not represent a valid JSON object
+	 */
+	JsonObject parseObject() throws UnsupportedOperationException {
+		this.skipWhitespace();
+		if (this.pos >= this.end || this.input[this.pos] != '{')
+			throw this.error("JsonObject expected");
+		JsonObject result = this.readObject();
+		this.skipWhitespace();
+		if (this.pos < this.end)
+			throw this.error("Unexpected content after JsonObject");
+		return result;
+	}
+
+	private JsonElement readValue() {
+		this.skipWhitespace();
+		if (this.pos >= this.end) throw this.error("Unexpected end of input");
+		byte c = this.input[this.pos];
+		switch (c) {
+			case '{':
+				return this.readObject();
+			case '[':
+				return this.readArray();
+			case '"':
+				int begin = this.pos + 1;
+				boolean ascii = this.skipString();
+				return new Utf8String(this.input, begin, this.pos - 1, ascii);
+			case 't':
+				this.readLiteral("true");
+				return new JsonElement(JsonElement.Types.JSON_BOOLEAN, "true");
+			case 'f':
+				this.readLiteral("false");
+				return new JsonElement(JsonElement.Types.JSON_BOOLEAN, "false");
+			case 'n':
+				this.readLiteral("null");
+				return new JsonElement(JsonElement.Types.JSON_NULL, null);
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					int number = this.pos;
+					if (this.skipNumber()) return new JsonNumber(this.integer(number));
+					return JsonNumbers.parse(this.input, number, this.pos);
+				}
+				throw this.error("Invalid JSON type");
+		}
+	}
+
+	private JsonObject readObject() {
+		JsonObject node = new JsonObject();
+		this.pos++;
+		this.skipWhitespace();
+		if (this.peek() == '}') {
+			this.pos++;
+			return node;
+		}
+		while (true) {
+			this.skipWhitespace();
+			if (this.peek() != '"') throw this.error("Key expected");
+			String key = this.readKey();
+			this.skipWhitespace();
+			if (this.peek() != ':') throw this.error("Colon expected");
+			this.pos++;
+			JsonElement sub = this.readValue();
+			sub.setParent(node);
+			node.add(key, sub);
+			this.skipWhitespace();
+			byte c = this.peek();
+			this.pos++;
+			if (c == '}') return node;
+			if (c != ',') throw this.error("Not well formed JsonObject found");
+		}
+	}
+
+	private JsonArray readArray() {
+		JsonArray node = new JsonArray();
+		this.pos++;
+		this.skipWhitespace();
+		byte first = this.peek();
+		if (first == ']') {
+			this.pos++;
+			return node;
+		}
+		if (first == '-' || (first >= '0' && first <= '9')) {
+			JsonArray numbers = this.readNumberArray();
+			if (numbers != null) return numbers;
+		}
+		while (true) {
+			JsonElement sub = this.readValue();
+			sub.setParent(node);
+			node.add(sub);
+			this.skipWhitespace();
+			byte c = this.peek();
+			this.pos++;
+			if (c == ']') return node;
+			if (c != ',') throw this.error("Not well formed JsonArray found");
+		}
+	}
+
+	/**
+	 * Read an array that contains only numbers in a JsonNumberArray, see JsonParser.readNumberArray.
+	 *
+	 * @return the JsonNumberArray read or null
+	 */
+	private JsonArray readNumberArray() {
+		int begin = this.pos;
+		long[] longs = null;
+		double[] doubles = null;
+		int count = 0;
+		while (true) {
+			this.skipWhitespace();
+			byte c = this.peek();
+			if (c != '-' && (c < '0' || c > '9')) break;
+			int numberStart = this.pos;
+			boolean integer = this.skipNumber();
+			// all the numbers must be of the kind of the first one, a mixed array is read as a JsonArray
+			// so the integers are written back as integers
+			if (count == 0) {
+				if (integer) longs = new long[16];
+				else doubles = new double[16];
+			}
+			if (longs != null) {
+				if (!integer) break;
+				if (count == longs.length) longs = Arrays.copyOf(longs, count * 2);
+				longs[count++] = this.integer(numberStart);
+			} else {
+				if (integer) break;
+				// NaN for the numbers stored as BigDecimal
+				double value = JsonNumbers.toDouble(this.input, numberStart, this.pos);
+				if (Double.isNaN(value)) break;
+				if (count == doubles.length) doubles = Arrays.copyOf(doubles, count * 2);
+				doubles[count++] = value;
+			}
+			this.skipWhitespace();
+			c = this.peek();
+			this.pos++;
+			if (c == ']') return longs != null ? new JsonNumberArray(longs, count) : new JsonNumberArray(doubles, count);
+			if (c != ',') throw this.error("Not well formed JsonArray found");
+		}
+		this.pos = begin;
+		return null;
+	}
+
+	/**
+	 * Return the value of the integer between start and the current position, see JsonParser.integer.
+	 */
+	private long integer(int begin) {
+		boolean negative = this.input[begin] == '-';
+		int i = negative ? begin + 1 : begin;
+		if (this.pos - i > 18) return Long.parseLong(this.text(begin, this.pos));
+		long value = 0;
+		for (; i < this.pos; i++) value = value * 10 + (this.input[i] - '0');
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Read a key, the cursor must be on the opening quotation mark.
+	 * ASCII keys are shared through the KeyCache when it is used.
+	 *
+	 * @return the decoded key, escape sequences are kept as is
+	 */
+	private String readKey() {
+		int begin = this.pos + 1;
+		boolean ascii = this.skipString();
+		int last = this.pos - 1;
+		if (!ascii) return new String(this.input, begin, last - begin, StandardCharsets.UTF_8);
+		if (this.keys != null) return this.keys.intern(this.input, begin, last);
+		return new String(this.input, begin, last - begin, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Move the cursor after the string that starts at the current position.
+	 *
+	 * @return true if the string contains only ASCII chars
+	 */
+	private boolean skipString() {
+		this.pos++;
+		boolean ascii = true;
+		while (this.pos < this.end) {
+			// 8 bytes at a time up to a quotation mark, a reverse solidus, a control char or the first non ASCII byte
+			int i = JsonStrings.scan(this.input, this.pos, this.end, ascii);
+			if (i == this.end) break;
+			byte c = this.input[i];
+			this.pos = i + 1;
+			if (c == '"') return ascii;
+			if (c == '\\') this.pos++;
+			else if (c < 0) ascii = false;
+			else throw this.error("Not well formed JsonString found");
+		}
+		this.pos = this.end;
+		throw this.error("Not well formed JsonString found");
+	}
+
+	/**
+	 * Move the cursor after the number that starts at the current position.
+	 *
+	 * @return true if the number is an integer that fit in a long
+	 */
+	private boolean skipNumber() {
+		int begin = this.pos;
+		if (this.peek() == '-') this.pos++;
+		if (this.peek() == '0') this.pos++;
+		else if (this.skipDigits() == 0) throw this.error("Invalid JSON number");
+		boolean integer = true;
+		if (this.peek() == '.') {
+			this.pos++;
+			if (this.skipDigits() == 0) throw this.error("Invalid JSON number");
+			integer = false;
+		}
+		byte c = this.peek();
+		if (c == 'e' || c == 'E') {
+			this.pos++;
+			c = this.peek();
+			if (c == '+' || c == '-') this.pos++;
+			if (this.skipDigits() == 0) throw this.error("Invalid JSON number");
+			integer = false;
+		}
+		return integer && this.fitsLong(begin);
+	}
+
+	private boolean fitsLong(int begin) {
+		boolean negative = this.input[begin] == '-';
+		int digits = negative ? this.pos - begin - 1 : this.pos - begin;
+		// -0 is read as the double -0.0, that keeps the sign
+		if (negative && digits == 1 && this.input[begin + 1] == '0') return false;
+		if (digits != 19) return digits < 19;
+		// same number of digits, so the strings are sorted as the numbers
+		return this.text(this.pos - 19, this.pos).compareTo(negative ? "9223372036854775808" : "9223372036854775807") <= 0;
+	}
+
+	private void readLiteral(String literal) {
+		if (this.pos + literal.length() > this.end) throw this.error("Invalid JSON type");
+		for (int i = 0; i < literal.length(); i++) {
+			if (this.input[this.pos + i] != literal.charAt(i)) throw this.error("Invalid JSON type");
+		}
+		this.pos += literal.length();
+	}
+
+	private int skipDigits() {
+		int begin = this.pos;
+		while (this.pos < this.end) {
+			byte c = this.input[this.pos];
+			if (c < '0' || c > '9') break;
+			this.pos++;
+		}
+		return this.pos - begin;
+	}
+
+	private void skipWhitespace() {
+		while (this.pos < this.end) {
+			byte c = this.input[this.pos];
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+			this.pos++;
+		}
+	}
+
+	/**
+	 * Return the ASCII text between the specified positions.
+	 */
+	private String text(int begin, int last) { return new String(this.input, begin, last - begin, StandardCharsets.ISO_8859_1); }
+
+	/**
+	 * Return the byte at the current position or 0 at the end of input.
+	 *
+	 * @return the current byte
+	 */
+	private byte peek() { return this.pos < this.end ? this.input[this.pos] : 0; }
+
+	private UnsupportedOperationException error(String message) {
+		return new UnsupportedOperationException(String.format("%s at position %d", message, this.pos - this.start));
+	}
+}
@@ -0,0 +1,83 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import it.icapito.json.JsonService.JsonElement;
+
+/**
+ * JSON_STRING element that keeps the position of its text in the UTF-8 bytes parsed.
+ * The text is decoded the first time the value is read; when the element is written to
+ * a Utf8Writer before, the bytes are copied without decoding them.
+ *
+ * @see Utf8Parser
+ *
+ * @author BlackCodec
+ *
+ */
+final class Utf8String extends JsonElement {
+
+	// volatile so a thread that reads null also sees the decoded value, frozen trees can be shared
+	private volatile byte[] source;
+	private final int start;
+	private final int end;
+	private final boolean ascii;
+
+	/**
+	 * Construct a new string element.
+	 *
+	 * @param source the bytes that contain the string
+	 * @param start  the index of the first byte after the opening quotation mark
+	 * @param end    the index of the closing quotation mark
+	 * @param ascii  true if the bytes are only ASCII chars
+	 */
+	Utf8String(byte[] source, int start, int end, boolean ascii) {
+		super(JsonElement.Types.JSON_STRING, null);
+		this.source = source;
+		this.start = start;
+		this.end = end;
+		this.ascii = ascii;
+	}
+
+	@Override
+	public String value() {
+		this.decode();
+		return super.value();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		this.decode();
+		return super.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		this.decode();
+		return super.size();
+	}
+
+	@Override
+	public void writeTo(Appendable out) throws IOException {
+		byte[] bytes = this.source;
+		if (bytes != null && out instanceof Utf8Writer) {
+			Utf8Writer writer = (Utf8Writer) out;
+			writer.append('"');
+			writer.write(bytes, this.start, this.end - this.start);
+			writer.append('"');
+			return;
+		}
+		this.decode();
+		super.writeTo(out);
+	}
+
+	/**
+	 * Decode the bytes and release them, concurrent calls decode the same value.
+	 */
+	private void decode() {
+		byte[] bytes = this.source;
+		if (bytes == null) return;
+		this.value = new String(bytes, this.start, this.end - this.start, this.ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+		this.source = null;
+	}
+}
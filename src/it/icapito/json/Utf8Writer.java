@@ -0,0 +1,234 @@
+package it.icapito.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Appendable that encodes the chars written in UTF-8 directly in a byte buffer.
+ * The buffer of every thread is reused by the following writes, so writing a tree
+ * does not allocate anything but the growth of the buffer: when the writer has an
+ * OutputStream the buffer is flushed to the stream when it is full, otherwise it grows
+ * and its content is returned by toByteArray.
+ * Unpaired surrogates cannot be encoded in UTF-8 and are written as '?', as String.getBytes does.
+ *
+ * @see JsonService.JsonElement#writeTo(OutputStream)
+ *
+ * @author BlackCodec
+ *
+ */
+final class Utf8Writer implements Appendable {
+
+	private static final int BUFFER_SIZE = 8192;
+	// a buffer grown over this size is released after the write
+	private static final int MAX_RETAINED_SIZE = 1 << 20;
+	private static final ThreadLocal<Utf8Writer> WRITERS = ThreadLocal.withInitial(Utf8Writer::new);
+
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int count;
+	private OutputStream out;
+	// the high surrogate waiting for its low surrogate or 0
+	private char pending;
+	private boolean busy;
+
+	private Utf8Writer() {}
+
+	/**
+	 * Return the writer of the current thread, or a new one if it is already used by an outer write.
+	 *
+	 * @param out the stream where the bytes are flushed or null to keep them in the buffer
+	 * @return the writer to use, it must be released after the write
+	 */
+	static Utf8Writer acquire(OutputStream out) {
+		Utf8Writer writer = WRITERS.get();
+		if (writer.busy) writer = new Utf8Writer();
+		writer.busy = true;
+		writer.out = out;
+		return writer;
+	}
+
+	/**
+	 * Reset the writer so it can be used by the next write of the thread.
+	 */
+	void release() {
+		if (this.buffer.length > MAX_RETAINED_SIZE) this.buffer = new byte[BUFFER_SIZE];
+		this.count = 0;
+		this.pending = 0;
+		this.out = null;
+		this.busy = false;
+	}
+
+	@Override
+	public Utf8Writer append(CharSequence csq) throws IOException {
+		return this.append(csq, 0, csq.length());
+	}
+
+	@Override
+	public Utf8Writer append(CharSequence csq, int start, int end) throws IOException {
+		int i = start;
+		while (i < end) {
+			// ASCII run, the most common case in JSON text
+			int room = this.buffer.length - this.count;
+			if (room == 0 || this.pending != 0) {
+				this.append(csq.charAt(i++));
+				continue;
+			}
+			int last = Math.min(end, i + room);
+			byte[] bytes = this.buffer;
+			int n = this.count;
+			while (i < last) {
+				char c = csq.charAt(i);
+				if (c >= 0x80) break;
+				bytes[n++] = (byte) c;
+				i++;
+			}
+			this.count = n;
+			if (i < last) this.append(csq.charAt(i++));
+		}
+		return this;
+	}
+
+	@Override
+	public Utf8Writer append(char c) throws IOException {
+		if (this.pending != 0) {
+			char high = this.pending;
+			this.pending = 0;
+			if (Character.isLowSurrogate(c)) {
+				int code = Character.toCodePoint(high, c);
+				this.ensure(4);
+				this.buffer[this.count++] = (byte) (0xf0 | (code >> 18));
+				this.buffer[this.count++] = (byte) (0x80 | ((code >> 12) & 0x3f));
+				this.buffer[this.count++] = (byte) (0x80 | ((code >> 6) & 0x3f));
+				this.buffer[this.count++] = (byte) (0x80 | (code & 0x3f));
+				return this;
+			}
+			this.ensure(1);
+			this.buffer[this.count++] = '?';
+		}
+		if (c < 0x80) {
+			this.ensure(1);
+			this.buffer[this.count++] = (byte) c;
+		} else if (c < 0x800) {
+			this.ensure(2);
+			this.buffer[this.count++] = (byte) (0xc0 | (c >> 6));
+			this.buffer[this.count++] = (byte) (0x80 | (c & 0x3f));
+		} else if (Character.isHighSurrogate(c)) {
+			this.pending = c;
+		} else if (Character.isLowSurrogate(c)) {
+			this.ensure(1);
+			this.buffer[this.count++] = '?';
+		} else {
+			this.ensure(3);
+			this.buffer[this.count++] = (byte) (0xe0 | (c >> 12));
+			this.buffer[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+			this.buffer[this.count++] = (byte) (0x80 | (c & 0x3f));
+		}
+		return this;
+	}
+
+	/**
+	 * Write the decimal digits of a long without creating its string.
+	 *
+	 * @param value the value to write
+	 * @throws IOException if the stream fails
+	 */
+	void writeLong(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			this.append(Long.toString(value));
+			return;
+		}
+		this.endPending();
+		this.ensure(20);
+		if (value < 0) {
+			this.buffer[this.count++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long limit = 10; digits < 19 && value >= limit; limit *= 10) digits++;
+		int n = this.count + digits;
+		this.count = n;
+		do {
+			this.buffer[--n] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+	}
+
+	/**
+	 * Write bytes that are already encoded in UTF-8.
+	 *
+	 * @param bytes  the array that contains the bytes
+	 * @param offset the index of the first byte
+	 * @param length the number of bytes
+	 * @throws IOException if the stream fails
+	 */
+	void write(byte[] bytes, int offset, int length) throws IOException {
+		this.endPending();
+		if (this.out != null && length > this.buffer.length - this.count) {
+			this.flushBuffer();
+			if (length >= this.buffer.length) {
+				this.out.write(bytes, offset, length);
+				return;
+			}
+		}
+		this.ensure(length);
+		System.arraycopy(bytes, offset, this.buffer, this.count, length);
+		this.count += length;
+	}
+
+	/**
+	 * Write the bytes in the buffer to the stream, the stream is not flushed.
+	 *
+	 * @throws IOException if the stream fails
+	 */
+	void flush() throws IOException {
+		this.endPending();
+		this.flushBuffer();
+	}
+
+	/**
+	 * Return a copy of the bytes written.
+	 *
+	 * @return the UTF-8 bytes
+	 */
+	byte[] toByteArray() {
+		if (this.pending != 0) {
+			this.pending = 0;
+			this.ensureCapacity(1);
+			this.buffer[this.count++] = '?';
+		}
+		return Arrays.copyOf(this.buffer, this.count);
+	}
+
+	/**
+	 * Write the high surrogate left without its low surrogate.
+	 */
+	private void endPending() throws IOException {
+		if (this.pending == 0) return;
+		this.pending = 0;
+		this.ensure(1);
+		this.buffer[this.count++] = '?';
+	}
+
+	/**
+	 * Make room for the specified number of bytes, flushing the buffer or growing it.
+	 */
+	private void ensure(int length) throws IOException {
+		if (this.buffer.length - this.count >= length) return;
+		if (this.out != null) {
+			this.flushBuffer();
+			if (this.buffer.length >= length) return;
+		}
+		this.ensureCapacity(length);
+	}
+
+	private void ensureCapacity(int length) {
+		if (this.buffer.length - this.count >= length) return;
+		this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.count + length));
+	}
+
+	private void flushBuffer() throws IOException {
+		if (this.count == 0 || this.out == null) return;
+		this.out.write(this.buffer, 0, this.count);
+		this.count = 0;
+	}
+}